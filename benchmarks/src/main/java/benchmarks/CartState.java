@@ -0,0 +1,129 @@
+package benchmarks;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import classes.BinaryCart;
+import classes.Cart;
+import classes.CartGenerator;
+import classes.ColumnarCart;
+import classes.PromotionDates;
+import classes.SKU;
+
+/**
+ * A generated cart shared by every benchmark, as a csv file and a binary cart on disk and as the SKUs loaded from it.
+ *
+ * Cart.populateCart and Cart.applyDiscounts print as they go, so System.out is swapped for a stream that throws its
+ * output away for the whole trial. The formatting still happens, so its cost is still measured.
+ * @author Alex
+ *
+ */
+@State(Scope.Benchmark)
+public class CartState {
+
+	/**
+	 * The number of items in the cart.
+	 */
+	@Param({"10", "10000", "1000000"})
+	public int lines;
+
+	/**
+	 * The promotion types given to the items.
+	 */
+	@Param({"NONE", "PERCENT", "REBATE", "BOGO", "MIXED"})
+	public PromotionMix mix;
+
+	/**
+	 * The seed the cart is generated from, so every run measures the same cart.
+	 */
+	@Param({"42"})
+	public long seed;
+
+	/**
+	 * The generated csv.
+	 */
+	public File file;
+
+	/**
+	 * The path of the generated csv.
+	 */
+	public String csvFile;
+
+	/**
+	 * The same cart converted to a binary cart.
+	 */
+	public File binary;
+
+	/**
+	 * The path of the binary cart.
+	 */
+	public String binaryFile;
+
+	/**
+	 * The items of the cart, loaded once.
+	 */
+	public SKU[] cart;
+
+	/**
+	 * The same items, in columns.
+	 */
+	public ColumnarCart columns;
+
+	/**
+	 * The epoch day promotions are checked against.
+	 */
+	public int today;
+
+	/**
+	 * The real System.out, put back when the trial ends.
+	 */
+	private PrintStream realOut;
+
+	/**
+	 * Writes the cart and loads it.
+	 * @throws Exception Throws any exception raised while writing or loading the cart.
+	 */
+	@Setup(Level.Trial)
+	public void setUp() throws Exception{
+		file = File.createTempFile("CartContents-" + mix + "-" + lines + "-", ".csv");
+		CartGenerator generator = new CartGenerator(seed);
+		generator.setIds(Math.max(lines / 4, 1), 1);
+		mix.configure(generator);
+		generator.write(file.getPath(), lines);
+		csvFile = file.getPath();
+		binary = File.createTempFile("CartContents-" + mix + "-" + lines + "-", ".bin");
+		binaryFile = binary.getPath();
+		BinaryCart.convert(csvFile, binaryFile);
+		cart = Cart.loadCart(csvFile);
+		columns = ColumnarCart.from(cart);
+		today = PromotionDates.today();
+		realOut = System.out;
+		System.setOut(new PrintStream(new OutputStream(){
+			@Override
+			public void write(int b){
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len){
+			}
+		}));
+	}
+
+	/**
+	 * Puts System.out back and deletes the cart files.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown(){
+		System.setOut(realOut);
+		file.delete();
+		binary.delete();
+	}
+}
@@ -0,0 +1,122 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import classes.BinaryCart;
+import classes.Cart;
+import classes.ColumnarCart;
+import classes.MappedCartParser;
+import classes.ParallelCartParser;
+import classes.SKU;
+
+/**
+ * Measures reading a cart: counting the lines of its csv, the two pass Cart.populateCart load, the single pass
+ * Cart.loadCart, the memory mapped parser on one thread and on every core, and loading the same cart from a binary cart.
+ * @author Alex
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoadBenchmark {
+
+	/**
+	 * Counts the lines of the csv.
+	 * @param state The generated cart.
+	 * @return The number of lines.
+	 */
+	@Benchmark
+	public int findCartSize(CartState state){
+		return Cart.findCartSize(state.csvFile);
+	}
+
+	/**
+	 * Counts the lines of the csv, then fills a cart of that size, the way Cart.main used to.
+	 * Each line is echoed to System.out, which CartState throws away.
+	 * @param state The generated cart.
+	 * @return The filled cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public SKU[] populateCart(CartState state) throws Exception{
+		SKU[] SKUArray = new SKU[Cart.findCartSize(state.csvFile)];
+		Cart.populateCart(SKUArray, state.csvFile);
+		return SKUArray;
+	}
+
+	/**
+	 * Loads the cart in a single pass without echoing the lines.
+	 * @param state The generated cart.
+	 * @return The loaded cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public SKU[] loadCart(CartState state) throws Exception{
+		return Cart.loadCart(state.csvFile);
+	}
+
+	/**
+	 * Loads the cart with the memory mapped parser.
+	 * @param state The generated cart.
+	 * @return The loaded cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public SKU[] mappedLoadCart(CartState state) throws Exception{
+		return MappedCartParser.loadCart(state.csvFile);
+	}
+
+	/**
+	 * Loads the cart with the memory mapped parser on one thread per available processor.
+	 * @param state The generated cart.
+	 * @return The loaded cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public SKU[] parallelLoadCart(CartState state) throws Exception{
+		return ParallelCartParser.loadCart(state.csvFile);
+	}
+
+	/**
+	 * Loads the csv into columns with the memory mapped parser, to compare against the binary cart.
+	 * @param state The generated cart.
+	 * @return The loaded cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public ColumnarCart mappedLoadColumnar(CartState state) throws Exception{
+		return ColumnarCart.load(state.csvFile);
+	}
+
+	/**
+	 * Loads the binary cart into columns.
+	 * @param state The generated cart.
+	 * @return The loaded cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public ColumnarCart binaryLoadColumnar(CartState state) throws Exception{
+		return BinaryCart.loadColumnar(state.binaryFile);
+	}
+
+	/**
+	 * Loads the binary cart as SKUs.
+	 * @param state The generated cart.
+	 * @return The loaded cart.
+	 * @throws Exception Throws any exception raised while loading the cart.
+	 */
+	@Benchmark
+	public SKU[] binaryLoadCart(CartState state) throws Exception{
+		return BinaryCart.loadCart(state.binaryFile);
+	}
+}
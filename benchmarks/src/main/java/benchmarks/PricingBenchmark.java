@@ -0,0 +1,85 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import classes.Cart;
+import classes.CartTotals;
+import classes.DiscountEngine;
+import classes.PricingResult;
+
+/**
+ * Measures every way of pricing an already loaded cart.
+ *
+ * Cart.applyDiscounts and Cart.price start their scan over every time a buy X get Y deal is used up, so their cost grows
+ * with the number of items times the number of deals. On the million line BOGO and MIXED carts a single call takes
+ * minutes. Pass -p lines=10,10000 for a quick run.
+ * @author Alex
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PricingBenchmark {
+
+	/**
+	 * Prices the cart and prints every line and the totals, which CartState throws away.
+	 * @param state The loaded cart.
+	 */
+	@Benchmark
+	public void applyDiscounts(CartState state){
+		Cart.applyDiscounts(state.cart);
+	}
+
+	/**
+	 * Prices the cart with the rescanning loop, keeping a record of each line instead of printing it.
+	 * @param state The loaded cart.
+	 * @return The priced cart.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	@Benchmark
+	public PricingResult price(CartState state) throws Exception{
+		return Cart.price(state.cart, state.today);
+	}
+
+	/**
+	 * Prices the cart in a single pass.
+	 * @param state The loaded cart.
+	 * @return The totals.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	@Benchmark
+	public CartTotals discountEngine(CartState state) throws Exception{
+		return DiscountEngine.price(state.cart, state.today);
+	}
+
+	/**
+	 * Prices the cart in a single pass over its columns.
+	 * @param state The loaded cart.
+	 * @return The totals.
+	 */
+	@Benchmark
+	public CartTotals columnar(CartState state){
+		return state.columns.price(state.today);
+	}
+
+	/**
+	 * Prices the cart over its columns on every thread of the common fork/join pool.
+	 * @param state The loaded cart.
+	 * @return The totals.
+	 * @throws InterruptedException Throws if interrupted while waiting for the pool.
+	 */
+	@Benchmark
+	public CartTotals columnarParallel(CartState state) throws InterruptedException{
+		return state.columns.priceParallel(state.today);
+	}
+}
@@ -0,0 +1,61 @@
+package benchmarks;
+
+import classes.CartGenerator;
+
+/**
+ * The promotion types given to the items of a generated cart.
+ * @author Alex
+ *
+ */
+public enum PromotionMix {
+	/**
+	 * Every item has no promotion, "n".
+	 */
+	NONE(100, 0, 0, 0),
+	/**
+	 * Every item has a percent discount, "%xZ".
+	 */
+	PERCENT(0, 100, 0, 0),
+	/**
+	 * Every item has a flat rebate, "rxZ".
+	 */
+	REBATE(0, 0, 100, 0),
+	/**
+	 * Every item is part of a buy X get Y Z% off deal, "bxXxYxZ".
+	 */
+	BOGO(0, 0, 0, 100),
+	/**
+	 * A spread of all four, weighted towards items with no promotion the way a real cart is.
+	 */
+	MIXED(40, 25, 15, 20);
+
+	/**
+	 * The relative weight of each promotion type.
+	 */
+	private final int none;
+	private final int percent;
+	private final int rebate;
+	private final int bogo;
+
+	/**
+	 * Constructor for a mix.
+	 * @param inNone The weight of items with no promotion.
+	 * @param inPercent The weight of items with a percent discount.
+	 * @param inRebate The weight of items with a rebate.
+	 * @param inBogo The weight of buy X get Y deals.
+	 */
+	private PromotionMix(int inNone, int inPercent, int inRebate, int inBogo){
+		this.none = inNone;
+		this.percent = inPercent;
+		this.rebate = inRebate;
+		this.bogo = inBogo;
+	}
+
+	/**
+	 * Gives a generator this mix of promotion types.
+	 * @param generator The generator to set up.
+	 */
+	public void configure(CartGenerator generator){
+		generator.setPromotionWeights(none, percent, rebate, bogo);
+	}
+}
@@ -0,0 +1,173 @@
+package benchmarks;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import classes.ColorCode;
+import classes.Money;
+import classes.Promotion;
+import classes.PromotionDates;
+import classes.SKU;
+import classes.SizeCode;
+
+/**
+ * Measures building every SKU of a cart with each SKU constructor, from fields that have already been split out of the
+ * csv, so only the constructor itself is measured.
+ * @author Alex
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SkuBenchmark {
+
+	/**
+	 * The fields of every item of the generated cart, in the forms each constructor takes.
+	 */
+	@State(Scope.Benchmark)
+	public static class Fields {
+		int size;
+		int[] ids;
+		String[] colors;
+		String[] sizes;
+		String[] styles;
+		double[] prices;
+		long[] cents;
+		String[] types;
+		Promotion[] promotions;
+		Date[] startDates;
+		Date[] endDates;
+		int[] startDays;
+		int[] endDays;
+		ColorCode[] colorCodes;
+		SizeCode[] sizeCodes;
+
+		/**
+		 * Splits every line of the generated cart.
+		 * @param state The generated cart.
+		 * @throws Exception Throws any exception raised while reading the cart.
+		 */
+		@Setup(Level.Trial)
+		public void setUp(CartState state) throws Exception{
+			size = state.lines;
+			ids = new int[size];
+			colors = new String[size];
+			sizes = new String[size];
+			styles = new String[size];
+			prices = new double[size];
+			cents = new long[size];
+			types = new String[size];
+			promotions = new Promotion[size];
+			startDates = new Date[size];
+			endDates = new Date[size];
+			startDays = new int[size];
+			endDays = new int[size];
+			colorCodes = new ColorCode[size];
+			sizeCodes = new SizeCode[size];
+			SimpleDateFormat format = new SimpleDateFormat("dd/MM/yyyy");
+			BufferedReader reader = new BufferedReader(new FileReader(state.csvFile));
+			try {
+				String line;
+				for (int i = 0; i < size && (line = reader.readLine()) != null; i++){
+					String[] input = line.split(",");
+					ids[i] = Integer.parseInt(input[0]);
+					colors[i] = input[1];
+					sizes[i] = input[2];
+					styles[i] = input[3];
+					prices[i] = Double.parseDouble(input[4]);
+					cents[i] = Money.parse(input[4]);
+					types[i] = input[5];
+					promotions[i] = Promotion.compile(input[5]);
+					startDates[i] = format.parse(input[6]);
+					endDates[i] = format.parse(input[7]);
+					startDays[i] = PromotionDates.parse(input[6]);
+					endDays[i] = PromotionDates.parse(input[7]);
+					colorCodes[i] = ColorCode.fromName(input[1]);
+					sizeCodes[i] = SizeCode.fromName(input[2]);
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Builds every item with the original constructor, which takes a double price, the promotion type String and Dates.
+	 * @param fields The split fields of the cart.
+	 * @return The built items.
+	 * @throws Exception Throws any exception raised by the constructor.
+	 */
+	@Benchmark
+	public SKU[] dateConstructor(Fields fields) throws Exception{
+		SKU[] SKUArray = new SKU[fields.size];
+		for (int i = 0; i < fields.size; i++){
+			SKUArray[i] = new SKU(fields.ids[i], fields.colors[i], fields.sizes[i], fields.styles[i], fields.prices[i],
+					fields.types[i], fields.startDates[i], fields.endDates[i]);
+		}
+		return SKUArray;
+	}
+
+	/**
+	 * Builds every item with the constructor for items with no promotion window.
+	 * @param fields The split fields of the cart.
+	 * @return The built items.
+	 * @throws Exception Throws any exception raised by the constructor.
+	 */
+	@Benchmark
+	public SKU[] noneConstructor(Fields fields) throws Exception{
+		SKU[] SKUArray = new SKU[fields.size];
+		for (int i = 0; i < fields.size; i++){
+			SKUArray[i] = new SKU(fields.ids[i], fields.colors[i], fields.sizes[i], fields.styles[i], fields.prices[i],
+					fields.types[i], "None", "None");
+		}
+		return SKUArray;
+	}
+
+	/**
+	 * Builds every item with the constructor Cart.loadCart uses, which takes cents, a parsed promotion and epoch days.
+	 * @param fields The split fields of the cart.
+	 * @return The built items.
+	 * @throws Exception Throws any exception raised by the constructor.
+	 */
+	@Benchmark
+	public SKU[] centsConstructor(Fields fields) throws Exception{
+		SKU[] SKUArray = new SKU[fields.size];
+		for (int i = 0; i < fields.size; i++){
+			SKUArray[i] = new SKU(fields.ids[i], fields.colors[i], fields.sizes[i], fields.styles[i], fields.cents[i],
+					fields.promotions[i], fields.startDays[i], fields.endDays[i]);
+		}
+		return SKUArray;
+	}
+
+	/**
+	 * Builds every item with the constructor MappedCartParser uses, which takes the color and size already looked up.
+	 * @param fields The split fields of the cart.
+	 * @return The built items.
+	 */
+	@Benchmark
+	public SKU[] codeConstructor(Fields fields){
+		SKU[] SKUArray = new SKU[fields.size];
+		for (int i = 0; i < fields.size; i++){
+			SKUArray[i] = new SKU(fields.ids[i], fields.colorCodes[i], fields.sizeCodes[i], fields.styles[i], fields.cents[i],
+					fields.promotions[i], fields.startDays[i], fields.endDays[i]);
+		}
+		return SKUArray;
+	}
+}
@@ -0,0 +1,178 @@
+package classes;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Reads a PricingAudit log back, prices every logged cart again as of the day it was first priced, and reports each
+ * run that no longer comes to what was recorded: the totals, and the first lines whose outcome or charge changed.
+ * A cart whose digest does not match what was recorded is reported and not priced.
+ *
+ * Usage: java classes.AuditReplay auditDirectory
+ * @author Alex
+ *
+ */
+public class AuditReplay {
+
+	/**
+	 * The most changed lines printed for one run.
+	 */
+	private static final int MAX_LINES_SHOWN = 5;
+
+	/**
+	 * The counts from one replay.
+	 */
+	public static class Summary {
+		long records;
+		long matched;
+		long changed;
+		long badDigests;
+		int damagedSegments;
+
+		/**
+		 * Gets the number of runs read from the log.
+		 * @return The record count.
+		 */
+		public long getRecords(){
+			return records;
+		}
+
+		/**
+		 * Gets the number of runs that priced the same again.
+		 * @return The matched count.
+		 */
+		public long getMatched(){
+			return matched;
+		}
+
+		/**
+		 * Gets the number of runs that priced differently.
+		 * @return The changed count.
+		 */
+		public long getChanged(){
+			return changed;
+		}
+
+		/**
+		 * Gets the number of runs whose cart did not match its digest.
+		 * @return The bad digest count.
+		 */
+		public long getBadDigests(){
+			return badDigests;
+		}
+
+		/**
+		 * Gets the number of segments whose last records were cut short or damaged.
+		 * @return The damaged segment count.
+		 */
+		public int getDamagedSegments(){
+			return damagedSegments;
+		}
+
+		@Override
+		public String toString(){
+			return records + " runs replayed: " + matched + " matched, " + changed + " changed, " + badDigests
+					+ " bad digests, " + damagedSegments + " damaged segments";
+		}
+	}
+
+	/**
+	 * Replays the log given on the command line and prints what changed.
+	 * @param args The directory of the audit log.
+	 * @throws Exception Throws any exception raised reading the log.
+	 */
+	public static void main(String[] args) throws Exception{
+		if (args.length < 1){
+			System.out.println("Usage: java classes.AuditReplay auditDirectory");
+			return;
+		}
+		Summary summary = replay(new File(args[0]), System.out);
+		System.out.println(summary);
+		if (summary.changed > 0 || summary.badDigests > 0){
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Replays a log.
+	 * @param directory The directory of the audit log.
+	 * @param out Where each changed run is reported.
+	 * @return The counts of runs that matched and changed.
+	 * @throws Exception Throws any exception raised reading the log or pricing a cart.
+	 */
+	public static Summary replay(File directory, final PrintStream out) throws Exception{
+		final Summary summary = new Summary();
+		summary.damagedSegments = PricingAudit.read(directory, new PricingAudit.RecordHandler(){
+			public void handle(PricingAudit.Record record) throws Exception{
+				summary.records++;
+				if (!record.isDigestValid()){
+					summary.badDigests++;
+					out.println(describe(record) + ": cart does not match its digest");
+					return;
+				}
+				PricingResult now = Cart.priceUnaudited(record.getCart(), record.getToday());
+				if (diff(record, now, out)){
+					summary.changed++;
+				} else {
+					summary.matched++;
+				}
+			}
+		});
+		return summary;
+	}
+
+	/**
+	 * Compares a run with the same cart priced again, printing any difference.
+	 * @return true if anything differs.
+	 */
+	private static boolean diff(PricingAudit.Record record, PricingResult now, PrintStream out){
+		PricingResult then = record.getResult();
+		List<LineDiscount> thenLines = then.getLines();
+		List<LineDiscount> nowLines = now.getLines();
+		boolean totalsDiffer = then.getTotalCents() != now.getTotalCents() || then.getRebateTotalCents() != now.getRebateTotalCents();
+		int shown = 0;
+		StringBuilder lines = new StringBuilder();
+		int count = Math.max(thenLines.size(), nowLines.size());
+		for (int l = 0; l < count; l++){
+			LineDiscount a = l < thenLines.size() ? thenLines.get(l) : null;
+			LineDiscount b = l < nowLines.size() ? nowLines.get(l) : null;
+			if (a != null && b != null && a.getIndex() == b.getIndex() && a.getOutcome() == b.getOutcome()
+					&& a.getChargedCents() == b.getChargedCents() && a.getRemaining() == b.getRemaining()){
+				continue;
+			}
+			if (shown++ < MAX_LINES_SHOWN){
+				lines.append(String.format("%n  line %d: %s, now %s", l, describe(a), describe(b)));
+			}
+		}
+		if (!totalsDiffer && shown == 0){
+			return false;
+		}
+		out.printf("%s: total $%,.2f, now $%,.2f; rebates $%,.2f, now $%,.2f; %d lines changed%s%n", describe(record),
+				then.getTotal(), now.getTotal(), then.getRebateTotal(), now.getRebateTotal(), shown, lines);
+		return true;
+	}
+
+	/**
+	 * Describes where a run was logged, when, and the start of its digest.
+	 */
+	private static String describe(PricingAudit.Record record){
+		StringBuilder digest = new StringBuilder();
+		byte[] bytes = record.getDigest();
+		for (int b = 0; b < 8; b++){
+			digest.append(String.format("%02x", bytes[b]));
+		}
+		return record.getSegment().getName() + "@" + record.getOffset() + " priced as of "
+				+ PromotionDates.format(record.getToday()) + " cart " + digest;
+	}
+
+	/**
+	 * Describes one line record.
+	 */
+	private static String describe(LineDiscount line){
+		if (line == null){
+			return "none";
+		}
+		return "item " + line.getIndex() + " " + line.getOutcome() + " $" + String.format("%,.2f", line.getCharged());
+	}
+}
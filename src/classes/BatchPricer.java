@@ -0,0 +1,264 @@
+package classes;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prices many carts at once. Each cart file is read on an I/O executor, which uses a virtual thread per cart when the
+ * JVM supports them and a fixed pool otherwise, and its discounts are applied on a bounded pool sized to the CPU count.
+ * Every cart gets its own parser and its own pricing pass, so carts share nothing but the evaluation date.
+ *
+ * At most four carts per pricing thread are loaded or loading and not yet priced at once. A cart holds an open mapped
+ * file while it loads and all of its SKUs until it is priced, so a batch of any size is read only as fast as the
+ * pricing pool takes carts, instead of every file being opened at once.
+ *
+ * Given a PricingCache, the I/O step maps each file and hashes the mapped bytes first, and a cart whose contents were
+ * priced before for a day with the same promotion windows is answered from the cache without being parsed or handed to
+ * the pricing pool. Any other cart is parsed from the same mapping, so the file is only read once either way.
+ * @author Alex
+ *
+ */
+public class BatchPricer {
+
+	/**
+	 * Runs the I/O bound step of reading each cart file.
+	 */
+	private final ExecutorService loadExecutor;
+
+	/**
+	 * Runs the CPU bound step of applying discounts to each cart.
+	 */
+	private final ExecutorService pricingExecutor;
+
+	/**
+	 * One permit for each cart that may be loaded or loading and not yet priced.
+	 */
+	private final Semaphore inFlight;
+
+	/**
+	 * The totals of carts already priced, or null if every cart is priced.
+	 */
+	private final PricingCache cache;
+
+	/**
+	 * What the I/O step found for one cart: its digest, and either its cached totals or its SKUs.
+	 */
+	private static class Lookup {
+		final PricingCache.Digest digest;
+		final CartTotals totals;
+		final SKU[] cart;
+		Lookup(PricingCache.Digest inDigest, CartTotals inTotals, SKU[] inCart){
+			this.digest = inDigest;
+			this.totals = inTotals;
+			this.cart = inCart;
+		}
+	}
+
+	/**
+	 * Builds a batch pricer with one pricing thread per available processor.
+	 */
+	public BatchPricer(){
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Builds a batch pricer.
+	 * @param pricingThreads The number of threads used to apply discounts.
+	 */
+	public BatchPricer(int pricingThreads){
+		this(pricingThreads, null);
+	}
+
+	/**
+	 * Builds a batch pricer that answers repeated carts from a cache.
+	 * @param pricingThreads The number of threads used to apply discounts.
+	 * @param inCache The cache of carts already priced, or null to price every cart.
+	 */
+	public BatchPricer(int pricingThreads, PricingCache inCache){
+		this.loadExecutor = newLoadExecutor(pricingThreads * 4);
+		this.pricingExecutor = Executors.newFixedThreadPool(pricingThreads);
+		this.inFlight = new Semaphore(pricingThreads * 4);
+		this.cache = inCache;
+	}
+
+	/**
+	 * Gets the cache of carts already priced.
+	 * @return The cache, or null if every cart is priced.
+	 */
+	public PricingCache getCache(){
+		return cache;
+	}
+
+	/**
+	 * Prices every .csv file in a directory.
+	 * @param directory The directory holding the cart files.
+	 * @return The totals of each cart, keyed by file path, in file name order.
+	 * @throws Exception Throws an exception if directory cannot be listed, or if the batch is interrupted.
+	 */
+	public Map<String, CartTotals> priceDirectory(String directory) throws Exception{
+		File[] files = new File(directory).listFiles();
+		if (files == null){
+			throw new Exception("Could not list " + directory);
+		}
+		Arrays.sort(files);
+		List<String> csvFiles = new ArrayList<String>();
+		for (File file : files){
+			if (file.isFile() && file.getName().toLowerCase().endsWith(".csv")){
+				csvFiles.add(file.getPath());
+			}
+		}
+		return priceFiles(csvFiles);
+	}
+
+	/**
+	 * Prices each cart file as of now.
+	 * @param csvFiles The cart files to price.
+	 * @return The totals of each cart, keyed by file path, in the order given.
+	 * @throws Exception Throws an exception if the batch is interrupted.
+	 */
+	public Map<String, CartTotals> priceFiles(List<String> csvFiles) throws Exception{
+		return priceFiles(csvFiles, new Date());
+	}
+
+	/**
+	 * Prices each cart file as of currentDate. A cart that cannot be read or priced has its stack trace printed,
+	 * and is left out of the result so the rest of the batch still completes.
+	 * @param csvFiles The cart files to price.
+	 * @param currentDate The date promotions are checked against, shared by every cart in the batch.
+	 * @return The totals of each cart, keyed by file path, in the order given.
+	 * @throws Exception Throws an exception if the batch is interrupted.
+	 */
+	public Map<String, CartTotals> priceFiles(List<String> csvFiles, final Date currentDate) throws Exception{
+		List<CompletableFuture<CartTotals>> pending = new ArrayList<CompletableFuture<CartTotals>>(csvFiles.size());
+		final int today = PromotionDates.epochDay(currentDate);
+		for (final String csvFile : csvFiles){
+			/**
+			 * Waits for a cart already submitted to be priced before loading another.
+			 */
+			inFlight.acquire();
+			CompletableFuture<CartTotals> future;
+			try {
+				if (cache == null){
+					future = CompletableFuture
+							.supplyAsync(() -> load(csvFile), loadExecutor)
+							.thenApplyAsync(cart -> price(cart, currentDate), pricingExecutor);
+				} else {
+					future = CompletableFuture
+							.supplyAsync(() -> lookup(csvFile, today), loadExecutor)
+							.thenCompose(lookup -> lookup.totals != null ? CompletableFuture.completedFuture(lookup.totals)
+									: CompletableFuture.supplyAsync(() -> priceAndCache(lookup, today), pricingExecutor));
+				}
+			} catch(RuntimeException e){
+				inFlight.release();
+				throw e;
+			}
+			future.whenComplete((totals, failure) -> inFlight.release());
+			pending.add(future);
+		}
+
+		Map<String, CartTotals> results = new LinkedHashMap<String, CartTotals>();
+		for (int i = 0; i < csvFiles.size(); i++){
+			try {
+				results.put(csvFiles.get(i), pending.get(i).get());
+			} catch(ExecutionException e){
+				e.getCause().printStackTrace();
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Stops both executors once the carts already submitted have been priced.
+	 * @throws InterruptedException Throws if interrupted while waiting for the executors to stop.
+	 */
+	public void shutdown() throws InterruptedException{
+		loadExecutor.shutdown();
+		pricingExecutor.shutdown();
+		loadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		pricingExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Reads one cart file with its own memory mapped parser.
+	 */
+	private static SKU[] load(String csvFile){
+		try {
+			return MappedCartParser.loadCart(csvFile);
+		} catch(RuntimeException e){
+			throw e;
+		} catch(Exception e){
+			throw new RuntimeException("Could not load " + csvFile, e);
+		}
+	}
+
+	/**
+	 * Maps one cart file, hashes it and looks it up in the cache, parsing the mapped cart only if it is not there.
+	 */
+	private Lookup lookup(String csvFile, int today){
+		try {
+			MappedByteBuffer[] windows = MappedCartParser.map(csvFile);
+			PricingCache.Digest digest = PricingCache.digest(windows);
+			CartTotals totals = cache.get(digest, today);
+			return totals != null ? new Lookup(digest, totals, null) : new Lookup(digest, null, MappedCartParser.loadCart(windows));
+		} catch(RuntimeException e){
+			throw e;
+		} catch(Exception e){
+			throw new RuntimeException("Could not load " + csvFile, e);
+		}
+	}
+
+	/**
+	 * Applies the discounts to a cart that was not cached, and caches its totals.
+	 */
+	private CartTotals priceAndCache(Lookup lookup, int today){
+		CartTotals totals;
+		try {
+			totals = DiscountEngine.price(lookup.cart, today);
+		} catch(RuntimeException e){
+			throw e;
+		} catch(Exception e){
+			throw new RuntimeException(e);
+		}
+		cache.put(lookup.digest, today, lookup.cart, totals);
+		return totals;
+	}
+
+	/**
+	 * Applies the discounts to one cart.
+	 */
+	private static CartTotals price(SKU[] cart, Date currentDate){
+		try {
+			return DiscountEngine.price(cart, currentDate);
+		} catch(RuntimeException e){
+			throw e;
+		} catch(Exception e){
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Builds the executor for reading carts. Uses a virtual thread per task when the JVM has them (Java 21 and later),
+	 * otherwise a fixed pool of fallbackThreads platform threads.
+	 */
+	static ExecutorService newLoadExecutor(int fallbackThreads){
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch(Exception e){
+			return Executors.newFixedThreadPool(fallbackThreads);
+		}
+	}
+}
@@ -0,0 +1,428 @@
+package classes;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A compact binary form of a cart, for carts that are loaded and priced many times. Converting the csv once moves all
+ * of the text parsing out of the load, which then only copies fixed width records out of a memory mapped file.
+ *
+ * File layout, all numbers big endian:
+ * Header, 24 bytes: the magic number 'NCRT', the format version (short), reserved flags (short), the record count
+ * (long) and the offset of the dictionaries (long).
+ * Records, RECORD_SIZE bytes each, in cart order: id (int), color code (byte), size code (byte), promotion code (short),
+ * style index (int), price in cents (long), promotion start day (int), promotion end day (int).
+ * Dictionaries, after the last record: the style count (int) followed by each style, then the promotion count (int)
+ * followed by each promotion type. Each String is written as a short byte length followed by its UTF-8 bytes.
+ *
+ * Days are epoch days, and items with no promotion window hold PromotionDates.NO_PROMOTION_DAY, as in SKU.
+ * Keeping the dictionaries at the end lets the converter stream the csv in one pass and patch the header last.
+ *
+ * Usage: java classes.BinaryCart csvFile binaryFile
+ * @author Alex
+ *
+ */
+public final class BinaryCart {
+
+	/**
+	 * The first four bytes of every binary cart, "NCRT".
+	 */
+	public static final int MAGIC = 0x4E435254;
+
+	/**
+	 * The format version this class writes and reads.
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * The size of the header in bytes.
+	 */
+	public static final int HEADER_SIZE = 24;
+
+	/**
+	 * The size of each record in bytes.
+	 */
+	public static final int RECORD_SIZE = 28;
+
+	/**
+	 * The most records mapped at once. Bigger files are mapped one window at a time.
+	 */
+	private static final int MAP_WINDOW_RECORDS = (1 << 30) / RECORD_SIZE;
+
+	/**
+	 * The size of the buffer records are gathered in before each write.
+	 */
+	private static final int WRITE_BUFFER = 1 << 17;
+
+	/**
+	 * The file being written.
+	 */
+	private final RandomAccessFile file;
+
+	/**
+	 * The channel of the file being written.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Records waiting to be written.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER);
+
+	/**
+	 * The index already given to each style, and each style in index order.
+	 */
+	private final HashMap<String, Integer> styleIndexes = new HashMap<String, Integer>();
+	private final ArrayList<String> styles = new ArrayList<String>();
+
+	/**
+	 * The code already given to each promotion type, and each type in code order.
+	 */
+	private final HashMap<String, Integer> promotionCodes = new HashMap<String, Integer>();
+	private final ArrayList<String> promotionTypes = new ArrayList<String>();
+
+	/**
+	 * The number of records written so far.
+	 */
+	private long recordCount;
+
+	/**
+	 * Constructor for a writer. Opens binaryFile, truncating it, and leaves room for the header.
+	 * @param binaryFile The location of the binary cart to write.
+	 * @throws IOException Throws if the file cannot be opened.
+	 */
+	private BinaryCart(String binaryFile) throws IOException{
+		this.file = new RandomAccessFile(binaryFile, "rw");
+		this.file.setLength(0);
+		this.channel = file.getChannel();
+		this.buffer.position(HEADER_SIZE);
+	}
+
+	/**
+	 * Converts a csv in the CartContents.csv format to a binary cart, reading it with the memory mapped parser.
+	 * Lines the parser skips are left out, so the binary cart holds exactly the items Cart.loadCart returns.
+	 * @param csvFile The location of the csv
+	 * @param binaryFile The location of the binary cart to write.
+	 * @return The number of items written.
+	 * @throws Exception Throws any exception raised while parsing the csv or writing the binary cart.
+	 */
+	public static long convert(String csvFile, String binaryFile) throws Exception{
+		final BinaryCart writer = new BinaryCart(binaryFile);
+		try {
+			new MappedCartParser().parse(csvFile, new SKUHandler(){
+				public void handle(SKU sku) throws Exception{
+					writer.write(sku);
+				}
+			});
+			writer.finish();
+		} finally {
+			writer.file.close();
+		}
+		return writer.recordCount;
+	}
+
+	/**
+	 * Writes the items of a cart to a binary cart.
+	 * @param SKUArray The items in the cart.
+	 * @param binaryFile The location of the binary cart to write.
+	 * @throws Exception Throws any exception raised while reading an SKU or writing the binary cart.
+	 */
+	public static void write(SKU[] SKUArray, String binaryFile) throws Exception{
+		BinaryCart writer = new BinaryCart(binaryFile);
+		try {
+			for (SKU sku : SKUArray){
+				writer.write(sku);
+			}
+			writer.finish();
+		} finally {
+			writer.file.close();
+		}
+	}
+
+	/**
+	 * Loads a binary cart straight into a columnar cart.
+	 * @param binaryFile The location of the binary cart.
+	 * @return A columnar cart holding the items of the binary cart, in order.
+	 * @throws Exception Throws an IOException if the file cannot be mapped or is not a binary cart this version can read.
+	 */
+	public static ColumnarCart loadColumnar(String binaryFile) throws Exception{
+		RandomAccessFile file = new RandomAccessFile(binaryFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long count = readHeader(channel);
+			Dictionaries dictionaries = readDictionaries(channel, count);
+			ColumnarCart cart = new ColumnarCart((int) count);
+			/**
+			 * Give each promotion of the file its code in the cart once, so each record is a plain copy.
+			 */
+			int[] cartCodes = new int[dictionaries.promotions.length];
+			for (int i = 0; i < cartCodes.length; i++){
+				cartCodes[i] = cart.promotionCode(dictionaries.promotions[i]);
+			}
+			long loaded = 0;
+			while (loaded < count){
+				int records = (int) Math.min(count - loaded, MAP_WINDOW_RECORDS);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + loaded * RECORD_SIZE, (long) records * RECORD_SIZE);
+				for (int offset = 0, end = records * RECORD_SIZE; offset < end; offset += RECORD_SIZE){
+					int promotion = promotionCode(buffer, offset, cartCodes.length);
+					cart.add(buffer.getInt(offset), buffer.getLong(offset + 12), cartCodes[promotion],
+							buffer.getInt(offset + 20), buffer.getInt(offset + 24));
+				}
+				loaded += records;
+			}
+			return cart;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Loads a binary cart as SKUs, sharing promotion terms through the shared PromotionCatalog.
+	 * @param binaryFile The location of the binary cart.
+	 * @return A dense array holding one SKU per record, in order.
+	 * @throws Exception Throws an IOException if the file cannot be mapped or is not a binary cart this version can read.
+	 */
+	public static SKU[] loadCart(String binaryFile) throws Exception{
+		RandomAccessFile file = new RandomAccessFile(binaryFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long count = readHeader(channel);
+			Dictionaries dictionaries = readDictionaries(channel, count);
+			PromotionCatalog.Local catalog = PromotionCatalog.getShared().newLocal();
+			ColorCode[] colors = ColorCode.values();
+			SizeCode[] sizes = SizeCode.values();
+			SKU[] SKUArray = new SKU[(int) count];
+			int index = 0;
+			while (index < count){
+				int records = (int) Math.min(count - index, MAP_WINDOW_RECORDS);
+				MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+						HEADER_SIZE + (long) index * RECORD_SIZE, (long) records * RECORD_SIZE);
+				for (int offset = 0, end = records * RECORD_SIZE; offset < end; offset += RECORD_SIZE){
+					int id = buffer.getInt(offset);
+					int color = buffer.get(offset + 4);
+					int size = buffer.get(offset + 5);
+					int style = buffer.getInt(offset + 8);
+					if (color < 0 || color >= colors.length || size < 0 || size >= sizes.length
+							|| style < 0 || style >= dictionaries.styles.length){
+						throw new IOException("Record " + index + " of " + binaryFile + " is corrupt");
+					}
+					Promotion promotion = dictionaries.promotions[promotionCode(buffer, offset, dictionaries.promotions.length)];
+					PromotionTerms terms = catalog.lookup(id, promotion, buffer.getInt(offset + 20), buffer.getInt(offset + 24));
+					SKUArray[index++] = new SKU(id, colors[color], sizes[size], dictionaries.styles[style],
+							buffer.getLong(offset + 12), terms);
+				}
+			}
+			return SKUArray;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Converts a csv to a binary cart from the command line.
+	 * @param args The csv to read and the binary cart to write.
+	 * @throws Exception Throws any exception raised while converting.
+	 */
+	public static void main(String[] args) throws Exception{
+		if (args.length < 2){
+			System.out.println("Usage: java classes.BinaryCart csvFile binaryFile");
+			return;
+		}
+		long count = convert(args[0], args[1]);
+		System.out.println("Wrote " + count + " items to " + args[1]);
+	}
+
+	/**
+	 * Appends one record for an SKU.
+	 * @param sku The item to write.
+	 * @throws Exception Throws any exception raised while reading the SKU or writing the file.
+	 */
+	private void write(SKU sku) throws Exception{
+		if (buffer.remaining() < RECORD_SIZE){
+			flush();
+		}
+		buffer.putInt(sku.getSKUID());
+		buffer.put(sku.getSKUColorCode().getCode());
+		buffer.put(sku.getSKUSizeCode().getCode());
+		buffer.putShort((short) code(promotionCodes, promotionTypes, sku.getSKUPromotionType(), 0xFFFF));
+		buffer.putInt(code(styleIndexes, styles, sku.getSKUStyle(), Integer.MAX_VALUE));
+		buffer.putLong(sku.getSKUPriceCents());
+		buffer.putInt(sku.getSKUPromotionStartDay());
+		buffer.putInt(sku.getSKUPromotionEndDay());
+		recordCount++;
+	}
+
+	/**
+	 * Writes the dictionaries after the last record, then goes back and fills in the header.
+	 * @throws IOException Throws if the file cannot be written.
+	 */
+	private void finish() throws IOException{
+		flush();
+		long dictionaryOffset = HEADER_SIZE + recordCount * RECORD_SIZE;
+		writeStrings(styles);
+		writeStrings(promotionTypes);
+		flush();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC);
+		header.putShort(VERSION);
+		header.putShort((short) 0);
+		header.putLong(recordCount);
+		header.putLong(dictionaryOffset);
+		header.flip();
+		channel.write(header, 0);
+	}
+
+	/**
+	 * Writes a count followed by each String as a short length and its UTF-8 bytes.
+	 * @param strings The Strings to write.
+	 * @throws IOException Throws if the file cannot be written.
+	 */
+	private void writeStrings(ArrayList<String> strings) throws IOException{
+		if (buffer.remaining() < 4){
+			flush();
+		}
+		buffer.putInt(strings.size());
+		for (String string : strings){
+			byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+			if (bytes.length > 0xFFFF){
+				throw new IOException("String is longer than " + 0xFFFF + " bytes: " + string.substring(0, 32) + "...");
+			}
+			if (buffer.remaining() < 2 + bytes.length){
+				flush();
+			}
+			buffer.putShort((short) bytes.length);
+			buffer.put(bytes);
+		}
+	}
+
+	/**
+	 * Writes the buffered bytes to the end of the file.
+	 * @throws IOException Throws if the file cannot be written.
+	 */
+	private void flush() throws IOException{
+		buffer.flip();
+		while (buffer.hasRemaining()){
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Gets the index already given to a String, giving it the next one if it has not been seen yet.
+	 * @param indexes The index of each String seen so far.
+	 * @param values Each String seen so far, in index order.
+	 * @param value The String to look up.
+	 * @param max The largest index the record field can hold.
+	 * @return The index of the String.
+	 * @throws IOException Throws if there are more distinct Strings than the record field can hold.
+	 */
+	private static int code(HashMap<String, Integer> indexes, ArrayList<String> values, String value, int max) throws IOException{
+		Integer index = indexes.get(value);
+		if (index != null){
+			return index.intValue();
+		}
+		if (values.size() > max){
+			throw new IOException("More than " + max + " distinct values");
+		}
+		indexes.put(value, Integer.valueOf(values.size()));
+		values.add(value);
+		return values.size() - 1;
+	}
+
+	/**
+	 * Reads and checks the header of a binary cart.
+	 * @param channel The channel of the binary cart.
+	 * @return The number of records.
+	 * @throws IOException Throws if the file is not a binary cart this version can read.
+	 */
+	private static long readHeader(FileChannel channel) throws IOException{
+		long size = channel.size();
+		if (size < HEADER_SIZE){
+			throw new IOException("Not a binary cart: too short");
+		}
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+		if (header.getInt(0) != MAGIC){
+			throw new IOException("Not a binary cart: bad magic number");
+		}
+		short version = header.getShort(4);
+		if (version != VERSION){
+			throw new IOException("Unsupported binary cart version " + version + ", expected " + VERSION);
+		}
+		long count = header.getLong(8);
+		long dictionaryOffset = header.getLong(16);
+		if (count < 0 || count > Integer.MAX_VALUE || dictionaryOffset != HEADER_SIZE + count * RECORD_SIZE || dictionaryOffset > size){
+			throw new IOException("Binary cart is truncated or corrupt");
+		}
+		return count;
+	}
+
+	/**
+	 * The style and promotion dictionaries of a binary cart.
+	 */
+	private static class Dictionaries {
+		String[] styles;
+		Promotion[] promotions;
+	}
+
+	/**
+	 * Reads the dictionaries that follow the records, compiling each promotion type once.
+	 * @param channel The channel of the binary cart.
+	 * @param count The number of records.
+	 * @return The dictionaries.
+	 * @throws IOException Throws if the dictionaries are truncated.
+	 */
+	private static Dictionaries readDictionaries(FileChannel channel, long count) throws IOException{
+		long offset = HEADER_SIZE + count * RECORD_SIZE;
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, channel.size() - offset);
+		Dictionaries dictionaries = new Dictionaries();
+		try {
+			dictionaries.styles = readStrings(buffer);
+			String[] types = readStrings(buffer);
+			dictionaries.promotions = new Promotion[types.length];
+			for (int i = 0; i < types.length; i++){
+				dictionaries.promotions[i] = PromotionCatalog.getShared().promotion(types[i]);
+			}
+		} catch(RuntimeException e){
+			throw new IOException("Binary cart dictionaries are truncated or corrupt", e);
+		}
+		return dictionaries;
+	}
+
+	/**
+	 * Reads a count followed by that many Strings, each a short length and its UTF-8 bytes.
+	 * @param buffer The buffer positioned at the count.
+	 * @return The Strings.
+	 */
+	private static String[] readStrings(ByteBuffer buffer){
+		String[] strings = new String[buffer.getInt()];
+		for (int i = 0; i < strings.length; i++){
+			byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(bytes);
+			strings[i] = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return strings;
+	}
+
+	/**
+	 * Reads the promotion code of a record and checks it is in the dictionary.
+	 * @param buffer The mapped records.
+	 * @param offset The offset of the record.
+	 * @param promotionCount The number of promotions in the dictionary.
+	 * @return The promotion code.
+	 * @throws IOException Throws if the code is not in the dictionary.
+	 */
+	private static int promotionCode(ByteBuffer buffer, int offset, int promotionCount) throws IOException{
+		int code = buffer.getShort(offset + 6) & 0xFFFF;
+		if (code >= promotionCount){
+			throw new IOException("Binary cart record has unknown promotion code " + code);
+		}
+		return code;
+	}
+}
@@ -0,0 +1,209 @@
+package classes;
+
+import java.util.Arrays;
+
+/**
+ * Prices buy X get Y Z% off deals by choosing which items each deal discounts, instead of taking items in cart order.
+ *
+ * Cart.applyDiscounts keeps one deal open at a time and gives each deal the next items of its id in the order they
+ * appear in the csv, so the same items can come to a different total when their rows are shuffled, and a deal that is
+ * never used up leaves later deals out. Here every BOGO item with valid promotion dates is put in a group with the
+ * other items of the same id and the same X, Y and Z, the prices of each group are sorted, and the group makes as
+ * many deals as it has X + Y items for. Which items those deals discount is set by a Policy. Items left over once a
+ * group's deals are made are totalled at full price, as are items whose X or Y is less than 1, since they can never
+ * complete a deal.
+ *
+ * The total only depends on which items are in the cart, not on their order, and each group costs a sort of its
+ * prices, so a cart of n BOGO items is priced in O(n log n).
+ * @author Alex
+ *
+ */
+public class BogoOptimizer {
+
+	/**
+	 * Which items of a group the deals discount.
+	 */
+	public enum Policy {
+		/**
+		 * Each deal discounts its Y cheapest items and charges full price for its X dearest, the way a till applies
+		 * buy X get Y: the discounted items are never dearer than the items paid for in the same deal. The deals are cut
+		 * from the dearest items down, which is the lowest total that rule allows, and leaves the cheapest items over.
+		 */
+		CHEAPEST,
+		/**
+		 * The deals discount the dearest items of the group, whatever they were bought with. Gives the lowest total.
+		 */
+		MOST_EXPENSIVE
+	}
+
+	/**
+	 * Which items the deals discount.
+	 */
+	private final Policy policy;
+
+	/**
+	 * Open addressed map from a group's id and terms to its slot.
+	 */
+	private int[] slots = new int[16];
+
+	/**
+	 * The id, X, Y and Z in basis points of each group, by slot.
+	 */
+	private int[] ids = new int[8];
+	private int[] buyCounts = new int[8];
+	private int[] getCounts = new int[8];
+	private long[] rates = new long[8];
+
+	/**
+	 * The prices of each group's items in cents, and how many there are, by slot.
+	 */
+	private long[][] prices = new long[8][];
+	private int[] counts = new int[8];
+
+	/**
+	 * The number of groups.
+	 */
+	private int groupCount;
+
+	/**
+	 * The total of the items that cannot make a deal, in cents.
+	 */
+	private long fullPrice;
+
+	/**
+	 * Constructor for an optimizer with no items.
+	 * @param inPolicy Which items the deals discount.
+	 */
+	public BogoOptimizer(Policy inPolicy){
+		if (inPolicy == null){
+			throw new IllegalArgumentException("Policy must not be null");
+		}
+		this.policy = inPolicy;
+	}
+
+	/**
+	 * Adds a BOGO item whose promotion dates are valid. Items can be added in any order.
+	 * @param id The id of the item.
+	 * @param price The price of the item, in cents.
+	 * @param promotion The item's BOGO promotion.
+	 */
+	public void add(int id, long price, Promotion promotion){
+		add(id, price, promotion.getBuyCount(), promotion.getGetCount(), promotion.getRateBasisPoints());
+	}
+
+	/**
+	 * Adds a BOGO item whose promotion dates are valid. Items can be added in any order.
+	 * @param id The id of the item.
+	 * @param price The price of the item, in cents.
+	 * @param buyCount The X in buy X get Y Z% off.
+	 * @param getCount The Y in buy X get Y Z% off.
+	 * @param rate The Z in buy X get Y Z% off, in basis points.
+	 */
+	void add(int id, long price, int buyCount, int getCount, long rate){
+		if (buyCount < 1 || getCount < 1){
+			fullPrice += price;
+			return;
+		}
+		int g = slot(id, buyCount, getCount, rate);
+		long[] group = prices[g];
+		if (counts[g] == group.length){
+			group = Arrays.copyOf(group, counts[g] * 2);
+			prices[g] = group;
+		}
+		group[counts[g]++] = price;
+	}
+
+	/**
+	 * Gets the total of every item added, with each group's deals applied.
+	 * @return The total, in cents.
+	 */
+	public long total(){
+		long total = fullPrice;
+		for (int g = 0; g < groupCount; g++){
+			long[] group = prices[g];
+			int n = counts[g];
+			Arrays.sort(group, 0, n);
+			int dealSize = buyCounts[g] + getCounts[g];
+			int deals = n / dealSize;
+			for (int i = 0; i < n; i++){
+				total += discounted(i, n, dealSize, deals, getCounts[g]) ? Money.percentOff(group[i], rates[g]) : group[i];
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Checks if the deals of a group discount the item at index i of its prices, sorted cheapest first.
+	 */
+	private boolean discounted(int i, int n, int dealSize, int deals, int getCount){
+		if (policy == Policy.MOST_EXPENSIVE){
+			return i >= n - deals * getCount;
+		}
+		/**
+		 * Deals are cut from the dearest item down. The leftover items are the cheapest, and the first getCount items of
+		 * each deal are its cheapest.
+		 */
+		int leftover = n - deals * dealSize;
+		return i >= leftover && (i - leftover) % dealSize < getCount;
+	}
+
+	/**
+	 * Finds the slot of a group, adding the group if it is not there yet.
+	 */
+	private int slot(int id, int buyCount, int getCount, long rate){
+		int mask = slots.length - 1;
+		int h = hash(id, buyCount, getCount, rate) & mask;
+		while (slots[h] != 0){
+			int g = slots[h] - 1;
+			if (ids[g] == id && buyCounts[g] == buyCount && getCounts[g] == getCount && rates[g] == rate){
+				return g;
+			}
+			h = (h + 1) & mask;
+		}
+		int g = groupCount++;
+		if (g == ids.length){
+			int length = g * 2;
+			ids = Arrays.copyOf(ids, length);
+			buyCounts = Arrays.copyOf(buyCounts, length);
+			getCounts = Arrays.copyOf(getCounts, length);
+			rates = Arrays.copyOf(rates, length);
+			prices = Arrays.copyOf(prices, length);
+			counts = Arrays.copyOf(counts, length);
+		}
+		ids[g] = id;
+		buyCounts[g] = buyCount;
+		getCounts[g] = getCount;
+		rates[g] = rate;
+		prices[g] = new long[4];
+		slots[h] = g + 1;
+		if (groupCount * 2 > slots.length){
+			rehash();
+		}
+		return g;
+	}
+
+	/**
+	 * Doubles the size of the slot map.
+	 */
+	private void rehash(){
+		int[] newSlots = new int[slots.length * 2];
+		int mask = newSlots.length - 1;
+		for (int g = 0; g < groupCount; g++){
+			int h = hash(ids[g], buyCounts[g], getCounts[g], rates[g]) & mask;
+			while (newSlots[h] != 0){
+				h = (h + 1) & mask;
+			}
+			newSlots[h] = g + 1;
+		}
+		slots = newSlots;
+	}
+
+	/**
+	 * Spreads the bits of a group's id and terms.
+	 */
+	private static int hash(int id, int buyCount, int getCount, long rate){
+		int h = ((id * 31 + buyCount) * 31 + getCount) * 31 + (int) (rate ^ (rate >>> 32));
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
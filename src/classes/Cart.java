@@ -2,16 +2,19 @@ package classes;
 
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 /**
- * Starts by reading over a csv, counting how many lines there are in it. Each line represents an item in the cart.
- * Generates an SKU array of appropriate size, and populates it by reading in data from a csv, and calling the SKU constructor for each line.
+ * Starts by reading over a csv in a single pass. Each line represents an item in the cart.
+ * Builds an SKU array by reading in data from the csv, and calling the SKU constructor for each line.
  * Once the SKU's are read in, promotion types and Start/End dates are checked for each SKU in the array, and if a promotion is valid,
  * the discount is applied.
  * The price after all discounts have been applied is printed to console.
@@ -20,33 +23,90 @@ import java.util.Date;
  */
 public class Cart {
 	/**
-	 * Main driver method for the program. Finds the size of the cart, generates an SKU array of appropriate size, populates it from a csv,
-	 * then applies any valid discounts.
-	 * @param args
+	 * Where load and pricing counts and timings are reported. Switched off unless setMetrics is called.
+	 */
+	private static volatile CartMetrics metrics = CartMetrics.NONE;
+
+	/**
+	 * Where every pricing run is recorded, or null. Switched off unless setAudit is called.
+	 */
+	private static volatile PricingAudit audit;
+
+	/**
+	 * The counts for one load of a csv, kept only while metrics are switched on.
+	 */
+	private static class LoadStats {
+		/**
+		 * The metrics the load reports to.
+		 */
+		final CartMetrics metrics;
+
+		/**
+		 * When the load started, from System.nanoTime.
+		 */
+		final long started = System.nanoTime();
+
+		/**
+		 * The lines and bytes read so far, and the time spent in SKU constructors.
+		 */
+		long lines;
+		long bytes;
+		long constructNanos;
+
+		LoadStats(CartMetrics inMetrics){
+			this.metrics = inMetrics;
+		}
+
+		/**
+		 * Counts one line read from the csv.
+		 */
+		void line(String line){
+			lines++;
+			bytes += line.length() + 1;
+		}
+
+		/**
+		 * Reports the load.
+		 */
+		void finish(){
+			metrics.cartParsed(lines, bytes, System.nanoTime() - started, constructNanos);
+		}
+	}
+
+	/**
+	 * Main driver method for the program. Loads the cart from a csv in a single pass, then applies any valid discounts.
+	 * @param args Optionally the csv to read, which may be gzip compressed, or "-" to read standard input, then optionally
+	 * a directory to record the pricing run to with PricingAudit.
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception{
 
 		
 		/**
-		 * The csv file to be read. CartContents.csv is a test file, with dummy data filled in.
+		 * The csv file to be read. CartContents.csv is a test file, with dummy data filled in, and is read unless
+		 * another file is given.
 		 */
-		String csvFile = "CartContents.csv";
+		String csvFile = args.length > 0 ? args[0] : "CartContents.csv";
 
 		/**
-		 * A counter to determine the size SKUArray should be initialized to.
-		 * Calls findCartSize to find the number of items in the cart.
+		 * The array that will contain data about each item in the cart, as an array of SKU's.
+		 * Built in a single pass over the csv by loadCart, so the file is no longer read twice.
 		 */
-		int cartSize = findCartSize(csvFile);
+		SKU[] SKUArray = "-".equals(csvFile) ? loadCart(CartSource.stdin(), System.out) : loadCart(csvFile, System.out);
 
 		/**
-		 * The array that will contain data about each item in the cart, as an array of SKU's.
+		 * If an audit directory is given, the run is recorded there for AuditReplay.
 		 */
-		SKU[] SKUArray = new SKU[cartSize];
-
-		populateCart(SKUArray, csvFile);
-
-		applyDiscounts(SKUArray);
+		PricingAudit log = args.length > 1 ? new PricingAudit(new File(args[1])) : null;
+		setAudit(log);
+		try {
+			applyDiscounts(SKUArray);
+		} finally {
+			setAudit(null);
+			if (log != null){
+				log.close();
+			}
+		}
 	}
 	/**
 	 * Populates SKUArray by reference with the items in the csv.
@@ -56,6 +116,15 @@ public class Cart {
 	 */
 	public static void populateCart(SKU[] SKUArray, String csvFile) throws Exception{
 
+		/**
+		 * The counts for this load, or null if metrics are off.
+		 */
+		LoadStats stats = startLoad();
+		/**
+		 * This load's front to the shared promotion catalog.
+		 */
+		PromotionCatalog.Local catalog = PromotionCatalog.getShared().newLocal();
+
 		/**
 		 * The actual reader that will be used to populate the SKUArray with SKU's. 
 		 * Made seperate reader to insure that no cross-pollination from cartSizeReader can occur.
@@ -67,12 +136,6 @@ public class Cart {
 		 */
 		String line = "";
 
-		/**
-		 * When reading in the csv, ',' is the character each cell is seperated by.
-		 */
-		String cvsSplitBy = ",";
-
-
 		try {
 			/**
 			 * Generates a buffered reader called br, and reads in the csv file. 
@@ -83,241 +146,566 @@ public class Cart {
 			 */
 			int currentPos = 0;
 			while ((line = br.readLine()) != null) {
+				if (stats != null){
+					stats.line(line);
+				}
 				/**
-				 * splits the input line into a string array. Each cell of the array is a field used by the SKU constructor.
+				 * parseLine splits the input line on ',' and builds the SKU, or returns null if the line should be skipped.
 				 */
-				String[] input = line.split(cvsSplitBy);
-				System.out.println(Arrays.toString(input));
-				int tempId = Integer.parseInt(input[0]);
-				double tempPrice = Double.parseDouble(input[4]);
-				if (!input[6].equalsIgnoreCase("None") && !input[7].equalsIgnoreCase("None")){
-					Date start = new SimpleDateFormat("dd/MM/yyyy").parse(input[6]);
-					Date end = new SimpleDateFormat("dd/MM/yyyy").parse(input[7]);
-					SKUArray[currentPos] = new SKU(tempId, input[1], input[2], input[3], tempPrice, input[5], start, end);
-					currentPos++;
-				}else if(input[6].equalsIgnoreCase("None") && input[7].equalsIgnoreCase("None")) {
-					SKUArray[currentPos] = new SKU(tempId, input[1], input[2], input[3], tempPrice, input[5], "none", "none");
+				SKU sku = parseLine(line, System.out, stats, catalog);
+				if (sku != null){
+					SKUArray[currentPos] = sku;
 					currentPos++;
 				}
+			}
 
+
+		} catch(FileNotFoundException e){
+			e.printStackTrace();
+		} catch(ParseException f){
+			f.printStackTrace();
+		} finally {
+			if (stats != null){
+				stats.finish();
+			}
+			if (br != null){
+				br.close();
+			}
+		}
+	}
+	/**
+	 * Loads the cart from the csv in a single pass, growing the cart as lines are read instead of counting them first.
+	 * Uses the same parsing rules as populateCart, but never leaves null holes for skipped lines.
+	 * @param csvFile The location of the csv
+	 * @return A dense array holding one SKU per accepted line of the csv.
+	 * @throws Exception Throws any exception raised by the SKU constructors.
+	 */
+	public static SKU[] loadCart(String csvFile) throws Exception{
+		return loadCart(csvFile, null);
+	}
+
+	/**
+	 * Loads the cart from the csv in a single pass, echoing each line to echo as it is read.
+	 * @param csvFile The location of the csv
+	 * @param echo The stream each line is echoed to, or null to load silently.
+	 * @return A dense array holding one SKU per accepted line of the csv.
+	 * @throws Exception Throws any exception raised by the SKU constructors.
+	 */
+	public static SKU[] loadCart(String csvFile, PrintStream echo) throws Exception{
+		final ArrayList<SKU> items = new ArrayList<SKU>();
+		streamCart(csvFile, new SKUHandler(){
+			public void handle(SKU sku){
+				items.add(sku);
 			}
+		}, echo);
+		return items.toArray(new SKU[items.size()]);
+	}
 
+	/**
+	 * Reads the csv in a single pass, handing each SKU to handler as soon as its line has been parsed.
+	 * Lets callers process carts that are too large to hold in memory at once.
+	 * @param csvFile The location of the csv
+	 * @param handler Receives each SKU, in csv order.
+	 * @throws Exception Throws any exception raised by the SKU constructors or by handler.
+	 */
+	public static void streamCart(String csvFile, SKUHandler handler) throws Exception{
+		streamCart(csvFile, handler, null);
+	}
 
+	/**
+	 * Reads the csv in a single pass, handing each SKU to handler, and echoing each line to echo as it is read.
+	 * @param csvFile The location of the csv
+	 * @param handler Receives each SKU, in csv order.
+	 * @param echo The stream each line is echoed to, or null to read silently.
+	 * @throws Exception Throws any exception raised by the SKU constructors or by handler.
+	 */
+	public static void streamCart(String csvFile, SKUHandler handler, PrintStream echo) throws Exception{
+		try {
+			streamCart(CartSource.fromFile(csvFile), handler, echo);
 		} catch(FileNotFoundException e){
 			e.printStackTrace();
 		} catch(ParseException f){
 			f.printStackTrace();
 		}
 	}
+
 	/**
-	 * Go's over the SKUArray and checks the price of each item, totalling them up. If an item's price has been added to the 
-	 * @param SKUArray
+	 * Loads the cart from a source in a single pass.
+	 * @param source Where to read the csv from.
+	 * @return A dense array holding one SKU per accepted line of the csv.
+	 * @throws Exception Throws an IOException if the source cannot be read, or any exception raised by the SKU constructors.
 	 */
-	public static void applyDiscounts(SKU[] SKUArray){
+	public static SKU[] loadCart(CartSource source) throws Exception{
+		return loadCart(source, null);
+	}
+
+	/**
+	 * Loads the cart from a source in a single pass, echoing each line to echo as it is read.
+	 * @param source Where to read the csv from.
+	 * @param echo The stream each line is echoed to, or null to load silently.
+	 * @return A dense array holding one SKU per accepted line of the csv.
+	 * @throws Exception Throws an IOException if the source cannot be read, or any exception raised by the SKU constructors.
+	 */
+	public static SKU[] loadCart(CartSource source, PrintStream echo) throws Exception{
+		final ArrayList<SKU> items = new ArrayList<SKU>();
+		streamCart(source, new SKUHandler(){
+			public void handle(SKU sku){
+				items.add(sku);
+			}
+		}, echo);
+		return items.toArray(new SKU[items.size()]);
+	}
+
+	/**
+	 * Reads a source in a single pass, handing each SKU to handler, and echoing each line to echo as it is read.
+	 * Unlike the String versions, a missing file or bad date is thrown rather than printed. The source is closed
+	 * before this returns or throws.
+	 * @param source Where to read the csv from.
+	 * @param handler Receives each SKU, in csv order.
+	 * @param echo The stream each line is echoed to, or null to read silently.
+	 * @throws Exception Throws an IOException if the source cannot be read, or any exception raised by the SKU constructors or by handler.
+	 */
+	public static void streamCart(CartSource source, SKUHandler handler, PrintStream echo) throws Exception{
+		BufferedReader br = null;
+		String line = "";
+		LoadStats stats = startLoad();
 		/**
-		 * When looking at any given cell in the csv, promotion types are seperated by 'x', allowing for promotion type and amount to be in one cell.
+		 * This load's front to the shared promotion catalog.
 		 */
-		String typeSplitBy = "x";
+		PromotionCatalog.Local catalog = PromotionCatalog.getShared().newLocal();
+		try {
+			br = source.openReader();
+			while ((line = br.readLine()) != null) {
+				if (stats != null){
+					stats.line(line);
+				}
+				SKU sku = parseLine(line, echo, stats, catalog);
+				if (sku != null){
+					handler.handle(sku);
+				}
+			}
+		} finally {
+			if (stats != null){
+				stats.finish();
+			}
+			if (br != null){
+				br.close();
+			}
+		}
+	}
 
+	/**
+	 * Turns one line of the csv into an SKU.
+	 * Lines with both dates set are given that promotion window, lines with both dates set to "None" get the default window,
+	 * and lines with only one date set to "None" are skipped.
+	 * @param line One line of the csv.
+	 * @param echo The stream the split line is echoed to, or null to parse silently.
+	 * @param stats The counts for the load, or null if metrics are off.
+	 * @param catalog The load's front to the shared promotion catalog.
+	 * @return The SKU for the line, or null if the line should be skipped.
+	 * @throws Exception Throws a ParseException for bad dates, or any exception raised by the SKU constructors.
+	 */
+	private static SKU parseLine(String line, PrintStream echo, LoadStats stats, PromotionCatalog.Local catalog) throws Exception{
 		try {
-			SimpleDateFormat formatter = new SimpleDateFormat("dd/MM/yyyy");
-			Date currentDate = new Date();
-			/**
-			 * The total price of the cart.
-			 */
-			double total = 0;
 			/**
-			 * The total amount of rebate a customer has accrued.
+			 * splits the input line into a string array. Each cell of the array is a field used by the SKU constructor.
 			 */
-			double rebateTotal = 0;
-			
+			String[] input = line.split(",");
+			if (echo != null){
+				echo.println(CartFormatter.formatRow(input));
+			}
+			return parseFields(input, stats, catalog);
+		} catch(Exception e){
+			if (stats != null){
+				stats.metrics.parseError(ParseError.of(e));
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Turns the fields of one line of the csv into an SKU, with the same rules as parseLine.
+	 * Lets callers with carts in another shape, such as PricingServer's JSON, build SKUs exactly as a csv would.
+	 * @param input The eight fields: id, color, size, style, price, promotion type, start date and end date.
+	 * @param catalog The cart's front to the shared promotion catalog, from PromotionCatalog.getShared().newLocal().
+	 * @return The SKU for the fields, or null if the line should be skipped.
+	 * @throws Exception Throws a ParseException for bad dates, or any exception raised by the SKU constructors.
+	 */
+	static SKU parseFields(String[] input, PromotionCatalog.Local catalog) throws Exception{
+		return parseFields(input, null, catalog);
+	}
+
+	/**
+	 * Turns the fields of one line of the csv into an SKU.
+	 * @param input The fields of the line.
+	 * @param stats The counts for the load, or null if metrics are off.
+	 * @param catalog The load's front to the shared promotion catalog.
+	 * @return The SKU for the fields, or null if the line should be skipped.
+	 * @throws Exception Throws a ParseException for bad dates, or any exception raised by the SKU constructors.
+	 */
+	private static SKU parseFields(String[] input, LoadStats stats, PromotionCatalog.Local catalog) throws Exception{
+		int tempId = Integer.parseInt(input[0]);
+		long tempPrice = Money.parse(input[4]);
+		if (input[6].equalsIgnoreCase("None") != input[7].equalsIgnoreCase("None")){
+			if (stats != null){
+				stats.metrics.parseError(ParseError.HALF_WINDOW);
+			}
+			return null;
+		}
+		/**
+		 * Both dates are set, or both are "None". Lines of an id that repeat its promotion share one set of terms,
+		 * and skip parsing the promotion type and dates.
+		 */
+		PromotionTerms terms = catalog.lookup(tempId, input[5], input[6], input[7]);
+		long constructStart = stats != null ? System.nanoTime() : 0;
+		/**
+		 * The color and size are looked up here rather than by the String constructor, which prints to the console on
+		 * every bad value, so a request to PricingServer cannot make the server print at will.
+		 */
+		ColorCode color = ColorCode.fromName(input[1]);
+		if (color == null){
+			throw new Exception("Unsupported Color");
+		}
+		SizeCode size = SizeCode.fromName(input[2]);
+		if (size == null){
+			throw new Exception("Unsupported Size");
+		}
+		SKU sku = new SKU(tempId, color, size, input[3], tempPrice, terms);
+		if (stats != null){
+			stats.constructNanos += System.nanoTime() - constructStart;
+		}
+		return sku;
+	}
+
+	/**
+	 * Starts counting a load of a csv.
+	 * @return The counts for the load, or null if metrics are off.
+	 */
+	private static LoadStats startLoad(){
+		CartMetrics current = metrics;
+		return current.isEnabled() ? new LoadStats(current) : null;
+	}
+
+	/**
+	 * Sets where load and pricing counts and timings are reported.
+	 * @param inMetrics The metrics to report to, or null to switch metrics off.
+	 */
+	public static void setMetrics(CartMetrics inMetrics){
+		metrics = inMetrics == null ? CartMetrics.NONE : inMetrics;
+	}
+
+	/**
+	 * Gets where load and pricing counts and timings are reported.
+	 * @return The metrics in use. CartMetrics.NONE if metrics are off.
+	 */
+	public static CartMetrics getMetrics(){
+		return metrics;
+	}
+
+	/**
+	 * Sets where every pricing run is recorded.
+	 * @param inAudit The audit log to record runs to, or null to stop recording.
+	 */
+	public static void setAudit(PricingAudit inAudit){
+		audit = inAudit;
+	}
+
+	/**
+	 * Gets where every pricing run is recorded.
+	 * @return The audit log in use, or null if runs are not recorded.
+	 */
+	public static PricingAudit getAudit(){
+		return audit;
+	}
+
+	/**
+	 * Go's over the SKUArray and checks the price of each item, totalling them up, then prints a line for each item and the totals.
+	 * @param SKUArray
+	 */
+	public static void applyDiscounts(SKU[] SKUArray){
+		try {
+			CartFormatter.print(price(SKUArray), System.out);
+		} catch(Exception g){
+			g.printStackTrace();
+		}
+	}
+
+	/**
+	 * Prices the cart as of now, without printing anything.
+	 * @param SKUArray The items in the cart.
+	 * @return The totals, and a record of what was applied to each item in the order the items were totalled.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static PricingResult price(SKU[] SKUArray) throws Exception{
+		return price(SKUArray, PromotionDates.today());
+	}
+
+	/**
+	 * Prices the cart as of currentDate, without printing anything.
+	 * @param SKUArray The items in the cart.
+	 * @param currentDate The date promotions are checked against.
+	 * @return The totals, and a record of what was applied to each item in the order the items were totalled.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static PricingResult price(SKU[] SKUArray, Date currentDate) throws Exception{
+		return price(SKUArray, PromotionDates.epochDay(currentDate));
+	}
+
+	/**
+	 * Prices the cart as of today, without printing anything, and records the run if an audit log is set.
+	 * @param SKUArray The items in the cart.
+	 * @param today The epoch day promotions are checked against, worked out once for the whole cart.
+	 * @return The totals, and a record of what was applied to each item in the order the items were totalled.
+	 * @throws Exception Throws any exception raised while reading an SKU, or an IOException if the audit log has failed.
+	 */
+	public static PricingResult price(SKU[] SKUArray, int today) throws Exception{
+		PricingResult result = priceUnaudited(SKUArray, today);
+		PricingAudit current = audit;
+		if (current != null){
+			current.record(SKUArray, today, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Go's over the SKUArray and checks the price of each item, totalling them up. Valid promotions are applied, and
+	 * a record of what was applied to each item is kept instead of printed. Nothing is recorded to the audit log, so
+	 * AuditReplay can price logged carts again with this.
+	 * @param SKUArray The items in the cart.
+	 * @param today The epoch day promotions are checked against, worked out once for the whole cart.
+	 * @return The totals, and a record of what was applied to each item in the order the items were totalled.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	static PricingResult priceUnaudited(SKU[] SKUArray, int today) throws Exception{
+		/**
+		 * Where this run is reported, and when it started if metrics are on.
+		 */
+		CartMetrics current = metrics;
+		long started = current.isEnabled() ? System.nanoTime() : 0;
+		/**
+		 * The number of passes made over the cart.
+		 */
+		int passes = 0;
+		/**
+		 * What was applied to each item, in the order the items are totalled.
+		 */
+		List<LineDiscount> lines = new ArrayList<LineDiscount>(SKUArray.length);
+		/**
+		 * The total price of the cart, in cents.
+		 */
+		long total = 0;
+		/**
+		 * The total amount of rebate a customer has accrued, in cents.
+		 */
+		long rebateTotal = 0;
+		
+		/**
+		 * A boolean flag used to see if every item in the cart has been totalled.
+		 */
+		boolean newSale = true;
+		
+		/**
+		 * A boolean flag used to see if a BOGO type promotion is active
+		 */
+		boolean bogo = false;		
+		
+		/**
+		 * An array of booleans denoting if a given correspondingly indexed item in SKUArray has been totaled.
+		 */
+		boolean[] appliedSale = new boolean[SKUArray.length];	
+		
+		/**
+		 * The state of any registered PromotionRules for this cart, and what they add beyond the charge of each item.
+		 */
+		PricingContext context = new PricingContext(today);
+		
+		/**
+		 * Loop over the cart until newSale is not set to true. Every time an item has it's price added to total, newSale is set to true.
+		 */
+		while (newSale){
+			newSale = false;
+			passes++;
 			/**
-			 * A boolean flag used to see if every item in the cart has been totalled.
+			 * The id of the current bogo deal. Used to make sure bogo deals are not used up on different id'd items.
 			 */
-			boolean newSale = true;
+			int bogoId = 0;
 			
 			/**
-			 * A boolean flag used to see if a BOGO type promotion is active
+			 * The X in buy X get Y Z% off
 			 */
-			boolean bogo = false;		
+			int bogoX = 0;
 			
 			/**
-			 * An array of booleans denoting if a given correspondingly indexed item in SKUArray has been totaled.
+			 * The Y in buy X get Y Z% off
 			 */
-			boolean[] appliedSale = new boolean[SKUArray.length];	
-			
+			int bogoY = 0;
 			/**
-			 * Loop over the cart until newSale is not set to true. Every time an item has it's price added to total, newSale is set to true.
+			 * Break label used to escape for loop when a bogo sale is used up.
 			 */
-			while (newSale){
-				newSale = false;
-				/**
-				 * The id of the current bogo deal. Used to make sure bogo deals are not used up on different id'd items.
-				 */
-				int bogoId = 0;
-				
-				/**
-				 * The X in buy X get Y Z% off
-				 */
-				int bogoX = 0;
-				
-				/**
-				 * The Y in buy X get Y Z% off
-				 */
-				int bogoY = 0;
+			DiscountStart:
 				/**
-				 * Break label used to escape for loop when a bogo sale is used up.
+				 * Loops over all of SKUArray
 				 */
-				DiscountStart:
+				for (int i = 0; i < SKUArray.length; i++){
+					
 					/**
-					 * Loops over all of SKUArray
+					 * The price of SKUArray[i], in cents
 					 */
-					for (int i = 0; i < SKUArray.length; i++){
+					long price;
+					price = SKUArray[i].getSKUPriceCents();
+					/**
+					 * Stops items that have already been talied from being double counted.
+					 */
+					if(!appliedSale[i]){
 						
 						/**
-						 * The price of SKUArray[i]
+						 * Checks that the promotion date is valid. Note that "none" promotion types still require valid dates to be applied.
 						 */
-						double price;
-						price = SKUArray[i].getSKUPrice();
-						/**
-						 * Stops items that have already been talied from being double counted.
-						 */
-						if(!appliedSale[i]){
+						int start = SKUArray[i].getSKUPromotionStartDay();
+						int end = SKUArray[i].getSKUPromotionEndDay();
+						if(start <= today && end > today){
+							/**
+							 * The promotion of SKUArray[i], already broken into it's component parts. I.E. type and magnitude
+							 */
+							Promotion promotion = SKUArray[i].getSKUPromotion();
 							
 							/**
-							 * Checks that the promotion date is valid. Note that "none" promotion types still require valid dates to be applied.
+							 * If the sale is % discount, reduce the price by the given percent.
 							 */
-							if(SKUArray[i].getSKUPromotionStart().compareTo(currentDate)<= 0 && SKUArray[i].getSKUPromotionEnd().compareTo(currentDate)>0){
-								/**
-								 * The promotion type of SKUArray[i]
-								 */
-								String type = new String(SKUArray[i].getSKUPromotionType());
+							if (promotion.getKind() == Promotion.Kind.PERCENT) {
+								appliedSale[i] = true;
+								newSale = true;
+								long discount = price - Money.percentOff(price, promotion.getRateBasisPoints());
+								lines.add(new LineDiscount(i, LineDiscount.Outcome.PERCENT, price, price-discount, promotion, 0, start, end));
+								total += price-discount;
 								
-								/**
-								 * Breaks the promotion type of SKUArray into it's component parts. I.E. type and magnitude
-								 */
-								String[] typeData = type.split(typeSplitBy);
+							/**
+							 * If the sale is flat rebate, do not change price, but add rebate to rebateTotal.
+							 */
+							} else if (promotion.getKind() == Promotion.Kind.REBATE){
+								appliedSale[i] = true;
+								newSale = true;
+								lines.add(new LineDiscount(i, LineDiscount.Outcome.REBATE, price, price, promotion, 0, start, end));
+								total += price;
+								rebateTotal += promotion.getRebateCents();
+							
+							/**
+							 * If the sale is BXGYZ% off..
+							 */
+							} else if (promotion.getKind() == Promotion.Kind.BOGO){
 								
 								/**
-								 * If the sale is % discount, reduce the price by the given percent.
+								 * If a BXGYZ% deal is not already active..
+								 * set bogo to true, and set X and Y to the corrisponding values. 
+								 * Record the id of the current Item
+								 * Increase the total by the item's base price
 								 */
-								if (typeData[0].equalsIgnoreCase("%")) {	
+								if(!bogo){
+									bogo = true;
+									bogoX = promotion.getBuyCount()-1;
+									bogoY = promotion.getGetCount();
+									bogoId = SKUArray[i].getSKUID();
+									total += price;
 									appliedSale[i] = true;
 									newSale = true;
-									double discount = price*(Double.parseDouble(typeData[1])*.01);
-									System.out.printf("$%,.2f after %s%% discount.%n", price-discount, typeData[1]);
-									total += price-discount;
-									
+									if (bogoX != 0){
+										lines.add(new LineDiscount(i, LineDiscount.Outcome.BOGO_DETECTED, price, price, promotion, bogoX, start, end));
+									} else {
+										lines.add(new LineDiscount(i, LineDiscount.Outcome.BOGO_STARTED, price, price, promotion, 0, start, end));
+									}
 								/**
-								 * If the sale is flat rebate, do not change price, but add rebate to rebateTotal.
+								 * If a BXGYZ% sale is active, and SKUArray is the correct item, but the X condition has not been met..
+								 * Decrement bogoX, and tally the price.
 								 */
-								} else if (typeData[0].equalsIgnoreCase("r")){
+								} else if(bogo && bogoX > 0 && SKUArray[i].getSKUID() == bogoId){
+									bogoX--;
+									total += price;
 									appliedSale[i] = true;
 									newSale = true;
-									System.out.printf("$%,.2f $%,.2f Flat Rebate.%n", price, Double.parseDouble(typeData[1]));
-									total += price;
-									rebateTotal += Double.parseDouble(typeData[1]);
-								
+									if (bogoX != 0){
+										lines.add(new LineDiscount(i, LineDiscount.Outcome.BOGO_DETECTED, price, price, promotion, bogoX, start, end));
+									} else {
+										lines.add(new LineDiscount(i, LineDiscount.Outcome.BOGO_STARTED, price, price, promotion, 0, start, end));
+									}
 								/**
-								 * If the sale is BXGYZ% off..
+								 * If a BXGYZ% sale is active, and SKUArray is the correct item, and the X condition has been met..
+								 * Decrement bogoY, and apply the discount, and tally the price.
 								 */
-								} else if (typeData[0].equalsIgnoreCase("b")){
-									
-									/**
-									 * If a BXGYZ% deal is not already active..
-									 * set bogo to true, and set X and Y to the corrisponding values. 
-									 * Record the id of the current Item
-									 * Increase the total by the item's base price
-									 */
-									if(!bogo){
-										bogo = true;
-										bogoX = Integer.parseInt(typeData[1])-1;
-										bogoY = Integer.parseInt(typeData[2]);
-										bogoId = SKUArray[i].getSKUID();
-										total += price;
-										appliedSale[i] = true;
-										newSale = true;
-										if (bogoX != 0){
-											System.out.printf("$%,.2f Buy %s Get %s %s%% off sale detected. Buy %d more items to start.%n", 
-													price, typeData[1], typeData[2], typeData[3], bogoX);
-										} else {
-											System.out.printf("$%,.2f Buy %s Get %s %s%% off sale started.%n", 
-													price, typeData[1], typeData[2], typeData[3]);
-										}
-									/**
-									 * If a BXGYZ% sale is active, and SKUArray is the correct item, but the X condition has not been met..
-									 * Decrement bogoX, and tally the price.
-									 */
-									} else if(bogo && bogoX > 0 && SKUArray[i].getSKUID() == bogoId){
-										bogoX--;
-										total += price;
+								} else if(bogo && bogoX == 0 && SKUArray[i].getSKUID() == bogoId){
+
+									if (bogoY > 0){
+										bogoY--;
+										long discount;
+										discount = price - Money.percentOff(price, promotion.getRateBasisPoints());
+										total += price - discount;
 										appliedSale[i] = true;
 										newSale = true;
-										if (bogoX != 0){
-											System.out.printf("$%,.2f Buy %s Get %s %s%% off sale detected. Buy %d more items to start.%n", 
-													price, typeData[1], typeData[2], typeData[3], bogoX);
+										/**
+										 * If this most recent item has decreased bogoY to 0, set bogo to false, and break out of the if loop.
+										 */
+										if(bogoY == 0){
+											bogo = false;
+											lines.add(new LineDiscount(i, LineDiscount.Outcome.BOGO_USED_UP, price, price-discount, promotion, 0, start, end));
+											break DiscountStart;
 										} else {
-											System.out.printf("$%,.2f Buy %s Get %s %s%% off sale started.%n", 
-													price, typeData[1], typeData[2], typeData[3]);
-										}
-									/**
-									 * If a BXGYZ% sale is active, and SKUArray is the correct item, and the X condition has been met..
-									 * Decrement bogoY, and apply the discount, and tally the price.
-									 */
-									} else if(bogo && bogoX == 0 && SKUArray[i].getSKUID() == bogoId){
-
-										if (bogoY > 0){
-											bogoY--;
-											double discount;
-											discount = price * (Double.parseDouble(typeData[3])*.01);
-											total += price - discount;
-											appliedSale[i] = true;
-											newSale = true;
-											/**
-											 * If this most recent item has decreased bogoY to 0, set bogo to false, and break out of the if loop.
-											 */
-											if(bogoY == 0){
-												bogo = false;
-												System.out.printf("$%,.2f Buy %s Get %s %s%% off sale applied. Deal has been used up.%n", (price-discount), typeData[1], typeData[2], typeData[3]);
-												break DiscountStart;
-											} else {
-												System.out.printf("$%,.2f Buy %s Get %s %s%% off sale applied. Deal will last %d more items.%n", (price-discount), typeData[1], typeData[2], typeData[3], bogoY);
-											}
+											lines.add(new LineDiscount(i, LineDiscount.Outcome.BOGO_APPLIED, price, price-discount, promotion, bogoY, start, end));
 										}
 									}
-								/**
-								 * If no promotion is applied, just increase the total price of the cart by the item's price.
-								 */
-								} else if (typeData[0].equalsIgnoreCase("n")) {
-									appliedSale[i] = true;
-									newSale = true;
-									System.out.printf("$%,.2f No sale applied%n", price);
-									total += price;
 								}
 							/**
-							 * If the sale dates are not valid, do not apply any discount, and inform the customer.
+							 * If no promotion is applied, just increase the total price of the cart by the item's price.
 							 */
-							} else {
-								System.out.printf("$%,.2f Promotion only valid from ", price);
-								System.out.println(formatter.format(SKUArray[i].getSKUPromotionStart())+ " until " + formatter.format(SKUArray[i].getSKUPromotionEnd()));
+							} else if (promotion.getKind() == Promotion.Kind.NONE) {
 								appliedSale[i] = true;
 								newSale = true;
+								lines.add(new LineDiscount(i, LineDiscount.Outcome.NO_SALE, price, price, promotion, 0, start, end));
 								total += price;
+							
+							/**
+							 * If the sale is a registered rule, let the rule work out what the item is charged.
+							 */
+							} else if (promotion.getKind() == Promotion.Kind.RULE) {
+								appliedSale[i] = true;
+								newSale = true;
+								long charged = promotion.getRule().apply(context, i, SKUArray[i].getSKUID(), price, promotion);
+								lines.add(new LineDiscount(i, LineDiscount.Outcome.RULE, price, charged, promotion, 0, start, end));
+								total += charged;
 							}
+						/**
+						 * If the sale dates are not valid, do not apply any discount, and inform the customer.
+						 */
+						} else {
+							lines.add(new LineDiscount(i, LineDiscount.Outcome.EXPIRED, price, price, SKUArray[i].getSKUPromotion(), 0, start, end));
+							appliedSale[i] = true;
+							newSale = true;
+							total += price;
 						}
 					}
-			}
-			/**
-			 * Output the total cost of the cart after discounts, and if rebates are available, print that value too.
-			 */
-			System.out.printf("Total Cart Price after discounts: $%,.2f%n", total);
-			if (rebateTotal > 0){
-				System.out.println("$"+ rebateTotal + " of rebates available");
-			}
-		} catch(Exception g){
-			g.printStackTrace();
+				}
+		}
+		context.finish();
+		total += context.getTotal();
+		rebateTotal += context.getRebateTotal();
+		if (current.isEnabled()){
+			reportPricing(current, SKUArray.length, passes, System.nanoTime() - started, lines);
 		}
+		return new PricingResult(total, rebateTotal, lines);
+	}
 
+	/**
+	 * Reports a pricing run, counting the outcomes from the line records so the pricing loop itself counts nothing.
+	 */
+	private static void reportPricing(CartMetrics current, int items, int passes, long nanos, List<LineDiscount> lines){
+		long[] counts = new long[LineDiscount.Outcome.values().length];
+		for (LineDiscount line : lines){
+			counts[line.getOutcome().ordinal()]++;
+		}
+		current.cartPriced(items, passes, nanos);
+		for (LineDiscount.Outcome outcome : LineDiscount.Outcome.values()){
+			if (counts[outcome.ordinal()] > 0){
+				current.promotionsApplied(outcome, counts[outcome.ordinal()]);
+			}
+		}
 	}
 
 	/**
@@ -327,12 +715,13 @@ public class Cart {
 	 */
 	public static int findCartSize(String csvFile){
 		int cartSize = 0;
-		try {
 
-			/**
-			 * A bufferedReader used to find the size of the cart
-			 */
-			BufferedReader cartSizeReader = new BufferedReader(new FileReader(csvFile));
+		/**
+		 * A bufferedReader used to find the size of the cart
+		 */
+		BufferedReader cartSizeReader = null;
+		try {
+			cartSizeReader = new BufferedReader(new FileReader(csvFile));
 
 			/**
 			 * Never actually holds any data we use, just cartSizeReader's version of line.
@@ -344,6 +733,14 @@ public class Cart {
 			}
 		} catch(Exception e){
 			e.printStackTrace();
+		} finally {
+			if (cartSizeReader != null){
+				try {
+					cartSizeReader.close();
+				} catch(IOException e){
+					e.printStackTrace();
+				}
+			}
 		}
 		return cartSize;
 	}
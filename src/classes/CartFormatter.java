@@ -0,0 +1,74 @@
+package classes;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Renders carts and pricing results as the console text Cart.main prints.
+ * Pricing itself never prints, so this is only needed when a person is reading the output.
+ * @author Alex
+ *
+ */
+public class CartFormatter {
+
+	/**
+	 * Formats one csv line the way it is echoed while the cart is loaded.
+	 * @param input The cells of the csv line.
+	 * @return The cells as a bracketed, comma separated list.
+	 */
+	public static String formatRow(String[] input){
+		return Arrays.toString(input);
+	}
+
+	/**
+	 * Prints one line for each item of the result, followed by the total and any rebates.
+	 * @param result The priced cart.
+	 * @param out The stream to print to.
+	 */
+	public static void print(PricingResult result, PrintStream out){
+		for (LineDiscount line : result.getLines()){
+			Promotion promotion = line.getPromotion();
+			switch (line.getOutcome()){
+			case NO_SALE:
+				out.printf("$%,.2f No sale applied%n", line.getPrice());
+				break;
+			case PERCENT:
+				out.printf("$%,.2f after %s%% discount.%n", line.getCharged(), promotion.getAmountText());
+				break;
+			case REBATE:
+				out.printf("$%,.2f $%,.2f Flat Rebate.%n", line.getPrice(), Money.toDouble(promotion.getRebateCents()));
+				break;
+			case BOGO_DETECTED:
+				out.printf("$%,.2f Buy %s Get %s %s%% off sale detected. Buy %d more items to start.%n",
+						line.getPrice(), promotion.getBuyText(), promotion.getGetText(), promotion.getAmountText(), line.getRemaining());
+				break;
+			case BOGO_STARTED:
+				out.printf("$%,.2f Buy %s Get %s %s%% off sale started.%n",
+						line.getPrice(), promotion.getBuyText(), promotion.getGetText(), promotion.getAmountText());
+				break;
+			case BOGO_APPLIED:
+				out.printf("$%,.2f Buy %s Get %s %s%% off sale applied. Deal will last %d more items.%n",
+						line.getCharged(), promotion.getBuyText(), promotion.getGetText(), promotion.getAmountText(), line.getRemaining());
+				break;
+			case BOGO_USED_UP:
+				out.printf("$%,.2f Buy %s Get %s %s%% off sale applied. Deal has been used up.%n",
+						line.getCharged(), promotion.getBuyText(), promotion.getGetText(), promotion.getAmountText());
+				break;
+			case RULE:
+				out.printf("$%,.2f after %s promotion.%n", line.getCharged(), promotion.getType());
+				break;
+			case EXPIRED:
+				out.printf("$%,.2f Promotion only valid from ", line.getPrice());
+				out.println(PromotionDates.format(line.getStartDay()) + " until " + PromotionDates.format(line.getEndDay()));
+				break;
+			}
+		}
+		/**
+		 * Output the total cost of the cart after discounts, and if rebates are available, print that value too.
+		 */
+		out.printf("Total Cart Price after discounts: $%,.2f%n", result.getTotal());
+		if (result.getRebateTotal() > 0){
+			out.println("$"+ result.getRebateTotal() + " of rebates available");
+		}
+	}
+}
@@ -0,0 +1,494 @@
+package classes;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates carts for load and soak testing, either as CartContents.csv style files or as SKUs in memory.
+ *
+ * The same settings and seed always give the same cart, and the csv and in-memory forms of a cart hold the same items.
+ * Lines are produced one at a time and written straight out, so a file of any size can be generated in constant memory.
+ *
+ * Each id keeps the same promotion and promotion window everywhere it appears. Items in a buy X get Y deal are written as a run of items with the same id. A complete run has X+Y items, so the deal
+ * can be used up. An incomplete run stops short, which leaves the deal open and exercises the rules for deals that can
+ * never be used up.
+ *
+ * Usage: java classes.CartGenerator outputFile lines [seed]
+ * @author Alex
+ *
+ */
+public class CartGenerator {
+
+	/**
+	 * The promotion given to items with no promotion.
+	 */
+	private static final Promotion NO_PROMOTION = Promotion.compile("n");
+
+	/**
+	 * The seed every cart is generated from.
+	 */
+	private final long seed;
+
+	/**
+	 * Ids are drawn from 1 to idCount. With idSkew 1 every id is equally likely, larger values favour the low ids.
+	 */
+	private int idCount = 1000;
+	private double idSkew = 1;
+
+	/**
+	 * The colors, sizes and styles to pick from. Each entry is equally likely, so repeating an entry weights it.
+	 */
+	private ColorCode[] colors = ColorCode.values();
+	private SizeCode[] sizes = SizeCode.values();
+	private String[] styles = {"Socks", "Underwear", "Jeans", "Shirt", "T-Shirt", "Dress", "Jacket"};
+
+	/**
+	 * Prices are drawn evenly from minPrice to maxPrice, in cents.
+	 */
+	private long minPrice = 50;
+	private long maxPrice = 20000;
+
+	/**
+	 * The relative weight of each promotion type.
+	 */
+	private int noneWeight = 40;
+	private int percentWeight = 25;
+	private int rebateWeight = 15;
+	private int bogoWeight = 20;
+
+	/**
+	 * The promotions to pick from for each type. Each entry is equally likely.
+	 */
+	private Promotion[] percents = compileAll("%x10", "%x50", "%x12.5", "%x33");
+	private Promotion[] rebates = compileAll("rx10", "rx2.5", "rx25");
+	private Promotion[] bogos = compileAll("bx2x1x100", "bx1x1x80", "bx3x2x50", "bx1x2x25");
+
+	/**
+	 * The percentage of buy X get Y runs that are written in full.
+	 */
+	private int bogoCompletePercent = 100;
+
+	/**
+	 * The percentage of ids whose promotion window has ended, and the percentage with no window at all ("None").
+	 */
+	private int expiredPercent = 10;
+	private int noWindowPercent = 0;
+
+	/**
+	 * The day promotion windows are generated around. Active windows contain it, expired windows end on or before it.
+	 */
+	private int today = PromotionDates.today();
+
+	/**
+	 * The random source and pending BOGO run of the cart being generated.
+	 */
+	private Random random;
+	private int runId;
+	private Promotion runPromotion;
+	private int runRemaining;
+
+	/**
+	 * The fields of the current line.
+	 */
+	private int id;
+	private ColorCode color;
+	private SizeCode size;
+	private String style;
+	private long price;
+	private Promotion promotion;
+	private int startDay;
+	private int endDay;
+	private boolean noWindow;
+
+	/**
+	 * Constructor for a generator with the default settings.
+	 * @param inSeed The seed every cart is generated from.
+	 */
+	public CartGenerator(long inSeed){
+		this.seed = inSeed;
+	}
+
+	/**
+	 * Writes a generated cart from the command line.
+	 * @param args The output file, the number of lines, and optionally the seed.
+	 * @throws Exception Throws any exception raised while writing the file.
+	 */
+	public static void main(String[] args) throws Exception{
+		if (args.length < 2){
+			System.out.println("Usage: java classes.CartGenerator outputFile lines [seed]");
+			return;
+		}
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+		new CartGenerator(seed).write(args[0], Long.parseLong(args[1]));
+	}
+
+	/**
+	 * Sets how ids are drawn.
+	 * @param inIdCount The number of distinct ids. Must be at least 1.
+	 * @param inIdSkew 1 for every id equally likely, larger values favour the low ids.
+	 */
+	public void setIds(int inIdCount, double inIdSkew){
+		if (inIdCount < 1 || !(inIdSkew > 0)){
+			throw new IllegalArgumentException("Bad id distribution " + inIdCount + ", " + inIdSkew);
+		}
+		this.idCount = inIdCount;
+		this.idSkew = inIdSkew;
+	}
+
+	/**
+	 * Sets the colors to pick from.
+	 * @param inColors The color names. Repeat a name to make it more likely.
+	 * @throws Exception Throws an exception if a color is not one SKU accepts.
+	 */
+	public void setColors(String... inColors) throws Exception{
+		ColorCode[] codes = new ColorCode[inColors.length];
+		for (int i = 0; i < inColors.length; i++){
+			codes[i] = ColorCode.fromName(inColors[i]);
+			if (codes[i] == null){
+				throw new Exception("Unsupported Color");
+			}
+		}
+		this.colors = nonEmpty(codes);
+	}
+
+	/**
+	 * Sets the sizes to pick from.
+	 * @param inSizes The size names. Repeat a name to make it more likely.
+	 * @throws Exception Throws an exception if a size is not one SKU accepts.
+	 */
+	public void setSizes(String... inSizes) throws Exception{
+		SizeCode[] codes = new SizeCode[inSizes.length];
+		for (int i = 0; i < inSizes.length; i++){
+			codes[i] = SizeCode.fromName(inSizes[i]);
+			if (codes[i] == null){
+				throw new Exception("Unsupported Size");
+			}
+		}
+		this.sizes = nonEmpty(codes);
+	}
+
+	/**
+	 * Sets the styles to pick from. Styles may not contain commas.
+	 * @param inStyles The styles. Repeat a style to make it more likely.
+	 */
+	public void setStyles(String... inStyles){
+		for (String inStyle : inStyles){
+			if (inStyle.indexOf(',') >= 0){
+				throw new IllegalArgumentException("Style contains a comma: " + inStyle);
+			}
+		}
+		this.styles = nonEmpty(inStyles.clone());
+	}
+
+	/**
+	 * Sets the range prices are drawn from.
+	 * @param inMinCents The lowest price, in cents.
+	 * @param inMaxCents The highest price, in cents.
+	 */
+	public void setPrices(long inMinCents, long inMaxCents){
+		if (inMinCents < 0 || inMaxCents < inMinCents){
+			throw new IllegalArgumentException("Bad price range " + inMinCents + " to " + inMaxCents);
+		}
+		this.minPrice = inMinCents;
+		this.maxPrice = inMaxCents;
+	}
+
+	/**
+	 * Sets the relative weight of each promotion type. Each id keeps one promotion, so the weights share out the ids,
+	 * and for example 1, 1, 0, 2 gives half the ids a buy X get Y deal. Each time a BOGO id is drawn a whole run is
+	 * written, so BOGO items make up more of the cart than their weight alone suggests.
+	 * @param inNone The weight of items with no promotion.
+	 * @param inPercent The weight of items with a percent discount.
+	 * @param inRebate The weight of items with a rebate.
+	 * @param inBogo The weight of items in a buy X get Y deal.
+	 */
+	public void setPromotionWeights(int inNone, int inPercent, int inRebate, int inBogo){
+		if (inNone < 0 || inPercent < 0 || inRebate < 0 || inBogo < 0 || inNone + inPercent + inRebate + inBogo == 0){
+			throw new IllegalArgumentException("Bad promotion weights");
+		}
+		this.noneWeight = inNone;
+		this.percentWeight = inPercent;
+		this.rebateWeight = inRebate;
+		this.bogoWeight = inBogo;
+	}
+
+	/**
+	 * Sets the percent discounts to pick from, such as "%x10".
+	 * @param inTypes The promotion types.
+	 */
+	public void setPercentTypes(String... inTypes){
+		this.percents = compileAll(Promotion.Kind.PERCENT, inTypes);
+	}
+
+	/**
+	 * Sets the rebates to pick from, such as "rx10".
+	 * @param inTypes The promotion types.
+	 */
+	public void setRebateTypes(String... inTypes){
+		this.rebates = compileAll(Promotion.Kind.REBATE, inTypes);
+	}
+
+	/**
+	 * Sets the buy X get Y deals to pick from, such as "bx2x1x100". These also set the size of each run of items.
+	 * @param inTypes The promotion types.
+	 */
+	public void setBogoTypes(String... inTypes){
+		this.bogos = compileAll(Promotion.Kind.BOGO, inTypes);
+	}
+
+	/**
+	 * Sets how many buy X get Y runs are written in full. The rest stop at least one item short.
+	 * @param inPercent The percentage of complete runs, from 0 to 100.
+	 */
+	public void setBogoCompletePercent(int inPercent){
+		this.bogoCompletePercent = percent(inPercent);
+	}
+
+	/**
+	 * Sets how many ids have promotion windows that have ended, or no window at all.
+	 * @param inExpiredPercent The percentage of ids with an ended window, from 0 to 100.
+	 * @param inNoWindowPercent The percentage of ids written with "None" dates, from 0 to 100.
+	 */
+	public void setWindows(int inExpiredPercent, int inNoWindowPercent){
+		if (percent(inExpiredPercent) + percent(inNoWindowPercent) > 100){
+			throw new IllegalArgumentException("Window percentages add up to more than 100");
+		}
+		this.expiredPercent = inExpiredPercent;
+		this.noWindowPercent = inNoWindowPercent;
+	}
+
+	/**
+	 * Sets the day promotion windows are generated around. Defaults to today.
+	 * @param inToday The day, as an epoch day.
+	 */
+	public void setToday(int inToday){
+		this.today = inToday;
+	}
+
+	/**
+	 * Writes a generated cart to a file.
+	 * @param csvFile The file to write.
+	 * @param lines The number of lines to write.
+	 * @throws IOException Throws any exception raised while writing.
+	 */
+	public void write(String csvFile, long lines) throws IOException{
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csvFile), StandardCharsets.US_ASCII), 1 << 16);
+		try {
+			write(out, lines);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Writes a generated cart to a Writer. The Writer is flushed but not closed.
+	 * @param out The Writer to write to. Should be buffered.
+	 * @param lines The number of lines to write.
+	 * @throws IOException Throws any exception raised while writing.
+	 */
+	public void write(Writer out, long lines) throws IOException{
+		reset();
+		for (long i = 0; i < lines; i++){
+			nextLine();
+			out.write(Integer.toString(id));
+			out.write(',');
+			out.write(color.getLabel());
+			out.write(',');
+			out.write(size.getLabel());
+			out.write(',');
+			out.write(style);
+			out.write(',');
+			out.write(Long.toString(price / Money.HUNDRED));
+			out.write('.');
+			long centsPart = price % Money.HUNDRED;
+			out.write((char) ('0' + centsPart / 10));
+			out.write((char) ('0' + centsPart % 10));
+			out.write(',');
+			out.write(promotion.getType());
+			out.write(',');
+			if (noWindow){
+				out.write("None,None");
+			} else {
+				out.write(PromotionDates.format(startDay));
+				out.write(',');
+				out.write(PromotionDates.format(endDay));
+			}
+			out.write('\n');
+		}
+		out.flush();
+	}
+
+	/**
+	 * Generates a cart in memory, with the same items the csv for the same settings would hold.
+	 * @param lines The number of items.
+	 * @return The items of the cart.
+	 */
+	public SKU[] generate(int lines){
+		final ArrayList<SKU> cart = new ArrayList<SKU>(lines);
+		generate(lines, new SKUHandler(){
+			@Override
+			public void handle(SKU sku){
+				cart.add(sku);
+			}
+		});
+		return cart.toArray(new SKU[cart.size()]);
+	}
+
+	/**
+	 * Generates a cart one item at a time, so carts too large to hold in memory can be streamed.
+	 * @param lines The number of items.
+	 * @param handler Receives each item in order.
+	 * @throws RuntimeException Throws any exception raised by the handler, wrapped if it is checked.
+	 */
+	public void generate(long lines, SKUHandler handler){
+		reset();
+		for (long i = 0; i < lines; i++){
+			nextLine();
+			int start = noWindow ? PromotionDates.NO_PROMOTION_DAY : startDay;
+			int end = noWindow ? PromotionDates.NO_PROMOTION_DAY : endDay;
+			try {
+				handler.handle(new SKU(id, color, size, style, price, promotion, start, end));
+			} catch(RuntimeException e){
+				throw e;
+			} catch(Exception e){
+				throw new RuntimeException(e);
+			}
+		}
+	}
+
+	/**
+	 * Starts a new cart from the seed.
+	 */
+	private void reset(){
+		random = new Random(seed);
+		runRemaining = 0;
+	}
+
+	/**
+	 * Picks the fields of the next line.
+	 */
+	private void nextLine(){
+		if (runRemaining > 0){
+			id = runId;
+			promotion = runPromotion;
+			runRemaining--;
+		} else {
+			id = nextId();
+			promotion = promotionOf(id);
+			if (promotion.getKind() == Promotion.Kind.BOGO){
+				int run = Math.max(promotion.getBuyCount(), 1) + Math.max(promotion.getGetCount(), 0);
+				if (random.nextInt(100) >= bogoCompletePercent){
+					run = 1 + random.nextInt(Math.max(run - 1, 1));
+				}
+				runId = id;
+				runPromotion = promotion;
+				runRemaining = run - 1;
+			}
+		}
+		color = colors[random.nextInt(colors.length)];
+		size = sizes[random.nextInt(sizes.length)];
+		style = styles[random.nextInt(styles.length)];
+		price = minPrice + (long) (random.nextDouble() * (maxPrice - minPrice + 1));
+		long windowHash = hash(id, 1);
+		int windowRoll = (int) Math.floorMod(windowHash, 100L);
+		int first = (int) ((windowHash >>> 16) & 1023) % 1000;
+		int second = (int) ((windowHash >>> 32) & 1023) % 1000;
+		noWindow = windowRoll < noWindowPercent;
+		if (windowRoll < noWindowPercent + expiredPercent){
+			endDay = today - first;
+			startDay = endDay - 1 - second;
+		} else {
+			startDay = today - first;
+			endDay = today + 1 + second;
+		}
+	}
+
+	/**
+	 * Picks the promotion of an id. Every item with the same id gets the same promotion, as in a real catalog,
+	 * so the pick is a hash of the seed and the id rather than a draw from the random source.
+	 */
+	private Promotion promotionOf(int inId){
+		long hash = hash(inId, 0);
+		int roll = (int) Math.floorMod(hash, (long) (noneWeight + percentWeight + rebateWeight + bogoWeight));
+		int pick = (int) (hash >>> 33);
+		if (roll < noneWeight){
+			return NO_PROMOTION;
+		} else if (roll < noneWeight + percentWeight){
+			return percents[pick % percents.length];
+		} else if (roll < noneWeight + percentWeight + rebateWeight){
+			return rebates[pick % rebates.length];
+		}
+		return bogos[pick % bogos.length];
+	}
+
+	/**
+	 * Mixes the seed, an id and a salt into well spread bits, using the SplitMix64 finaliser.
+	 */
+	private long hash(int inId, long salt){
+		long hash = seed + salt * 0xD1B54A32D192ED03L + inId * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+		hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+		return hash ^ (hash >>> 31);
+	}
+
+	/**
+	 * Draws an id from 1 to idCount.
+	 */
+	private int nextId(){
+		double u = random.nextDouble();
+		if (idSkew != 1){
+			u = Math.pow(u, idSkew);
+		}
+		return 1 + Math.min((int) (u * idCount), idCount - 1);
+	}
+
+	/**
+	 * Parses the built in promotion types.
+	 */
+	private static Promotion[] compileAll(String... inTypes){
+		Promotion[] compiled = new Promotion[inTypes.length];
+		for (int i = 0; i < inTypes.length; i++){
+			compiled[i] = Promotion.compile(inTypes[i]);
+		}
+		return compiled;
+	}
+
+	/**
+	 * Parses promotion types, checking each is of the expected kind.
+	 */
+	private static Promotion[] compileAll(Promotion.Kind kind, String... inTypes){
+		Promotion[] compiled = nonEmpty(compileAll(inTypes));
+		for (Promotion each : compiled){
+			if (each.getKind() != kind || each.getType().indexOf(',') >= 0){
+				throw new IllegalArgumentException("Not a " + kind + " promotion: " + each.getType());
+			}
+		}
+		return compiled;
+	}
+
+	/**
+	 * Checks a list of choices is not empty.
+	 */
+	private static <T> T[] nonEmpty(T[] choices){
+		if (choices.length == 0){
+			throw new IllegalArgumentException("Nothing to pick from");
+		}
+		return choices;
+	}
+
+	/**
+	 * Checks a percentage is from 0 to 100.
+	 */
+	private static int percent(int inPercent){
+		if (inPercent < 0 || inPercent > 100){
+			throw new IllegalArgumentException("Bad percentage " + inPercent);
+		}
+		return inPercent;
+	}
+}
@@ -0,0 +1,339 @@
+package classes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads a cart sent as JSON in the CartContents schema, for PricingServer. The cart is either an array of items or an
+ * object with an "items" array. Each item is an object with the fields id, color, size, style, price, promotion, start
+ * and end, or an array of those eight values in that order, like a line of the csv. Missing promotion fields are
+ * "None". Numbers are kept as the text they were written as, so prices are parsed exactly as they are from the csv.
+ *
+ * Each item is turned into an SKU by Cart.parseFields, so a JSON cart follows the same rules as the same csv.
+ * This is a small reader for that one shape, not a general JSON parser.
+ * @author Alex
+ *
+ */
+final class CartJson {
+
+	/**
+	 * The item fields, in csv order.
+	 */
+	private static final String[] FIELDS = {"id", "color", "size", "style", "price", "promotion", "start", "end"};
+
+	/**
+	 * The JSON text.
+	 */
+	private final String text;
+
+	/**
+	 * The offset of the next character to read.
+	 */
+	private int position;
+
+	/**
+	 * Constructor for a reader over one JSON document.
+	 * @param inText The JSON text.
+	 */
+	private CartJson(String inText){
+		this.text = inText;
+	}
+
+	/**
+	 * Reads a cart from JSON.
+	 * @param json The JSON text.
+	 * @return The items of the cart, leaving out items Cart.parseFields skips.
+	 * @throws Exception Throws an IllegalArgumentException if the JSON is malformed or not a cart, or any exception
+	 * Cart.parseFields raises for an item.
+	 */
+	static SKU[] parse(String json) throws Exception{
+		CartJson reader = new CartJson(json);
+		reader.skipSpace();
+		List<Object> items;
+		if (reader.peek() == '{'){
+			Object itemArray = reader.readObjectField("items");
+			if (!(itemArray instanceof List)){
+				throw new IllegalArgumentException("Expected an \"items\" array");
+			}
+			items = castList(itemArray);
+		} else {
+			items = castList(reader.readValue());
+		}
+		reader.skipSpace();
+		if (reader.position != json.length()){
+			throw reader.error("Unexpected text after the cart");
+		}
+		List<SKU> skus = new ArrayList<SKU>(items.size());
+		PromotionCatalog.Local catalog = PromotionCatalog.getShared().newLocal();
+		for (Object item : items){
+			SKU sku = Cart.parseFields(fields(item), catalog);
+			if (sku != null){
+				skus.add(sku);
+			}
+		}
+		return skus.toArray(new SKU[skus.size()]);
+	}
+
+	/**
+	 * Turns one item into the eight csv fields.
+	 * @param item An object or array read from the JSON.
+	 * @return The fields, in csv order.
+	 */
+	private static String[] fields(Object item){
+		String[] input = new String[FIELDS.length];
+		if (item instanceof List){
+			List<Object> values = castList(item);
+			if (values.size() != FIELDS.length){
+				throw new IllegalArgumentException("Expected " + FIELDS.length + " values in an item, found " + values.size());
+			}
+			for (int i = 0; i < FIELDS.length; i++){
+				input[i] = text(values.get(i), FIELDS[i]);
+			}
+		} else if (item instanceof ObjectValue){
+			ObjectValue object = (ObjectValue) item;
+			for (int i = 0; i < FIELDS.length; i++){
+				Object value = object.get(FIELDS[i]);
+				if (value == null && i == 5){
+					value = object.get("type");
+				}
+				if (value == null && i >= 5){
+					value = "None";
+				}
+				if (value == null){
+					throw new IllegalArgumentException("Item is missing \"" + FIELDS[i] + "\"");
+				}
+				input[i] = text(value, FIELDS[i]);
+			}
+		} else {
+			throw new IllegalArgumentException("Expected an item object or array");
+		}
+		return input;
+	}
+
+	/**
+	 * Gets the text of a field value, which must be a string or a number.
+	 */
+	private static String text(Object value, String field){
+		if (value instanceof String){
+			return (String) value;
+		} else if (value instanceof NumberText){
+			return ((NumberText) value).text;
+		}
+		throw new IllegalArgumentException("\"" + field + "\" must be a string or number");
+	}
+
+	/**
+	 * Checks a value is an array and returns it as a list.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<Object> castList(Object value){
+		if (!(value instanceof List)){
+			throw new IllegalArgumentException("Expected an array of items");
+		}
+		return (List<Object>) value;
+	}
+
+	/**
+	 * A number, held as the text it was written as.
+	 */
+	private static final class NumberText {
+		final String text;
+
+		NumberText(String inText){
+			this.text = inText;
+		}
+	}
+
+	/**
+	 * An object, held as its field names and values in order.
+	 */
+	private static final class ObjectValue {
+		final List<String> names = new ArrayList<String>();
+		final List<Object> values = new ArrayList<Object>();
+
+		/**
+		 * Gets the value of a field, matching its name ignoring case, or null if there is none.
+		 */
+		Object get(String name){
+			for (int i = 0; i < names.size(); i++){
+				if (names.get(i).equalsIgnoreCase(name)){
+					return values.get(i);
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a top level object and returns the value of one of its fields.
+	 */
+	private Object readObjectField(String name){
+		Object value = readValue();
+		if (!(value instanceof ObjectValue)){
+			throw error("Expected an object");
+		}
+		return ((ObjectValue) value).get(name);
+	}
+
+	/**
+	 * Reads any value: an object, array, string, number, true, false or null.
+	 */
+	private Object readValue(){
+		skipSpace();
+		char c = peek();
+		if (c == '{'){
+			position++;
+			ObjectValue object = new ObjectValue();
+			skipSpace();
+			if (peek() == '}'){
+				position++;
+				return object;
+			}
+			while (true){
+				skipSpace();
+				if (peek() != '"'){
+					throw error("Expected a field name");
+				}
+				String name = readString();
+				skipSpace();
+				expect(':');
+				object.names.add(name);
+				object.values.add(readValue());
+				skipSpace();
+				if (peek() == ','){
+					position++;
+				} else {
+					expect('}');
+					return object;
+				}
+			}
+		} else if (c == '['){
+			position++;
+			List<Object> list = new ArrayList<Object>();
+			skipSpace();
+			if (peek() == ']'){
+				position++;
+				return list;
+			}
+			while (true){
+				list.add(readValue());
+				skipSpace();
+				if (peek() == ','){
+					position++;
+				} else {
+					expect(']');
+					return list;
+				}
+			}
+		} else if (c == '"'){
+			return readString();
+		} else if (c == '-' || (c >= '0' && c <= '9')){
+			int start = position;
+			while (position < text.length() && "+-.eE0123456789".indexOf(text.charAt(position)) >= 0){
+				position++;
+			}
+			return new NumberText(text.substring(start, position));
+		} else if (text.startsWith("true", position)){
+			position += 4;
+			return Boolean.TRUE;
+		} else if (text.startsWith("false", position)){
+			position += 5;
+			return Boolean.FALSE;
+		} else if (text.startsWith("null", position)){
+			position += 4;
+			return null;
+		}
+		throw error("Unexpected character");
+	}
+
+	/**
+	 * Reads a string, decoding its escapes.
+	 */
+	private String readString(){
+		expect('"');
+		StringBuilder builder = new StringBuilder();
+		while (true){
+			if (position >= text.length()){
+				throw error("Unterminated string");
+			}
+			char c = text.charAt(position++);
+			if (c == '"'){
+				return builder.toString();
+			} else if (c == '\\'){
+				if (position >= text.length()){
+					throw error("Unterminated string");
+				}
+				char e = text.charAt(position++);
+				switch (e){
+				case 'b':
+					builder.append('\b');
+					break;
+				case 'f':
+					builder.append('\f');
+					break;
+				case 'n':
+					builder.append('\n');
+					break;
+				case 'r':
+					builder.append('\r');
+					break;
+				case 't':
+					builder.append('\t');
+					break;
+				case 'u':
+					if (position + 4 > text.length()){
+						throw error("Bad unicode escape");
+					}
+					try {
+						builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+					} catch(NumberFormatException x){
+						throw error("Bad unicode escape");
+					}
+					position += 4;
+					break;
+				default:
+					builder.append(e);
+					break;
+				}
+			} else {
+				builder.append(c);
+			}
+		}
+	}
+
+	/**
+	 * Moves past any whitespace.
+	 */
+	private void skipSpace(){
+		while (position < text.length() && Character.isWhitespace(text.charAt(position))){
+			position++;
+		}
+	}
+
+	/**
+	 * Gets the next character without moving past it.
+	 */
+	private char peek(){
+		if (position >= text.length()){
+			throw error("Unexpected end of JSON");
+		}
+		return text.charAt(position);
+	}
+
+	/**
+	 * Moves past the next character, which must be c.
+	 */
+	private void expect(char c){
+		if (peek() != c){
+			throw error("Expected '" + c + "'");
+		}
+		position++;
+	}
+
+	/**
+	 * Builds the exception for malformed JSON at the current offset.
+	 */
+	private IllegalArgumentException error(String message){
+		return new IllegalArgumentException(message + " at offset " + position);
+	}
+}
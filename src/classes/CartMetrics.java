@@ -0,0 +1,55 @@
+package classes;
+
+/**
+ * Receives counts and timings from Cart as carts are loaded and priced. Install one with Cart.setMetrics.
+ *
+ * Each load and each pricing pass reports once when it finishes, so an implementation is called a handful of times per
+ * cart, never once per line. Loads and pricing runs may happen on several threads at once, so implementations must be
+ * thread-safe. When isEnabled returns false Cart skips the clock reads and counting altogether, so the default,
+ * NONE, costs nothing.
+ * @author Alex
+ *
+ */
+public interface CartMetrics {
+
+	/**
+	 * Metrics that are switched off. The default.
+	 */
+	public static final CartMetrics NONE = new NoCartMetrics();
+
+	/**
+	 * Checks if anything should be measured.
+	 * @return False if Cart should skip measuring altogether.
+	 */
+	public boolean isEnabled();
+
+	/**
+	 * Called when a load of a csv finishes, whether or not it succeeded.
+	 * @param lines The lines read.
+	 * @param bytes The bytes read, counting one byte per character and one for each line break.
+	 * @param parseNanos The time spent reading and parsing, including constructNanos.
+	 * @param constructNanos The part of parseNanos spent in the SKU constructors.
+	 */
+	public void cartParsed(long lines, long bytes, long parseNanos, long constructNanos);
+
+	/**
+	 * Called for each line that could not be turned into an SKU.
+	 * @param kind What was wrong with the line.
+	 */
+	public void parseError(ParseError kind);
+
+	/**
+	 * Called when a cart has been priced.
+	 * @param items The items in the cart.
+	 * @param passes The passes made over the cart. The cart is scanned again each time a buy X get Y deal is used up.
+	 * @param priceNanos The time spent pricing.
+	 */
+	public void cartPriced(long items, long passes, long priceNanos);
+
+	/**
+	 * Called once a cart has been priced, for each outcome that was applied to at least one item.
+	 * @param outcome What was applied.
+	 * @param count The number of items it was applied to.
+	 */
+	public void promotionsApplied(LineDiscount.Outcome outcome, long count);
+}
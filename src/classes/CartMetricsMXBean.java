@@ -0,0 +1,76 @@
+package classes;
+
+import java.util.Map;
+
+/**
+ * The management interface JmxCartMetrics exposes through JMX. Times are totals since the last reset.
+ * @author Alex
+ *
+ */
+public interface CartMetricsMXBean {
+
+	/**
+	 * @return The number of csv loads that have finished.
+	 */
+	public long getCartsParsed();
+
+	/**
+	 * @return The lines read by all loads.
+	 */
+	public long getLinesParsed();
+
+	/**
+	 * @return The bytes read by all loads.
+	 */
+	public long getBytesRead();
+
+	/**
+	 * @return The lines read per second of parsing time.
+	 */
+	public double getLinesParsedPerSecond();
+
+	/**
+	 * @return The time spent reading and parsing, in milliseconds.
+	 */
+	public long getParseMillis();
+
+	/**
+	 * @return The part of the parsing time spent in the SKU constructors, in milliseconds.
+	 */
+	public long getConstructMillis();
+
+	/**
+	 * @return The number of lines that could not be parsed, by kind of error.
+	 */
+	public Map<String, Long> getParseErrors();
+
+	/**
+	 * @return The number of carts priced.
+	 */
+	public long getCartsPriced();
+
+	/**
+	 * @return The items in all the carts priced.
+	 */
+	public long getItemsPriced();
+
+	/**
+	 * @return The passes made over the carts while pricing them.
+	 */
+	public long getPricingPasses();
+
+	/**
+	 * @return The time spent pricing, in milliseconds.
+	 */
+	public long getPriceMillis();
+
+	/**
+	 * @return The number of items each outcome was applied to.
+	 */
+	public Map<String, Long> getPromotionsApplied();
+
+	/**
+	 * Sets every count and time back to zero.
+	 */
+	public void reset();
+}
@@ -0,0 +1,220 @@
+package classes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Where Cart reads a csv from: a file, any InputStream or ReadableByteChannel, or standard input.
+ * Gzip compressed input is recognised by its first two bytes and decompressed as it is read, so carts can be read
+ * straight out of a .gz file or stream without a temp file.
+ *
+ * The buffer size and charset can be set before the source is read. The charset defaults to the platform default,
+ * as FileReader used.
+ *
+ * A source is read once. Cart closes the reader it opens before returning, which closes the file, stream or channel
+ * underneath it, whether the load succeeded or not. The one exception is stdin, which is left open.
+ * @author Alex
+ *
+ */
+public class CartSource {
+
+	/**
+	 * The size of the read buffer unless another is set.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The first two bytes of every gzip stream.
+	 */
+	private static final int GZIP_MAGIC_1 = 0x1f;
+	private static final int GZIP_MAGIC_2 = 0x8b;
+
+	/**
+	 * Opens the bytes of the source.
+	 */
+	private interface Opener {
+		InputStream open() throws IOException;
+	}
+
+	/**
+	 * A name for the source, for error messages.
+	 */
+	private final String name;
+
+	/**
+	 * Opens the bytes of the source.
+	 */
+	private final Opener opener;
+
+	/**
+	 * The size of the buffers used to read the source, in bytes.
+	 */
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+	/**
+	 * The charset the csv is decoded with.
+	 */
+	private Charset charset = Charset.defaultCharset();
+
+	/**
+	 * True once the source has been opened.
+	 */
+	private boolean opened;
+
+	/**
+	 * Constructor for a source.
+	 * @param inName A name for the source, for error messages.
+	 * @param inOpener Opens the bytes of the source.
+	 */
+	private CartSource(String inName, Opener inOpener){
+		this.name = inName;
+		this.opener = inOpener;
+	}
+
+	/**
+	 * A source reading a file. A missing file throws a FileNotFoundException when the source is read.
+	 * @param csvFile The location of the csv, which may be gzip compressed.
+	 * @return The source.
+	 */
+	public static CartSource fromFile(final String csvFile){
+		return new CartSource(csvFile, () -> new FileInputStream(csvFile));
+	}
+
+	/**
+	 * A source reading a file. A missing file throws a NoSuchFileException when the source is read.
+	 * @param path The location of the csv, which may be gzip compressed.
+	 * @return The source.
+	 */
+	public static CartSource fromPath(final Path path){
+		return new CartSource(path.toString(), () -> Files.newInputStream(path));
+	}
+
+	/**
+	 * A source reading a stream, which is closed once it has been read.
+	 * @param in The stream holding the csv, which may be gzip compressed.
+	 * @return The source.
+	 */
+	public static CartSource fromStream(final InputStream in){
+		return new CartSource(in.toString(), () -> in);
+	}
+
+	/**
+	 * A source reading a channel, which is closed once it has been read.
+	 * @param channel The channel holding the csv, which may be gzip compressed.
+	 * @return The source.
+	 */
+	public static CartSource fromChannel(final ReadableByteChannel channel){
+		return new CartSource(channel.toString(), () -> Channels.newInputStream(channel));
+	}
+
+	/**
+	 * A source reading standard input, which is left open once it has been read.
+	 * @return The source.
+	 */
+	public static CartSource stdin(){
+		return new CartSource("stdin", () -> new FilterInputStream(System.in){
+			@Override
+			public void close(){
+			}
+		});
+	}
+
+	/**
+	 * Sets the size of the buffers used to read the source.
+	 * @param inBufferSize The buffer size in bytes.
+	 * @return This source.
+	 */
+	public CartSource setBufferSize(int inBufferSize){
+		if (inBufferSize < 1){
+			throw new IllegalArgumentException("Buffer size must be at least 1: " + inBufferSize);
+		}
+		this.bufferSize = inBufferSize;
+		return this;
+	}
+
+	/**
+	 * Gets the size of the buffers used to read the source.
+	 * @return The buffer size in bytes.
+	 */
+	public int getBufferSize(){
+		return bufferSize;
+	}
+
+	/**
+	 * Sets the charset the csv is decoded with.
+	 * @param inCharset The charset.
+	 * @return This source.
+	 */
+	public CartSource setCharset(Charset inCharset){
+		if (inCharset == null){
+			throw new IllegalArgumentException("Charset must not be null");
+		}
+		this.charset = inCharset;
+		return this;
+	}
+
+	/**
+	 * Gets the charset the csv is decoded with.
+	 * @return The charset.
+	 */
+	public Charset getCharset(){
+		return charset;
+	}
+
+	/**
+	 * Gets the name of the source.
+	 * @return The file name, or a description of the stream or channel.
+	 */
+	public String getName(){
+		return name;
+	}
+
+	/**
+	 * Opens the source for reading, decompressing it if it starts with the gzip magic number. The caller must close
+	 * the reader, which closes everything underneath it. If opening fails part way, whatever was opened is closed.
+	 * @return A reader over the lines of the csv.
+	 * @throws IOException Throws if the source cannot be opened, or was already opened.
+	 */
+	public BufferedReader openReader() throws IOException{
+		if (opened){
+			throw new IOException("Cart source " + name + " has already been read");
+		}
+		opened = true;
+		InputStream raw = opener.open();
+		boolean ready = false;
+		try {
+			BufferedInputStream in = new BufferedInputStream(raw, bufferSize);
+			InputStream content = in;
+			in.mark(2);
+			int first = in.read();
+			int second = in.read();
+			in.reset();
+			if (first == GZIP_MAGIC_1 && second == GZIP_MAGIC_2){
+				content = new GZIPInputStream(in, bufferSize);
+			}
+			BufferedReader reader = new BufferedReader(new InputStreamReader(content, charset), bufferSize);
+			ready = true;
+			return reader;
+		} finally {
+			if (!ready){
+				raw.close();
+			}
+		}
+	}
+
+	@Override
+	public String toString(){
+		return name;
+	}
+}
@@ -0,0 +1,61 @@
+package classes;
+
+/**
+ * The totals for a priced cart: the price after all discounts, and the rebates the customer has accrued.
+ * @author Alex
+ *
+ */
+public final class CartTotals {
+
+	/**
+	 * The total price of the cart after discounts, in cents.
+	 */
+	private final long total;
+
+	/**
+	 * The total amount of rebate a customer has accrued, in cents.
+	 */
+	private final long rebateTotal;
+
+	/**
+	 * Constructor for a cart's totals.
+	 * @param inTotal The total price of the cart after discounts, in cents.
+	 * @param inRebateTotal The total amount of rebate a customer has accrued, in cents.
+	 */
+	public CartTotals(long inTotal, long inRebateTotal){
+		this.total = inTotal;
+		this.rebateTotal = inRebateTotal;
+	}
+
+	/**
+	 * Gets the total price of the cart after discounts.
+	 * @return The total price of the cart.
+	 */
+	public double getTotal(){
+		return Money.toDouble(total);
+	}
+
+	/**
+	 * Gets the exact total price of the cart after discounts.
+	 * @return The total price of the cart, in cents.
+	 */
+	public long getTotalCents(){
+		return total;
+	}
+
+	/**
+	 * Gets the total amount of rebate a customer has accrued.
+	 * @return The total rebate.
+	 */
+	public double getRebateTotal(){
+		return Money.toDouble(rebateTotal);
+	}
+
+	/**
+	 * Gets the exact total amount of rebate a customer has accrued.
+	 * @return The total rebate, in cents.
+	 */
+	public long getRebateTotalCents(){
+		return rebateTotal;
+	}
+}
@@ -0,0 +1,89 @@
+package classes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The colors an item can have. Each SKU stores the ordinal of its color as a single byte.
+ * Names are matched ignoring case through a table built once, so parsing a color is one hash lookup.
+ * @author Alex
+ *
+ */
+public enum ColorCode {
+	BLACK("black"), BLUE("blue"), CYAN("cyan"), DARK_GRAY("darkGray"), GRAY("gray"), GREEN("green"), LIGHT_GRAY("lightGray"),
+	MAGENTA("magenta"), ORANGE("orange"), PINK("pink"), RED("red"), WHITE("white"), YELLOW("yellow");
+
+	/**
+	 * Every color, indexed by code.
+	 */
+	private static final ColorCode[] CODES = values();
+
+	/**
+	 * Looks colors up by name, ignoring case.
+	 */
+	private static final NameTable<ColorCode> BY_NAME;
+	static {
+		String[] names = new String[CODES.length];
+		for (int i = 0; i < CODES.length; i++){
+			names[i] = CODES[i].label;
+		}
+		BY_NAME = new NameTable<ColorCode>(names, CODES);
+	}
+
+	/**
+	 * The name of the color as it is written in the csv.
+	 */
+	private final String label;
+
+	/**
+	 * Constructor for a color.
+	 * @param inLabel The name of the color as it is written in the csv.
+	 */
+	private ColorCode(String inLabel){
+		this.label = inLabel;
+	}
+
+	/**
+	 * Gets the name of the color as it is written in the csv.
+	 * @return The name of the color.
+	 */
+	public String getLabel(){
+		return label;
+	}
+
+	/**
+	 * Gets the single byte code stored for this color.
+	 * @return The code of the color.
+	 */
+	public byte getCode(){
+		return (byte) ordinal();
+	}
+
+	/**
+	 * Gets the color for a code returned by getCode.
+	 * @param code The code of the color.
+	 * @return The color.
+	 */
+	public static ColorCode fromCode(byte code){
+		return CODES[code];
+	}
+
+	/**
+	 * Finds a color by name, ignoring case.
+	 * @param name The name of the color.
+	 * @return The color, or null if the name is not a supported color.
+	 */
+	public static ColorCode fromName(String name){
+		return BY_NAME.get(name);
+	}
+
+	/**
+	 * Finds a color by a name held as ASCII bytes, ignoring case.
+	 * @param buffer The buffer holding the name.
+	 * @param start The offset of the first byte of the name.
+	 * @param end The offset just past the last byte of the name.
+	 * @return The color, or null if the name is not a supported color.
+	 */
+	public static ColorCode fromName(ByteBuffer buffer, int start, int end){
+		return BY_NAME.get(buffer, start, end);
+	}
+}
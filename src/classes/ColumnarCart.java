@@ -0,0 +1,709 @@
+package classes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A cart held as parallel primitive arrays, one entry per item, instead of one SKU object per item.
+ * Each item costs an int id, a long price in cents, an int promotion code and two int epoch days, with no objects
+ * to chase, so very large carts fit in memory and pricing scans the arrays in order.
+ *
+ * Promotion codes index a small table of the distinct promotions in the cart. The fields of that table are also
+ * copied out into primitive arrays so pricing never has to load a Promotion object.
+ *
+ * Large carts can also be priced on several threads with price(today, executor, threads), which splits the items
+ * without a BOGO promotion into slices and the BOGO items into groups of ids.
+ *
+ * Promotion windows are whole days: an item's promotion is valid when its start day is on or before today and
+ * its end day is after today, which is the same test Cart.price makes against dates parsed from the csv.
+ * @author Alex
+ *
+ */
+public class ColumnarCart {
+
+	/**
+	 * Carts smaller than this are always priced on one thread.
+	 */
+	public static final int MIN_PARALLEL_ITEMS = 1 << 15;
+
+	/**
+	 * The fewest items in each slice of a cart priced in parallel.
+	 */
+	private static final int MIN_SLICE_ITEMS = 1 << 12;
+
+	/**
+	 * The number of items in the cart.
+	 */
+	private int size;
+
+	/**
+	 * The id of each item.
+	 */
+	private int[] ids;
+
+	/**
+	 * The price of each item, in cents.
+	 */
+	private long[] prices;
+
+	/**
+	 * The promotion code of each item, an index into the promotion table.
+	 */
+	private int[] promotionCodes;
+
+	/**
+	 * The first day each item's promotion is valid, as days since 1970-01-01.
+	 */
+	private int[] startDays;
+
+	/**
+	 * The day each item's promotion stops being valid, as days since 1970-01-01.
+	 */
+	private int[] endDays;
+
+	/**
+	 * The distinct promotions in the cart, indexed by promotion code.
+	 */
+	private Promotion[] promotionTable = new Promotion[8];
+
+	/**
+	 * The kind, X, Y and fixed amount of each promotion in the table, copied out for pricing.
+	 */
+	private Promotion.Kind[] tableKinds = new Promotion.Kind[8];
+	private int[] tableBuyCounts = new int[8];
+	private int[] tableGetCounts = new int[8];
+	private long[] tableAmounts = new long[8];
+
+	/**
+	 * How many promotions are in the table.
+	 */
+	private int promotionCount;
+
+	/**
+	 * True once a promotion priced by a registered PromotionRule is in the table.
+	 */
+	private boolean hasRules;
+
+	/**
+	 * The promotion code already given to each promotion type String.
+	 */
+	private final HashMap<String, Integer> promotionCodesByType = new HashMap<String, Integer>();
+
+	/**
+	 * Builds an empty cart.
+	 */
+	public ColumnarCart(){
+		this(16);
+	}
+
+	/**
+	 * Builds an empty cart with room for capacity items before it has to grow.
+	 * @param capacity The number of items to make room for.
+	 */
+	public ColumnarCart(int capacity){
+		capacity = Math.max(capacity, 1);
+		ids = new int[capacity];
+		prices = new long[capacity];
+		promotionCodes = new int[capacity];
+		startDays = new int[capacity];
+		endDays = new int[capacity];
+	}
+
+	/**
+	 * Copies an SKU array into a columnar cart.
+	 * @param SKUArray The items in the cart.
+	 * @return A columnar cart holding the same items in the same order.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static ColumnarCart from(SKU[] SKUArray) throws Exception{
+		ColumnarCart cart = new ColumnarCart(SKUArray.length);
+		for (SKU sku : SKUArray){
+			cart.add(sku);
+		}
+		return cart;
+	}
+
+	/**
+	 * Loads a csv straight into a columnar cart with the memory mapped parser. Each SKU is copied into the columns
+	 * and dropped as soon as its line is parsed, so the whole cart is never held as objects.
+	 * @param csvFile The location of the csv
+	 * @return A columnar cart holding one item per accepted line of the csv.
+	 * @throws Exception Throws any exception raised while parsing the csv.
+	 */
+	public static ColumnarCart load(String csvFile) throws Exception{
+		final ColumnarCart cart = new ColumnarCart();
+		new MappedCartParser().parse(csvFile, new SKUHandler(){
+			public void handle(SKU sku) throws Exception{
+				cart.add(sku);
+			}
+		});
+		return cart;
+	}
+
+	/**
+	 * Appends an SKU to the cart.
+	 * @param sku The item to add.
+	 * @throws Exception Throws any exception raised while reading the SKU.
+	 */
+	public void add(SKU sku) throws Exception{
+		/**
+		 * Only deals and rules read the id, so only they need it set, as in Cart.price.
+		 */
+		Promotion promotion = sku.getSKUPromotion();
+		Promotion.Kind kind = promotion.getKind();
+		int id = kind == Promotion.Kind.BOGO || kind == Promotion.Kind.RULE ? sku.getSKUID() : sku.getSKUIDUnchecked();
+		add(id, sku.getSKUPriceCents(), promotion, sku.getSKUPromotionStartDay(), sku.getSKUPromotionEndDay());
+	}
+
+	/**
+	 * Appends an item to the cart.
+	 * @param id The id of the item.
+	 * @param priceCents The price of the item, in cents.
+	 * @param promotion The promotion of the item.
+	 * @param startDay The first day the promotion is valid, as days since 1970-01-01.
+	 * @param endDay The day the promotion stops being valid, as days since 1970-01-01.
+	 */
+	public void add(int id, long priceCents, Promotion promotion, int startDay, int endDay){
+		if (size == ids.length){
+			grow();
+		}
+		ids[size] = id;
+		prices[size] = priceCents;
+		promotionCodes[size] = promotionCode(promotion);
+		startDays[size] = startDay;
+		endDays[size] = endDay;
+		size++;
+	}
+
+	/**
+	 * Appends an item whose promotion already has a code in this cart, as BinaryCart does once per record.
+	 * @param id The id of the item.
+	 * @param priceCents The price of the item, in cents.
+	 * @param promotionCode The code promotionCode gave the item's promotion.
+	 * @param startDay The first day the promotion is valid, as days since 1970-01-01.
+	 * @param endDay The day the promotion stops being valid, as days since 1970-01-01.
+	 */
+	void add(int id, long priceCents, int promotionCode, int startDay, int endDay){
+		if (size == ids.length){
+			grow();
+		}
+		ids[size] = id;
+		prices[size] = priceCents;
+		promotionCodes[size] = promotionCode;
+		startDays[size] = startDay;
+		endDays[size] = endDay;
+		size++;
+	}
+
+	/**
+	 * Gets the number of items in the cart.
+	 * @return The number of items.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Gets the id of an item.
+	 * @param index The index of the item.
+	 * @return The id of the item.
+	 */
+	public int getId(int index){
+		return ids[index];
+	}
+
+	/**
+	 * Gets the price of an item.
+	 * @param index The index of the item.
+	 * @return The price of the item, in cents.
+	 */
+	public long getPriceCents(int index){
+		return prices[index];
+	}
+
+	/**
+	 * Gets the promotion of an item.
+	 * @param index The index of the item.
+	 * @return The promotion of the item.
+	 */
+	public Promotion getPromotion(int index){
+		return promotionTable[promotionCodes[index]];
+	}
+
+	/**
+	 * Gets the first day an item's promotion is valid.
+	 * @param index The index of the item.
+	 * @return The start day, as days since 1970-01-01.
+	 */
+	public int getStartDay(int index){
+		return startDays[index];
+	}
+
+	/**
+	 * Gets the day an item's promotion stops being valid.
+	 * @param index The index of the item.
+	 * @return The end day, as days since 1970-01-01.
+	 */
+	public int getEndDay(int index){
+		return endDays[index];
+	}
+
+	/**
+	 * Prices the cart as of currentDate.
+	 * @param currentDate The date promotions are checked against.
+	 * @return The total and rebate total of the cart.
+	 */
+	public CartTotals price(Date currentDate){
+		return price(PromotionDates.epochDay(currentDate));
+	}
+
+	/**
+	 * Prices the cart as of today, giving the same totals as Cart.price and DiscountEngine.
+	 * Uses the same single pass as DiscountEngine, with the BOGO counters of each id held in primitive arrays.
+	 * @param today The day promotions are checked against, as days since 1970-01-01.
+	 * @return The total and rebate total of the cart.
+	 */
+	public CartTotals price(int today){
+		return price(today, (BogoOptimizer) null);
+	}
+
+	/**
+	 * Prices the cart as of today, with buy X get Y deals chosen by a BogoOptimizer instead of taken in cart order,
+	 * giving the same totals as DiscountEngine.price(SKUArray, today, policy).
+	 * @param today The day promotions are checked against, as days since 1970-01-01.
+	 * @param policy Which items the deals discount.
+	 * @return The total and rebate total of the cart.
+	 */
+	public CartTotals price(int today, BogoOptimizer.Policy policy){
+		return price(today, new BogoOptimizer(policy));
+	}
+
+	/**
+	 * Prices the cart as of today.
+	 * @param optimizer Takes the BOGO items if not null. Otherwise their deals are taken in cart order.
+	 */
+	private CartTotals price(int today, BogoOptimizer optimizer){
+		long total = 0;
+		long rebateTotal = 0;
+		BogoTally bogo = new BogoTally();
+		PricingContext context = hasRules ? new PricingContext(today) : null;
+
+		for (int i = 0; i < size; i++){
+			long price = prices[i];
+			if (startDays[i] > today || endDays[i] <= today){
+				total += price;
+				continue;
+			}
+			int code = promotionCodes[i];
+			switch (tableKinds[code]){
+			case NONE:
+				total += price;
+				break;
+			case PERCENT:
+				total += Money.percentOff(price, tableAmounts[code]);
+				break;
+			case REBATE:
+				total += price;
+				rebateTotal += tableAmounts[code];
+				break;
+			case BOGO:
+				if (optimizer != null){
+					optimizer.add(ids[i], price, tableBuyCounts[code], tableGetCounts[code], tableAmounts[code]);
+				} else {
+					bogo.add(i);
+				}
+				break;
+			case RULE:
+				Promotion promotion = promotionTable[code];
+				total += promotion.getRule().apply(context, i, ids[i], price, promotion);
+				break;
+			default:
+				break;
+			}
+		}
+		if (context != null){
+			context.finish();
+			total += context.getTotal();
+			rebateTotal += context.getRebateTotal();
+		}
+		if (optimizer != null){
+			return new CartTotals(total + optimizer.total(), rebateTotal);
+		}
+
+		/**
+		 * As in DiscountEngine, the first deal that was never used up stops the rescanning loop.
+		 */
+		int stuck = bogo.firstStuck();
+		int cutoff = stuck >= 0 ? bogo.dealStart[stuck] : Integer.MAX_VALUE;
+		if (stuck >= 0){
+			total += bogo.subtotal[stuck];
+		}
+		total += bogo.completedBefore(cutoff);
+		return new CartTotals(total, rebateTotal);
+	}
+
+	/**
+	 * Prices the cart as of today on every thread of the common fork/join pool, giving the same totals as price(today).
+	 * @param today The day promotions are checked against, as days since 1970-01-01.
+	 * @return The total and rebate total of the cart.
+	 * @throws InterruptedException Throws if interrupted while waiting for the pool.
+	 */
+	public CartTotals priceParallel(int today) throws InterruptedException{
+		return price(today, ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+	}
+
+	/**
+	 * Prices the cart as of today on an executor, giving the same totals as price(today).
+	 *
+	 * Items without a BOGO promotion do not depend on each other, so the cart is cut into slices that are totalled at
+	 * the same time, and each slice sorts the indexes of its BOGO items into buckets by id. Every item of an id lands
+	 * in the same bucket in cart order, so each bucket then runs the BOGO counters of its ids on its own. Last, the
+	 * first deal that was never used up is found across every bucket, and each bucket adds the deals that started
+	 * before it. The totals are sums of whole cents, so they come out the same however the work was split.
+	 * Carts smaller than MIN_PARALLEL_ITEMS are priced on the calling thread, and so are carts with a promotion priced by
+	 * a registered PromotionRule, as a rule sees its items in cart order.
+	 * @param today The day promotions are checked against, as days since 1970-01-01.
+	 * @param executor Runs the slices and buckets. It is not shut down.
+	 * @param threads The number of threads of executor, used to decide how finely to split the cart.
+	 * @return The total and rebate total of the cart.
+	 * @throws InterruptedException Throws if interrupted while waiting for the executor.
+	 */
+	public CartTotals price(final int today, ExecutorService executor, int threads) throws InterruptedException{
+		if (size < MIN_PARALLEL_ITEMS || threads <= 1 || hasRules){
+			return price(today);
+		}
+		final int sliceSize = Math.max(MIN_SLICE_ITEMS, (size + threads * 4 - 1) / (threads * 4));
+		int sliceCount = (size + sliceSize - 1) / sliceSize;
+		final int bucketCount = Integer.highestOneBit(threads * 4 - 1) << 1;
+
+		List<Callable<Slice>> sliceTasks = new ArrayList<Callable<Slice>>(sliceCount);
+		for (int s = 0; s < sliceCount; s++){
+			final int from = s * sliceSize;
+			final int to = Math.min(size, from + sliceSize);
+			sliceTasks.add(() -> scan(from, to, today, bucketCount));
+		}
+		final List<Slice> slices = join(executor.invokeAll(sliceTasks));
+
+		List<Callable<BogoTally>> bucketTasks = new ArrayList<Callable<BogoTally>>(bucketCount);
+		for (int b = 0; b < bucketCount; b++){
+			final int bucket = b;
+			bucketTasks.add(() -> {
+				BogoTally bogo = new BogoTally();
+				for (Slice slice : slices){
+					int[] indexes = slice.bogoIndexes[bucket];
+					for (int k = 0, count = slice.bogoCounts[bucket]; k < count; k++){
+						bogo.add(indexes[k]);
+					}
+				}
+				return bogo;
+			});
+		}
+		final List<BogoTally> tallies = join(executor.invokeAll(bucketTasks));
+
+		long total = 0;
+		long rebateTotal = 0;
+		for (Slice slice : slices){
+			total += slice.total;
+			rebateTotal += slice.rebateTotal;
+		}
+		int cutoff = Integer.MAX_VALUE;
+		long stuckSubtotal = 0;
+		for (BogoTally bogo : tallies){
+			int stuck = bogo.firstStuck();
+			if (stuck >= 0 && bogo.dealStart[stuck] < cutoff){
+				cutoff = bogo.dealStart[stuck];
+				stuckSubtotal = bogo.subtotal[stuck];
+			}
+		}
+		total += stuckSubtotal;
+		final int dealCutoff = cutoff;
+		List<Callable<Long>> sumTasks = new ArrayList<Callable<Long>>(tallies.size());
+		for (final BogoTally bogo : tallies){
+			sumTasks.add(() -> Long.valueOf(bogo.completedBefore(dealCutoff)));
+		}
+		for (Long completed : join(executor.invokeAll(sumTasks))){
+			total += completed.longValue();
+		}
+		return new CartTotals(total, rebateTotal);
+	}
+
+	/**
+	 * The totals of the items of one slice of the cart that do not have a BOGO promotion, and the indexes of the ones
+	 * that do, sorted into buckets by id in cart order.
+	 */
+	private static class Slice {
+		long total;
+		long rebateTotal;
+		int[][] bogoIndexes;
+		int[] bogoCounts;
+	}
+
+	/**
+	 * Totals one slice of the cart, setting its BOGO items aside by bucket.
+	 * @param from The index of the first item of the slice.
+	 * @param to The index just past the last item of the slice.
+	 * @param today The day promotions are checked against, as days since 1970-01-01.
+	 * @param bucketCount The number of buckets, a power of two.
+	 * @return The totals and BOGO indexes of the slice.
+	 */
+	private Slice scan(int from, int to, int today, int bucketCount){
+		Slice slice = new Slice();
+		slice.bogoIndexes = new int[bucketCount][];
+		slice.bogoCounts = new int[bucketCount];
+		for (int i = from; i < to; i++){
+			long price = prices[i];
+			if (startDays[i] > today || endDays[i] <= today){
+				slice.total += price;
+				continue;
+			}
+			int code = promotionCodes[i];
+			switch (tableKinds[code]){
+			case NONE:
+				slice.total += price;
+				break;
+			case PERCENT:
+				slice.total += Money.percentOff(price, tableAmounts[code]);
+				break;
+			case REBATE:
+				slice.total += price;
+				slice.rebateTotal += tableAmounts[code];
+				break;
+			case BOGO:
+				/**
+				 * Bucket by the high bits of the hash, so the ids of one bucket still spread over the slots of its tally.
+				 */
+				int bucket = hash(ids[i]) >>> 16 & (bucketCount - 1);
+				int[] indexes = slice.bogoIndexes[bucket];
+				int count = slice.bogoCounts[bucket];
+				if (indexes == null){
+					indexes = new int[16];
+					slice.bogoIndexes[bucket] = indexes;
+				} else if (count == indexes.length){
+					indexes = Arrays.copyOf(indexes, count * 2);
+					slice.bogoIndexes[bucket] = indexes;
+				}
+				indexes[count] = i;
+				slice.bogoCounts[bucket] = count + 1;
+				break;
+			default:
+				break;
+			}
+		}
+		return slice;
+	}
+
+	/**
+	 * Waits for every future, in order, and gathers their results.
+	 * @param futures The futures to wait for.
+	 * @return The result of each future.
+	 * @throws InterruptedException Throws if interrupted while waiting.
+	 */
+	private static <T> List<T> join(List<Future<T>> futures) throws InterruptedException{
+		List<T> results = new ArrayList<T>(futures.size());
+		for (Future<T> future : futures){
+			try {
+				results.add(future.get());
+			} catch(ExecutionException e){
+				if (e.getCause() instanceof RuntimeException){
+					throw (RuntimeException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * The BOGO counters of every id seen so far, and the deals that have been used up, for items added in cart order.
+	 */
+	private class BogoTally {
+
+		/**
+		 * Open addressed map from id to the slot holding that id's BOGO counters.
+		 */
+		int[] groupKeys = new int[16];
+		int[] groupSlots = new int[16];
+		int groupCount = 0;
+		boolean[] active = new boolean[8];
+		int[] dealStart = new int[8];
+		int[] bogoX = new int[8];
+		int[] bogoY = new int[8];
+		long[] subtotal = new long[8];
+
+		/**
+		 * The start index and subtotal of every deal that has been used up.
+		 */
+		int[] dealStarts = new int[16];
+		long[] dealSubtotals = new long[16];
+		int dealCount = 0;
+
+		/**
+		 * Runs the counters of a BOGO item whose promotion is valid. Items must be added in cart order.
+		 * @param i The index of the item.
+		 */
+		void add(int i){
+			long price = prices[i];
+			int code = promotionCodes[i];
+
+			/**
+			 * Find the slot for this id, adding one if the id has not been seen yet.
+			 */
+			int id = ids[i];
+			int mask = groupKeys.length - 1;
+			int h = hash(id) & mask;
+			while (groupSlots[h] != 0 && groupKeys[h] != id){
+				h = (h + 1) & mask;
+			}
+			int g;
+			if (groupSlots[h] == 0){
+				g = groupCount++;
+				if (g == active.length){
+					active = Arrays.copyOf(active, g * 2);
+					dealStart = Arrays.copyOf(dealStart, g * 2);
+					bogoX = Arrays.copyOf(bogoX, g * 2);
+					bogoY = Arrays.copyOf(bogoY, g * 2);
+					subtotal = Arrays.copyOf(subtotal, g * 2);
+				}
+				groupKeys[h] = id;
+				groupSlots[h] = g + 1;
+				if (groupCount * 2 > groupKeys.length){
+					int[][] rehashed = rehash(groupKeys, groupSlots);
+					groupKeys = rehashed[0];
+					groupSlots = rehashed[1];
+				}
+			} else {
+				g = groupSlots[h] - 1;
+			}
+
+			if (!active[g]){
+				active[g] = true;
+				dealStart[g] = i;
+				bogoX[g] = tableBuyCounts[code] - 1;
+				bogoY[g] = tableGetCounts[code];
+				subtotal[g] = price;
+			} else if (bogoX[g] > 0){
+				bogoX[g]--;
+				subtotal[g] += price;
+			} else if (bogoX[g] == 0 && bogoY[g] > 0){
+				bogoY[g]--;
+				subtotal[g] += Money.percentOff(price, tableAmounts[code]);
+				if (bogoY[g] == 0){
+					if (dealCount == dealStarts.length){
+						dealStarts = Arrays.copyOf(dealStarts, dealCount * 2);
+						dealSubtotals = Arrays.copyOf(dealSubtotals, dealCount * 2);
+					}
+					dealStarts[dealCount] = dealStart[g];
+					dealSubtotals[dealCount] = subtotal[g];
+					dealCount++;
+					active[g] = false;
+				}
+			}
+		}
+
+		/**
+		 * Finds the open deal that started first.
+		 * @return The slot of the id whose open deal started first, or -1 if every deal was used up.
+		 */
+		int firstStuck(){
+			int cutoff = Integer.MAX_VALUE;
+			int stuck = -1;
+			for (int g = 0; g < groupCount; g++){
+				if (active[g] && dealStart[g] < cutoff){
+					cutoff = dealStart[g];
+					stuck = g;
+				}
+			}
+			return stuck;
+		}
+
+		/**
+		 * Adds up the used up deals that started before cutoff.
+		 * @param cutoff The index of the item that started the first open deal, or Integer.MAX_VALUE.
+		 * @return The sum of their subtotals, in cents.
+		 */
+		long completedBefore(int cutoff){
+			long total = 0;
+			for (int d = 0; d < dealCount; d++){
+				if (dealStarts[d] < cutoff){
+					total += dealSubtotals[d];
+				}
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * Gets the promotion code for a promotion, adding it to the table if its type has not been seen yet.
+	 */
+	int promotionCode(Promotion promotion){
+		Integer code = promotionCodesByType.get(promotion.getType());
+		if (code != null){
+			return code.intValue();
+		}
+		if (promotionCount == promotionTable.length){
+			int length = promotionCount * 2;
+			promotionTable = Arrays.copyOf(promotionTable, length);
+			tableKinds = Arrays.copyOf(tableKinds, length);
+			tableBuyCounts = Arrays.copyOf(tableBuyCounts, length);
+			tableGetCounts = Arrays.copyOf(tableGetCounts, length);
+			tableAmounts = Arrays.copyOf(tableAmounts, length);
+		}
+		int newCode = promotionCount++;
+		promotionTable[newCode] = promotion;
+		tableKinds[newCode] = promotion.getKind();
+		hasRules |= promotion.getKind() == Promotion.Kind.RULE;
+		tableBuyCounts[newCode] = promotion.getBuyCount();
+		tableGetCounts[newCode] = promotion.getGetCount();
+		tableAmounts[newCode] = promotion.getKind() == Promotion.Kind.REBATE ? promotion.getRebateCents() : promotion.getRateBasisPoints();
+		promotionCodesByType.put(promotion.getType(), Integer.valueOf(newCode));
+		return newCode;
+	}
+
+	/**
+	 * Doubles the capacity of every column.
+	 */
+	private void grow(){
+		int length = ids.length * 2;
+		ids = Arrays.copyOf(ids, length);
+		prices = Arrays.copyOf(prices, length);
+		promotionCodes = Arrays.copyOf(promotionCodes, length);
+		startDays = Arrays.copyOf(startDays, length);
+		endDays = Arrays.copyOf(endDays, length);
+	}
+
+	/**
+	 * Spreads the bits of an id so nearby ids land in different slots.
+	 */
+	private static int hash(int id){
+		int h = id * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Doubles the size of the id to slot map.
+	 */
+	private static int[][] rehash(int[] keys, int[] slots){
+		int[] newKeys = new int[keys.length * 2];
+		int[] newSlots = new int[keys.length * 2];
+		int mask = newKeys.length - 1;
+		for (int i = 0; i < keys.length; i++){
+			if (slots[i] != 0){
+				int h = hash(keys[i]) & mask;
+				while (newSlots[h] != 0){
+					h = (h + 1) & mask;
+				}
+				newKeys[h] = keys[i];
+				newSlots[h] = slots[i];
+			}
+		}
+		return new int[][] {newKeys, newSlots};
+	}
+}
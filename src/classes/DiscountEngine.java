@@ -0,0 +1,127 @@
+package classes;
+
+import java.util.Date;
+
+/**
+ * Prices a cart in a single pass, giving the same totals as Cart.applyDiscounts without rescanning the cart
+ * every time a buy X get Y Z% off deal is used up.
+ *
+ * Each item with valid promotion dates is handed to its PromotionRule. The built in kinds are switched on and their
+ * rules called through PromotionRules' own fields, so each call site sees one class, and only registered rules go
+ * through the Promotion's rule. Buy X get Y deals are tracked by the BOGO rule, which keeps one set of X and Y counters
+ * per id and, once the whole cart has been seen, adds only the deals the rescanning loop would have reached.
+ *
+ * price(SKUArray, today, policy) prices the same cart with a BogoOptimizer instead, which chooses the items each deal
+ * discounts by price, so the total no longer depends on the order of the rows.
+ * @author Alex
+ *
+ */
+public class DiscountEngine {
+
+	/**
+	 * Prices the cart as of now.
+	 * @param SKUArray The items in the cart.
+	 * @return The total and rebate total of the cart.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static CartTotals price(SKU[] SKUArray) throws Exception{
+		return price(SKUArray, PromotionDates.today());
+	}
+
+	/**
+	 * Prices the cart as of currentDate.
+	 * @param SKUArray The items in the cart.
+	 * @param currentDate The date promotions are checked against.
+	 * @return The total and rebate total of the cart.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static CartTotals price(SKU[] SKUArray, Date currentDate) throws Exception{
+		return price(SKUArray, PromotionDates.epochDay(currentDate));
+	}
+
+	/**
+	 * Prices the cart as of today.
+	 * @param SKUArray The items in the cart.
+	 * @param today The epoch day promotions are checked against, worked out once for the whole cart.
+	 * @return The total and rebate total of the cart.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static CartTotals price(SKU[] SKUArray, int today) throws Exception{
+		return price(SKUArray, today, (BogoOptimizer) null);
+	}
+
+	/**
+	 * Prices the cart as of today, with buy X get Y deals optimized instead of taken in cart order.
+	 * @param SKUArray The items in the cart.
+	 * @param today The epoch day promotions are checked against, worked out once for the whole cart.
+	 * @param policy Which items the deals discount.
+	 * @return The total and rebate total of the cart.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public static CartTotals price(SKU[] SKUArray, int today, BogoOptimizer.Policy policy) throws Exception{
+		return price(SKUArray, today, new BogoOptimizer(policy));
+	}
+
+	/**
+	 * Prices the cart as of today.
+	 * @param optimizer Takes the BOGO items if not null. Otherwise they go to the BOGO rule in cart order.
+	 */
+	private static CartTotals price(SKU[] SKUArray, int today, BogoOptimizer optimizer) throws Exception{
+		long total = 0;
+
+		/**
+		 * The rules' state for this cart, and what they add beyond the charge of each item.
+		 */
+		PricingContext context = new PricingContext(today);
+
+		for (int i = 0; i < SKUArray.length; i++){
+			SKU sku = SKUArray[i];
+			long price = sku.getSKUPriceCents();
+
+			/**
+			 * If the sale dates are not valid, the item is totalled at full price whatever its promotion.
+			 */
+			if (sku.getSKUPromotionStartDay() > today || sku.getSKUPromotionEndDay() <= today){
+				total += price;
+				continue;
+			}
+
+			/**
+			 * Only deals and rules read the id, so only they need it set, as in Cart.price.
+			 */
+			Promotion promotion = sku.getSKUPromotion();
+			switch (promotion.getKind()){
+			case NONE:
+				total += PromotionRules.NONE.apply(context, i, sku.getSKUIDUnchecked(), price, promotion);
+				break;
+			case PERCENT:
+				total += PromotionRules.PERCENT.apply(context, i, sku.getSKUIDUnchecked(), price, promotion);
+				break;
+			case REBATE:
+				total += PromotionRules.REBATE.apply(context, i, sku.getSKUIDUnchecked(), price, promotion);
+				break;
+			case BOGO:
+				if (optimizer != null){
+					optimizer.add(sku.getSKUID(), price, promotion);
+				} else {
+					total += PromotionRules.BOGO.apply(context, i, sku.getSKUID(), price, promotion);
+				}
+				break;
+			case RULE:
+				total += promotion.getRule().apply(context, i, sku.getSKUID(), price, promotion);
+				break;
+			default:
+				/**
+				 * Unrecognized promotions are never totalled.
+				 */
+				break;
+			}
+		}
+
+		context.finish();
+		if (optimizer != null){
+			total += optimizer.total();
+		}
+		return new CartTotals(total + context.getTotal(), context.getRebateTotal());
+	}
+}
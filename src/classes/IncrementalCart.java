@@ -0,0 +1,570 @@
+package classes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A cart that can be edited, keeping its totals up to date as items are added and removed, so a checkout session can
+ * reprice after every click without pricing the whole cart again. The totals always equal Cart.price of the same items.
+ *
+ * Items that are not in a buy X get Y deal add a fixed amount to the running total and rebate total, so adding or
+ * removing one is a constant amount of work. BOGO items are grouped by id the way DiscountEngine groups them. Each item
+ * keeps the sequence number it was added with, so a deal can be ordered by the item that started it even after
+ * earlier items are removed. Completed deal subtotals are kept in a Fenwick tree by starting sequence number, and open
+ * deals in a sorted map, so the rescanning loop's rule (only deals started before the first deal that can never be used
+ * up count, plus that deal itself) is a single prefix sum.
+ *
+ * Costs, for a cart of n items:
+ *	add: O(log n).
+ *	remove: O(log n) for items not in a deal. For a BOGO item, O(k log n) where k is the number of BOGO items of the same
+ *		id from the removed item's deal on, since those deals are worked out again. Removing from the end is O(log n).
+ *	getTotals: O(log n), plus O(r log n) for the r items priced by registered PromotionRules. A rule can depend on
+ *		the whole cart, so those items are run through their rules again every time.
+ * @author Alex
+ *
+ */
+public class IncrementalCart {
+
+	/**
+	 * One buy X get Y deal of one id.
+	 */
+	private static class Deal {
+		/**
+		 * The sequence number of the item that started the deal.
+		 */
+		int start;
+
+		/**
+		 * Items still to buy at full price, and items still to discount.
+		 */
+		int bogoX;
+		int bogoY;
+
+		/**
+		 * The price of the items totalled by the deal so far, in cents.
+		 */
+		long subtotal;
+
+		/**
+		 * True once the deal has been used up.
+		 */
+		boolean complete;
+	}
+
+	/**
+	 * The BOGO items and deals of one id.
+	 */
+	private static class BogoGroup {
+		/**
+		 * The sequence numbers of the id's BOGO items, in cart order.
+		 */
+		final TreeSet<Integer> items = new TreeSet<Integer>();
+
+		/**
+		 * The id's deals, in cart order. Only the last can still take more items.
+		 */
+		final ArrayList<Deal> deals = new ArrayList<Deal>();
+	}
+
+	/**
+	 * A Fenwick tree of longs, giving prefix sums and point updates in O(log n).
+	 */
+	private static class Fenwick {
+		/**
+		 * The tree, 1 based.
+		 */
+		final long[] tree;
+
+		/**
+		 * Builds a tree over values in O(n).
+		 */
+		Fenwick(long[] values){
+			tree = new long[values.length + 1];
+			for (int i = 1; i < tree.length; i++){
+				tree[i] += values[i - 1];
+				int parent = i + (i & -i);
+				if (parent < tree.length){
+					tree[parent] += tree[i];
+				}
+			}
+		}
+
+		/**
+		 * Adds delta to the value at index.
+		 */
+		void add(int index, long delta){
+			for (int i = index + 1; i < tree.length; i += i & -i){
+				tree[i] += delta;
+			}
+		}
+
+		/**
+		 * Sums the values at indexes 0 to index inclusive.
+		 */
+		long prefix(int index){
+			long sum = 0;
+			for (int i = index + 1; i > 0; i -= i & -i){
+				sum += tree[i];
+			}
+			return sum;
+		}
+
+		/**
+		 * Finds the smallest index whose prefix sum is more than rank. Values must all be 0 or 1.
+		 */
+		int find(long rank){
+			int position = 0;
+			for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1){
+				int next = position + step;
+				if (next < tree.length && tree[next] <= rank){
+					position = next;
+					rank -= tree[next];
+				}
+			}
+			return position;
+		}
+	}
+
+	/**
+	 * The epoch day promotions are checked against.
+	 */
+	private final int today;
+
+	/**
+	 * The items, by sequence number. Removed items leave null behind until the cart is compacted.
+	 */
+	private SKU[] items;
+
+	/**
+	 * What each item not in a deal adds to the total and to the rebate total, in cents, by sequence number.
+	 */
+	private long[] charged;
+	private long[] rebates;
+
+	/**
+	 * True for each item that is part of a BOGO deal, by sequence number.
+	 */
+	private boolean[] inDeal;
+
+	/**
+	 * The subtotal of each completed deal, by the sequence number of the item that started it.
+	 */
+	private long[] completedSubtotals;
+
+	/**
+	 * 1 for each sequence number still in the cart, so an index can be turned into a sequence number.
+	 */
+	private Fenwick present;
+
+	/**
+	 * The subtotals of completed deals, by starting sequence number.
+	 */
+	private Fenwick completed;
+
+	/**
+	 * The open deals of every id, by starting sequence number.
+	 */
+	private final TreeMap<Integer, Deal> openDeals = new TreeMap<Integer, Deal>();
+
+	/**
+	 * The BOGO items and deals of each id.
+	 */
+	private final HashMap<Integer, BogoGroup> groups = new HashMap<Integer, BogoGroup>();
+
+	/**
+	 * The ids of the items priced by registered PromotionRules, by sequence number in cart order.
+	 */
+	private final TreeMap<Integer, Integer> ruleItems = new TreeMap<Integer, Integer>();
+
+	/**
+	 * The next sequence number, and the number of items in the cart.
+	 */
+	private int sequence;
+	private int size;
+
+	/**
+	 * The running total of every item not in a deal, and the running rebate total, in cents.
+	 */
+	private long total;
+	private long rebateTotal;
+
+	/**
+	 * Constructor for an empty cart priced as of today.
+	 */
+	public IncrementalCart(){
+		this(PromotionDates.today());
+	}
+
+	/**
+	 * Constructor for an empty cart.
+	 * @param inToday The epoch day promotions are checked against.
+	 */
+	public IncrementalCart(int inToday){
+		this.today = inToday;
+		clear(16);
+	}
+
+	/**
+	 * Constructor for a cart holding the given items.
+	 * @param SKUArray The items in the cart, in order.
+	 * @param inToday The epoch day promotions are checked against.
+	 * @throws Exception Throws any exception raised while reading an SKU.
+	 */
+	public IncrementalCart(SKU[] SKUArray, int inToday) throws Exception{
+		this.today = inToday;
+		clear(Math.max(SKUArray.length, 16));
+		for (SKU sku : SKUArray){
+			add(sku);
+		}
+	}
+
+	/**
+	 * Adds an item to the end of the cart.
+	 * @param sku The item to add.
+	 * @throws Exception Throws any exception raised while reading the SKU.
+	 */
+	public void add(SKU sku) throws Exception{
+		if (sequence == items.length){
+			if (size * 2 <= items.length){
+				compact();
+			} else {
+				grow(items.length * 2);
+			}
+		}
+		int seq = sequence++;
+		items[seq] = sku;
+		present.add(seq, 1);
+		size++;
+
+		long price = sku.getSKUPriceCents();
+		Promotion promotion = sku.getSKUPromotion();
+		if (sku.getSKUPromotionStartDay() > today || sku.getSKUPromotionEndDay() <= today){
+			charged[seq] = price;
+		} else {
+			switch (promotion.getKind()){
+			case NONE:
+				charged[seq] = price;
+				break;
+			case PERCENT:
+				charged[seq] = Money.percentOff(price, promotion.getRateBasisPoints());
+				break;
+			case REBATE:
+				charged[seq] = price;
+				rebates[seq] = promotion.getRebateCents();
+				break;
+			case BOGO:
+				inDeal[seq] = true;
+				append(sku.getSKUID(), seq);
+				break;
+			case RULE:
+				ruleItems.put(Integer.valueOf(seq), Integer.valueOf(sku.getSKUID()));
+				break;
+			default:
+				/**
+				 * Unrecognized promotions are never totalled.
+				 */
+				break;
+			}
+		}
+		total += charged[seq];
+		rebateTotal += rebates[seq];
+	}
+
+	/**
+	 * Removes an item from the cart. Later items move down one place.
+	 * @param index The index of the item to remove.
+	 * @return The removed item.
+	 * @throws Exception Throws any exception raised while reading the SKU.
+	 */
+	public SKU remove(int index) throws Exception{
+		int seq = sequenceOf(index);
+		SKU sku = items[seq];
+		items[seq] = null;
+		present.add(seq, -1);
+		size--;
+		total -= charged[seq];
+		rebateTotal -= rebates[seq];
+		charged[seq] = 0;
+		rebates[seq] = 0;
+		ruleItems.remove(Integer.valueOf(seq));
+		if (inDeal[seq]){
+			inDeal[seq] = false;
+			Integer id = Integer.valueOf(sku.getSKUID());
+			BogoGroup group = groups.get(id);
+			group.items.remove(Integer.valueOf(seq));
+			rebuild(group, seq);
+			if (group.items.isEmpty()){
+				groups.remove(id);
+			}
+		}
+		return sku;
+	}
+
+	/**
+	 * Gets an item of the cart.
+	 * @param index The index of the item.
+	 * @return The item.
+	 */
+	public SKU get(int index){
+		return items[sequenceOf(index)];
+	}
+
+	/**
+	 * Gets the number of items in the cart.
+	 * @return The number of items.
+	 */
+	public int size(){
+		return size;
+	}
+
+	/**
+	 * Copies the items of the cart into an array.
+	 * @return The items, in cart order.
+	 */
+	public SKU[] toArray(){
+		SKU[] SKUArray = new SKU[size];
+		int next = 0;
+		for (int seq = 0; seq < sequence; seq++){
+			if (items[seq] != null){
+				SKUArray[next++] = items[seq];
+			}
+		}
+		return SKUArray;
+	}
+
+	/**
+	 * Gets the totals of the cart as it is now.
+	 * @return The total and rebate total of the cart.
+	 */
+	public CartTotals getTotals(){
+		PricingContext rules = priceRules();
+		return new CartTotals(bogoTotal() + rules.getTotal(), rebateTotal + rules.getRebateTotal());
+	}
+
+	/**
+	 * Gets the total price of the cart as it is now.
+	 * @return The total price of the cart after discounts, in cents.
+	 */
+	public long getTotalCents(){
+		return bogoTotal() + priceRules().getTotal();
+	}
+
+	/**
+	 * Gets the total of every item except those priced by registered rules.
+	 */
+	private long bogoTotal(){
+		/**
+		 * The first deal that can never be used up stops the rescanning loop. Its items still count,
+		 * but no deal started after it is reached.
+		 */
+		int cutoff = sequence;
+		long bogoTotal = 0;
+		if (!openDeals.isEmpty()){
+			Map.Entry<Integer, Deal> stuck = openDeals.firstEntry();
+			cutoff = stuck.getKey().intValue();
+			bogoTotal += stuck.getValue().subtotal;
+		}
+		return total + bogoTotal + completed.prefix(cutoff - 1);
+	}
+
+	/**
+	 * Gets the rebates accrued by the cart as it is now.
+	 * @return The total amount of rebate, in cents.
+	 */
+	public long getRebateTotalCents(){
+		return rebateTotal + priceRules().getRebateTotal();
+	}
+
+	/**
+	 * Runs the items priced by registered rules through their rules, in cart order.
+	 * @return A context whose total holds everything those items add to the cart total, and whose rebate total holds
+	 * the rebates they accrue.
+	 */
+	private PricingContext priceRules(){
+		PricingContext context = new PricingContext(today);
+		for (Map.Entry<Integer, Integer> item : ruleItems.entrySet()){
+			int seq = item.getKey().intValue();
+			SKU sku = items[seq];
+			Promotion promotion = sku.getSKUPromotion();
+			int index = (int) present.prefix(seq) - 1;
+			context.addTotal(promotion.getRule().apply(context, index, item.getValue().intValue(), sku.getSKUPriceCents(), promotion));
+		}
+		context.finish();
+		return context;
+	}
+
+	/**
+	 * Adds a BOGO item to the end of its id's deals. Only the id's last deal can change.
+	 */
+	private void append(int id, int seq){
+		BogoGroup group = groups.get(Integer.valueOf(id));
+		if (group == null){
+			group = new BogoGroup();
+			groups.put(Integer.valueOf(id), group);
+		}
+		group.items.add(Integer.valueOf(seq));
+		Deal last = group.deals.isEmpty() ? null : group.deals.get(group.deals.size() - 1);
+		if (last == null || last.complete){
+			last = new Deal();
+			start(last, seq);
+			group.deals.add(last);
+		} else {
+			unpublish(last);
+			step(last, seq);
+		}
+		publish(last);
+	}
+
+	/**
+	 * Works out the deals of an id again after one of its items was removed. Deals that ended before the removed item
+	 * are unchanged, so only the deal holding it and the deals after it are redone.
+	 */
+	private void rebuild(BogoGroup group, int removed){
+		int first = group.deals.size() - 1;
+		while (first > 0 && group.deals.get(first).start > removed){
+			first--;
+		}
+		int from = group.deals.get(first).start;
+		for (int d = group.deals.size() - 1; d >= first; d--){
+			unpublish(group.deals.remove(d));
+		}
+		Deal last = null;
+		for (Integer seq : group.items.tailSet(Integer.valueOf(from))){
+			if (last == null || last.complete){
+				last = new Deal();
+				start(last, seq.intValue());
+				group.deals.add(last);
+			} else {
+				step(last, seq.intValue());
+			}
+		}
+		for (int d = first; d < group.deals.size(); d++){
+			publish(group.deals.get(d));
+		}
+	}
+
+	/**
+	 * Starts a deal on an item. The deal's X and Y come from the item that starts it.
+	 */
+	private void start(Deal deal, int seq){
+		Promotion promotion = items[seq].getSKUPromotion();
+		deal.start = seq;
+		deal.bogoX = promotion.getBuyCount() - 1;
+		deal.bogoY = promotion.getGetCount();
+		deal.subtotal = items[seq].getSKUPriceCents();
+		deal.complete = false;
+	}
+
+	/**
+	 * Adds the next item of an id to its open deal, the same way DiscountEngine does.
+	 */
+	private void step(Deal deal, int seq){
+		long price = items[seq].getSKUPriceCents();
+		if (deal.bogoX > 0){
+			deal.bogoX--;
+			deal.subtotal += price;
+		} else if (deal.bogoX == 0 && deal.bogoY > 0){
+			deal.bogoY--;
+			deal.subtotal += Money.percentOff(price, items[seq].getSKUPromotion().getRateBasisPoints());
+			deal.complete = deal.bogoY == 0;
+		}
+		/**
+		 * Otherwise the deal can never be used up, so the item is never totalled.
+		 */
+	}
+
+	/**
+	 * Adds a deal to the completed deal sums or the open deals.
+	 */
+	private void publish(Deal deal){
+		if (deal.complete){
+			completed.add(deal.start, deal.subtotal);
+			completedSubtotals[deal.start] = deal.subtotal;
+		} else {
+			openDeals.put(Integer.valueOf(deal.start), deal);
+		}
+	}
+
+	/**
+	 * Takes a deal back out of the completed deal sums or the open deals.
+	 */
+	private void unpublish(Deal deal){
+		if (deal.complete){
+			completed.add(deal.start, -deal.subtotal);
+			completedSubtotals[deal.start] = 0;
+		} else {
+			openDeals.remove(Integer.valueOf(deal.start));
+		}
+	}
+
+	/**
+	 * Turns an index into the sequence number of the item at that index.
+	 */
+	private int sequenceOf(int index){
+		if (index < 0 || index >= size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return present.find(index);
+	}
+
+	/**
+	 * Makes room for more sequence numbers, rebuilding the Fenwick trees at the new size.
+	 */
+	private void grow(int capacity){
+		SKU[] oldItems = items;
+		long[] oldCharged = charged;
+		long[] oldRebates = rebates;
+		boolean[] oldInDeal = inDeal;
+		long[] oldCompleted = completedSubtotals;
+		items = new SKU[capacity];
+		charged = new long[capacity];
+		rebates = new long[capacity];
+		inDeal = new boolean[capacity];
+		completedSubtotals = new long[capacity];
+		System.arraycopy(oldItems, 0, items, 0, sequence);
+		System.arraycopy(oldCharged, 0, charged, 0, sequence);
+		System.arraycopy(oldRebates, 0, rebates, 0, sequence);
+		System.arraycopy(oldInDeal, 0, inDeal, 0, sequence);
+		System.arraycopy(oldCompleted, 0, completedSubtotals, 0, sequence);
+		long[] presence = new long[capacity];
+		for (int seq = 0; seq < sequence; seq++){
+			presence[seq] = items[seq] != null ? 1 : 0;
+		}
+		present = new Fenwick(presence);
+		completed = new Fenwick(completedSubtotals);
+	}
+
+	/**
+	 * Gives the items still in the cart new sequence numbers with no gaps, once removals have left half of them unused.
+	 */
+	private void compact() throws Exception{
+		SKU[] live = toArray();
+		clear(items.length);
+		for (SKU sku : live){
+			add(sku);
+		}
+	}
+
+	/**
+	 * Empties the cart.
+	 */
+	private void clear(int capacity){
+		items = new SKU[capacity];
+		charged = new long[capacity];
+		rebates = new long[capacity];
+		inDeal = new boolean[capacity];
+		completedSubtotals = new long[capacity];
+		present = new Fenwick(new long[capacity]);
+		completed = new Fenwick(new long[capacity]);
+		openDeals.clear();
+		groups.clear();
+		ruleItems.clear();
+		sequence = 0;
+		size = 0;
+		total = 0;
+		rebateTotal = 0;
+	}
+}
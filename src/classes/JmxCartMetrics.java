@@ -0,0 +1,175 @@
+package classes;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.ObjectName;
+
+/**
+ * Metrics that add up everything Cart reports and publish the totals as an MXBean, so they can be watched in
+ * JConsole or VisualVM, or scraped by any JMX exporter.
+ *
+ * To switch metrics on:
+ *	JmxCartMetrics metrics = new JmxCartMetrics();
+ *	metrics.register();
+ *	Cart.setMetrics(metrics);
+ * @author Alex
+ *
+ */
+public class JmxCartMetrics implements CartMetrics, CartMetricsMXBean {
+
+	/**
+	 * The name the metrics are registered under by default.
+	 */
+	public static final String DEFAULT_NAME = "classes:type=CartMetrics";
+
+	/**
+	 * The load totals.
+	 */
+	private final LongAdder cartsParsed = new LongAdder();
+	private final LongAdder linesParsed = new LongAdder();
+	private final LongAdder bytesRead = new LongAdder();
+	private final LongAdder parseNanos = new LongAdder();
+	private final LongAdder constructNanos = new LongAdder();
+
+	/**
+	 * The count of each kind of parse error, indexed by ordinal.
+	 */
+	private final AtomicLongArray parseErrors = new AtomicLongArray(ParseError.values().length);
+
+	/**
+	 * The pricing totals.
+	 */
+	private final LongAdder cartsPriced = new LongAdder();
+	private final LongAdder itemsPriced = new LongAdder();
+	private final LongAdder pricingPasses = new LongAdder();
+	private final LongAdder priceNanos = new LongAdder();
+
+	/**
+	 * The count of each outcome, indexed by ordinal.
+	 */
+	private final AtomicLongArray outcomes = new AtomicLongArray(LineDiscount.Outcome.values().length);
+
+	/**
+	 * Registers the metrics with the platform MBean server under DEFAULT_NAME.
+	 * @throws Exception Throws an exception if the metrics could not be registered, for example if the name is taken.
+	 */
+	public void register() throws Exception{
+		register(DEFAULT_NAME);
+	}
+
+	/**
+	 * Registers the metrics with the platform MBean server.
+	 * @param name The object name to register under.
+	 * @throws Exception Throws an exception if the metrics could not be registered, for example if the name is taken.
+	 */
+	public void register(String name) throws Exception{
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+	}
+
+	public boolean isEnabled(){
+		return true;
+	}
+
+	public void cartParsed(long lines, long bytes, long parse, long construct){
+		cartsParsed.increment();
+		linesParsed.add(lines);
+		bytesRead.add(bytes);
+		parseNanos.add(parse);
+		constructNanos.add(construct);
+	}
+
+	public void parseError(ParseError kind){
+		parseErrors.incrementAndGet(kind.ordinal());
+	}
+
+	public void cartPriced(long items, long passes, long price){
+		cartsPriced.increment();
+		itemsPriced.add(items);
+		pricingPasses.add(passes);
+		priceNanos.add(price);
+	}
+
+	public void promotionsApplied(LineDiscount.Outcome outcome, long count){
+		outcomes.addAndGet(outcome.ordinal(), count);
+	}
+
+	public long getCartsParsed(){
+		return cartsParsed.sum();
+	}
+
+	public long getLinesParsed(){
+		return linesParsed.sum();
+	}
+
+	public long getBytesRead(){
+		return bytesRead.sum();
+	}
+
+	public double getLinesParsedPerSecond(){
+		long nanos = parseNanos.sum();
+		return nanos == 0 ? 0 : linesParsed.sum() * 1e9 / nanos;
+	}
+
+	public long getParseMillis(){
+		return TimeUnit.NANOSECONDS.toMillis(parseNanos.sum());
+	}
+
+	public long getConstructMillis(){
+		return TimeUnit.NANOSECONDS.toMillis(constructNanos.sum());
+	}
+
+	public Map<String, Long> getParseErrors(){
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (ParseError kind : ParseError.values()){
+			counts.put(kind.name(), parseErrors.get(kind.ordinal()));
+		}
+		return counts;
+	}
+
+	public long getCartsPriced(){
+		return cartsPriced.sum();
+	}
+
+	public long getItemsPriced(){
+		return itemsPriced.sum();
+	}
+
+	public long getPricingPasses(){
+		return pricingPasses.sum();
+	}
+
+	public long getPriceMillis(){
+		return TimeUnit.NANOSECONDS.toMillis(priceNanos.sum());
+	}
+
+	public Map<String, Long> getPromotionsApplied(){
+		Map<String, Long> counts = new LinkedHashMap<String, Long>();
+		for (LineDiscount.Outcome outcome : LineDiscount.Outcome.values()){
+			counts.put(outcome.name(), outcomes.get(outcome.ordinal()));
+		}
+		return counts;
+	}
+
+	public void reset(){
+		cartsParsed.reset();
+		linesParsed.reset();
+		bytesRead.reset();
+		parseNanos.reset();
+		constructNanos.reset();
+		for (int i = 0; i < parseErrors.length(); i++){
+			parseErrors.set(i, 0);
+		}
+		cartsPriced.reset();
+		itemsPriced.reset();
+		pricingPasses.reset();
+		priceNanos.reset();
+		for (int i = 0; i < outcomes.length(); i++){
+			outcomes.set(i, 0);
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package classes;
+
+import java.util.Date;
+
+/**
+ * An immutable record of what happened to one item of the cart while it was priced.
+ * @author Alex
+ *
+ */
+public final class LineDiscount {
+
+	/**
+	 * What was applied to the item.
+	 */
+	public enum Outcome {
+		/**
+		 * The item had no promotion, and was totalled at full price.
+		 */
+		NO_SALE,
+		/**
+		 * A percent discount was applied.
+		 */
+		PERCENT,
+		/**
+		 * The item was totalled at full price, and a flat rebate was accrued.
+		 */
+		REBATE,
+		/**
+		 * The item was totalled at full price towards a buy X get Y deal, and more items must be bought before the deal starts.
+		 */
+		BOGO_DETECTED,
+		/**
+		 * The item was totalled at full price, and completed the X items needed to start a buy X get Y deal.
+		 */
+		BOGO_STARTED,
+		/**
+		 * The item was discounted by a buy X get Y deal, and the deal will last for more items.
+		 */
+		BOGO_APPLIED,
+		/**
+		 * The item was discounted by a buy X get Y deal, and the deal has been used up.
+		 */
+		BOGO_USED_UP,
+		/**
+		 * The promotion dates were not valid, so the item was totalled at full price.
+		 */
+		EXPIRED,
+		/**
+		 * A registered PromotionRule priced the item. The rule may also have changed the cart total or rebates once the
+		 * whole cart was seen, which is not part of any one line.
+		 */
+		RULE
+	}
+
+	/**
+	 * The index of the item in the cart.
+	 */
+	private final int index;
+
+	/**
+	 * What was applied to the item.
+	 */
+	private final Outcome outcome;
+
+	/**
+	 * The price of the item before discounts, in cents.
+	 */
+	private final long price;
+
+	/**
+	 * The price of the item after discounts, in cents, which is what was added to the cart total.
+	 */
+	private final long charged;
+
+	/**
+	 * The promotion of the item.
+	 */
+	private final Promotion promotion;
+
+	/**
+	 * For BOGO_DETECTED, the items still to buy before the deal starts. For BOGO_APPLIED, the items the deal will still discount.
+	 */
+	private final int remaining;
+
+	/**
+	 * The start and end of the promotion, as epoch days.
+	 */
+	private final int startDay;
+	private final int endDay;
+
+	/**
+	 * Constructor for a line record.
+	 * @param inIndex The index of the item in the cart.
+	 * @param inOutcome What was applied to the item.
+	 * @param inPrice The price of the item before discounts, in cents.
+	 * @param inCharged The price of the item after discounts, in cents.
+	 * @param inPromotion The promotion of the item.
+	 * @param inRemaining The items left to buy or discount, for BOGO outcomes.
+	 * @param inStartDay The start date of the promotion, as an epoch day.
+	 * @param inEndDay The end date of the promotion, as an epoch day.
+	 */
+	public LineDiscount(int inIndex, Outcome inOutcome, long inPrice, long inCharged, Promotion inPromotion, int inRemaining, int inStartDay, int inEndDay){
+		this.index = inIndex;
+		this.outcome = inOutcome;
+		this.price = inPrice;
+		this.charged = inCharged;
+		this.promotion = inPromotion;
+		this.remaining = inRemaining;
+		this.startDay = inStartDay;
+		this.endDay = inEndDay;
+	}
+
+	/**
+	 * Gets the index of the item in the cart.
+	 * @return The index of the item.
+	 */
+	public int getIndex(){
+		return index;
+	}
+
+	/**
+	 * Gets what was applied to the item.
+	 * @return The outcome for the item.
+	 */
+	public Outcome getOutcome(){
+		return outcome;
+	}
+
+	/**
+	 * Gets the price of the item before discounts.
+	 * @return The base price of the item.
+	 */
+	public double getPrice(){
+		return Money.toDouble(price);
+	}
+
+	/**
+	 * Gets the exact price of the item before discounts.
+	 * @return The base price of the item, in cents.
+	 */
+	public long getPriceCents(){
+		return price;
+	}
+
+	/**
+	 * Gets the price of the item after discounts.
+	 * @return The price that was added to the cart total.
+	 */
+	public double getCharged(){
+		return Money.toDouble(charged);
+	}
+
+	/**
+	 * Gets the exact price of the item after discounts.
+	 * @return The price that was added to the cart total, in cents.
+	 */
+	public long getChargedCents(){
+		return charged;
+	}
+
+	/**
+	 * Gets the exact discount taken off the item.
+	 * @return The price before discounts less the price after, in cents.
+	 */
+	public long getDiscountCents(){
+		return price - charged;
+	}
+
+	/**
+	 * Gets the promotion of the item.
+	 * @return The promotion of the item.
+	 */
+	public Promotion getPromotion(){
+		return promotion;
+	}
+
+	/**
+	 * Gets the items left to buy before a deal starts, or left to discount before it is used up.
+	 * @return The remaining count for BOGO outcomes.
+	 */
+	public int getRemaining(){
+		return remaining;
+	}
+
+	/**
+	 * Gets the start date of the promotion.
+	 * @return A new Date for midnight on the start day of the promotion.
+	 */
+	public Date getStart(){
+		return PromotionDates.toDate(startDay);
+	}
+
+	/**
+	 * Gets the end date of the promotion.
+	 * @return A new Date for midnight on the end day of the promotion.
+	 */
+	public Date getEnd(){
+		return PromotionDates.toDate(endDay);
+	}
+
+	/**
+	 * Gets the start date of the promotion.
+	 * @return The start of the promotion, as an epoch day.
+	 */
+	public int getStartDay(){
+		return startDay;
+	}
+
+	/**
+	 * Gets the end date of the promotion.
+	 * @return The end of the promotion, as an epoch day.
+	 */
+	public int getEndDay(){
+		return endDay;
+	}
+}
@@ -0,0 +1,220 @@
+package classes;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The lines of a csv that were left out of a load, and why. Filled in by MappedCartParser.loadCart(csvFile, report),
+ * which keeps going past bad lines instead of stopping at the first one.
+ *
+ * Every rejected line is counted, but only the first maxKept are kept with their text, so a file that is mostly bad
+ * cannot use up memory on its report.
+ * @author Alex
+ *
+ */
+public class LoadReport {
+
+	/**
+	 * The number of rejected lines kept with their text unless another limit is given.
+	 */
+	public static final int DEFAULT_MAX_KEPT = 1000;
+
+	/**
+	 * One line that was left out of the cart.
+	 */
+	public static class Rejection {
+
+		/**
+		 * The line number in the csv, counting from 1.
+		 */
+		private final long lineNumber;
+
+		/**
+		 * What was wrong with the line.
+		 */
+		private final ParseError reason;
+
+		/**
+		 * More detail on what was wrong, such as the message of the exception the line raised.
+		 */
+		private final String detail;
+
+		/**
+		 * The text of the line.
+		 */
+		private final String line;
+
+		/**
+		 * Constructor for a rejected line.
+		 * @param inLineNumber The line number in the csv, counting from 1.
+		 * @param inReason What was wrong with the line.
+		 * @param inDetail More detail on what was wrong.
+		 * @param inLine The text of the line.
+		 */
+		public Rejection(long inLineNumber, ParseError inReason, String inDetail, String inLine){
+			this.lineNumber = inLineNumber;
+			this.reason = inReason;
+			this.detail = inDetail;
+			this.line = inLine;
+		}
+
+		/**
+		 * Gets the line number in the csv.
+		 * @return The line number, counting from 1.
+		 */
+		public long getLineNumber(){
+			return lineNumber;
+		}
+
+		/**
+		 * Gets what was wrong with the line.
+		 * @return The reason the line was rejected.
+		 */
+		public ParseError getReason(){
+			return reason;
+		}
+
+		/**
+		 * Gets more detail on what was wrong with the line.
+		 * @return The detail, which may be null.
+		 */
+		public String getDetail(){
+			return detail;
+		}
+
+		/**
+		 * Gets the text of the line.
+		 * @return The line, without its line break.
+		 */
+		public String getLine(){
+			return line;
+		}
+
+		@Override
+		public String toString(){
+			return "Line " + lineNumber + ": " + reason + (detail != null ? " (" + detail + ")" : "") + ": " + line;
+		}
+	}
+
+	/**
+	 * The most rejected lines kept with their text.
+	 */
+	private final int maxKept;
+
+	/**
+	 * The first maxKept rejected lines, in csv order.
+	 */
+	private final List<Rejection> rejections = new ArrayList<Rejection>();
+
+	/**
+	 * The number of rejected lines for each reason, indexed by ordinal.
+	 */
+	private final long[] counts = new long[ParseError.values().length];
+
+	/**
+	 * The number of lines that became an SKU.
+	 */
+	private long accepted;
+
+	/**
+	 * Builds an empty report keeping up to DEFAULT_MAX_KEPT rejected lines.
+	 */
+	public LoadReport(){
+		this(DEFAULT_MAX_KEPT);
+	}
+
+	/**
+	 * Builds an empty report.
+	 * @param inMaxKept The most rejected lines to keep with their text. Lines past this are still counted.
+	 */
+	public LoadReport(int inMaxKept){
+		this.maxKept = Math.max(inMaxKept, 0);
+	}
+
+	/**
+	 * Records a line that became an SKU.
+	 */
+	void accept(){
+		accepted++;
+	}
+
+	/**
+	 * Records a line that was left out of the cart.
+	 * @param lineNumber The line number in the csv, counting from 1.
+	 * @param reason What was wrong with the line.
+	 * @param detail More detail on what was wrong, or null.
+	 * @param line The text of the line.
+	 */
+	public void reject(long lineNumber, ParseError reason, String detail, String line){
+		counts[reason.ordinal()]++;
+		if (rejections.size() < maxKept){
+			rejections.add(new Rejection(lineNumber, reason, detail, line));
+		}
+	}
+
+	/**
+	 * Gets the number of lines that became an SKU.
+	 * @return The accepted line count.
+	 */
+	public long getAcceptedCount(){
+		return accepted;
+	}
+
+	/**
+	 * Gets the number of lines left out of the cart.
+	 * @return The rejected line count, including lines past the kept limit.
+	 */
+	public long getRejectedCount(){
+		long total = 0;
+		for (long count : counts){
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the number of lines left out of the cart for one reason.
+	 * @param reason The reason.
+	 * @return The rejected line count for reason.
+	 */
+	public long getRejectedCount(ParseError reason){
+		return counts[reason.ordinal()];
+	}
+
+	/**
+	 * Checks if any line was left out of the cart.
+	 * @return true if at least one line was rejected.
+	 */
+	public boolean hasRejections(){
+		return getRejectedCount() > 0;
+	}
+
+	/**
+	 * Gets the rejected lines kept with their text.
+	 * @return The first rejected lines, in csv order, up to the kept limit.
+	 */
+	public List<Rejection> getRejections(){
+		return Collections.unmodifiableList(rejections);
+	}
+
+	/**
+	 * Prints a summary of the load followed by each kept rejected line.
+	 * @param out The stream to print to.
+	 */
+	public void print(PrintStream out){
+		out.println("Accepted " + accepted + " lines, rejected " + getRejectedCount());
+		for (ParseError reason : ParseError.values()){
+			if (counts[reason.ordinal()] > 0){
+				out.println("  " + reason + ": " + counts[reason.ordinal()]);
+			}
+		}
+		for (Rejection rejection : rejections){
+			out.println(rejection);
+		}
+		if (getRejectedCount() > rejections.size()){
+			out.println("  ... and " + (getRejectedCount() - rejections.size()) + " more");
+		}
+	}
+}
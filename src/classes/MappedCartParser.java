@@ -0,0 +1,549 @@
+package classes;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * A parser mode for csv files in the CartContents.csv format that memory maps the file and scans its bytes in place.
+ * The id, price, color, size and dates are parsed straight out of the mapped buffer, and the style and promotion type
+ * Strings are looked up in a small table of values already seen, so repeated values never build a new String.
+ * Each distinct promotion type is only parsed into a Promotion once, and the promotion terms of each id are shared
+ * through a PromotionCatalog.
+ * Follows the same line rules as Cart.parseLine, but does not echo each line to the console.
+ * A parser holds reusable scratch state, so one instance should only be used by one thread at a time.
+ * @author Alex
+ *
+ */
+public class MappedCartParser {
+
+	/**
+	 * The largest region of the file mapped at once. Files bigger than this are mapped one window at a time,
+	 * with each window ending on a line break.
+	 */
+	private static final long MAP_WINDOW = 1L << 30;
+
+	/**
+	 * The number of comma separated fields on each line of the csv.
+	 */
+	private static final int FIELD_COUNT = 8;
+
+	/**
+	 * The most distinct style and promotion Strings kept for reuse. Values past this are still parsed, just not cached.
+	 */
+	private static final int TABLE_SIZE = 4096;
+
+	/**
+	 * The start offset of each field on the current line.
+	 */
+	private final int[] fieldStart = new int[FIELD_COUNT];
+
+	/**
+	 * The end offset (exclusive) of each field on the current line.
+	 */
+	private final int[] fieldEnd = new int[FIELD_COUNT];
+
+	/**
+	 * The byte content of each cached String, indexed by hash slot.
+	 */
+	private final byte[][] tableKeys = new byte[TABLE_SIZE * 2][];
+
+	/**
+	 * The cached String for each slot in tableKeys.
+	 */
+	private final String[] tableValues = new String[TABLE_SIZE * 2];
+
+	/**
+	 * How many Strings are held in the table.
+	 */
+	private int tableCount = 0;
+
+	/**
+	 * The parsed promotion for each promotion type String seen so far, so each distinct type is only parsed once.
+	 */
+	private final HashMap<String, Promotion> promotions = new HashMap<String, Promotion>();
+
+	/**
+	 * This parser's front to the catalog the promotion terms of each id are shared through.
+	 */
+	private final PromotionCatalog.Local catalog;
+
+	/**
+	 * The current line number, used when reporting a bad line.
+	 */
+	private long lineNumber;
+
+	/**
+	 * Where bad lines are recorded during a parse that keeps going past them, or null to stop at the first bad line.
+	 */
+	private LoadReport report;
+
+	/**
+	 * Constructor for a parser sharing promotion terms through the shared catalog.
+	 */
+	public MappedCartParser(){
+		this(PromotionCatalog.getShared());
+	}
+
+	/**
+	 * Constructor for a parser sharing promotion terms through the given catalog.
+	 * @param inCatalog The catalog to look promotion terms up in.
+	 */
+	public MappedCartParser(PromotionCatalog inCatalog){
+		this.catalog = inCatalog.newLocal();
+	}
+
+	/**
+	 * Loads the whole cart from a memory mapped csv.
+	 * @param csvFile The location of the csv
+	 * @return A dense array holding one SKU per accepted line of the csv.
+	 * @throws Exception Throws an IOException if the file cannot be mapped, or any exception raised while parsing a line.
+	 */
+	public static SKU[] loadCart(String csvFile) throws Exception{
+		final ArrayList<SKU> items = new ArrayList<SKU>();
+		new MappedCartParser().parse(csvFile, new SKUHandler(){
+			public void handle(SKU sku){
+				items.add(sku);
+			}
+		});
+		return items.toArray(new SKU[items.size()]);
+	}
+
+	/**
+	 * Loads every valid line of a csv, recording each bad line in report instead of stopping at it.
+	 * Lines with only one promotion date set are recorded as HALF_WINDOW rather than silently skipped.
+	 * @param csvFile The location of the csv
+	 * @param report Receives the line number and reason of each line left out of the cart.
+	 * @return A dense array holding one SKU per valid line of the csv.
+	 * @throws Exception Throws an IOException if the file cannot be mapped.
+	 */
+	public static SKU[] loadCart(String csvFile, LoadReport report) throws Exception{
+		final ArrayList<SKU> items = new ArrayList<SKU>();
+		new MappedCartParser().parse(csvFile, new SKUHandler(){
+			public void handle(SKU sku){
+				items.add(sku);
+			}
+		}, report);
+		return items.toArray(new SKU[items.size()]);
+	}
+
+	/**
+	 * Loads the whole cart from a csv already mapped by map.
+	 * @param windows The mapped windows of the csv.
+	 * @return A dense array holding one SKU per accepted line of the csv.
+	 * @throws Exception Throws any exception raised while parsing a line.
+	 */
+	static SKU[] loadCart(MappedByteBuffer[] windows) throws Exception{
+		final ArrayList<SKU> items = new ArrayList<SKU>();
+		new MappedCartParser().parse(windows, new SKUHandler(){
+			public void handle(SKU sku){
+				items.add(sku);
+			}
+		});
+		return items.toArray(new SKU[items.size()]);
+	}
+
+	/**
+	 * Memory maps the whole of csvFile, one window at a time, so its bytes can be read more than once without reading
+	 * the file again, as BatchPricer does to hash a cart before parsing it. The file is closed once it is mapped.
+	 * @param csvFile The location of the csv
+	 * @return The windows, each limited to the bytes to parse, and each but the last ending just past a line break.
+	 * @throws IOException Throws if the file cannot be mapped, or has a line longer than a window.
+	 */
+	static MappedByteBuffer[] map(String csvFile) throws IOException{
+		ArrayList<MappedByteBuffer> windows = new ArrayList<MappedByteBuffer>();
+		RandomAccessFile file = new RandomAccessFile(csvFile, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			long end = channel.size();
+			long position = 0;
+			while (position < end){
+				MappedByteBuffer buffer = mapWindow(channel, position, end);
+				if (buffer == null){
+					throw new IOException("A line after byte " + position + " of " + csvFile + " is longer than " + MAP_WINDOW + " bytes");
+				}
+				windows.add(buffer);
+				position += buffer.limit();
+			}
+		} finally {
+			file.close();
+		}
+		return windows.toArray(new MappedByteBuffer[windows.size()]);
+	}
+
+	/**
+	 * Hands each SKU of a csv already mapped by map to handler, in csv order.
+	 * @param windows The mapped windows of the csv.
+	 * @param handler Receives each SKU as soon as its line has been parsed.
+	 * @throws Exception Throws any exception raised while parsing a line or by handler.
+	 */
+	void parse(MappedByteBuffer[] windows, SKUHandler handler) throws Exception{
+		lineNumber = 0;
+		for (MappedByteBuffer buffer : windows){
+			parseWindow(buffer, buffer.limit(), handler);
+		}
+	}
+
+	/**
+	 * Memory maps csvFile and hands each SKU to handler, in csv order.
+	 * @param csvFile The location of the csv
+	 * @param handler Receives each SKU as soon as its line has been parsed.
+	 * @throws Exception Throws an IOException if the file cannot be mapped, or any exception raised while parsing a line or by handler.
+	 */
+	public void parse(String csvFile, SKUHandler handler) throws Exception{
+		parse(csvFile, handler, null);
+	}
+
+	/**
+	 * Memory maps csvFile and hands each SKU to handler, in csv order.
+	 * @param csvFile The location of the csv
+	 * @param handler Receives each SKU as soon as its line has been parsed.
+	 * @param inReport Receives each bad line, which is then left out, or null to stop at the first bad line.
+	 * @throws Exception Throws an IOException if the file cannot be mapped, any exception raised by handler, and
+	 * if inReport is null any exception raised while parsing a line.
+	 */
+	public void parse(String csvFile, SKUHandler handler, LoadReport inReport) throws Exception{
+		RandomAccessFile file = new RandomAccessFile(csvFile, "r");
+		report = inReport;
+		try {
+			FileChannel channel = file.getChannel();
+			parse(channel, 0, channel.size(), handler);
+		} finally {
+			report = null;
+			file.close();
+		}
+	}
+
+	/**
+	 * Memory maps the lines between two offsets of a csv and hands each SKU to handler, in csv order.
+	 * Line numbers in error messages count from start, so ParallelCartParser gives each range its own parser.
+	 * @param channel The channel of the csv.
+	 * @param start The offset of the first byte of the first line.
+	 * @param end The offset just past the last line, either the end of the file or just past a line break.
+	 * @param handler Receives each SKU as soon as its line has been parsed.
+	 * @throws Exception Throws an IOException if the file cannot be mapped, or any exception raised while parsing a line or by handler.
+	 */
+	void parse(FileChannel channel, long start, long end, SKUHandler handler) throws Exception{
+		long position = start;
+		lineNumber = 0;
+		while (position < end){
+			MappedByteBuffer buffer = mapWindow(channel, position, end);
+			if (buffer == null){
+				throw new IOException("Line " + (lineNumber + 1) + " is longer than " + MAP_WINDOW + " bytes");
+			}
+			parseWindow(buffer, buffer.limit(), handler);
+			position += buffer.limit();
+		}
+	}
+
+	/**
+	 * Maps the next window of a csv. Unless it is the last window, it is limited to just past its final line break, so
+	 * no line is split between windows.
+	 * @param channel The channel of the csv.
+	 * @param position The offset the window starts at, the start of a line.
+	 * @param end The offset just past the last line to map.
+	 * @return The window, or null if it holds no line break and is not the last.
+	 * @throws IOException Throws if the window cannot be mapped.
+	 */
+	private static MappedByteBuffer mapWindow(FileChannel channel, long position, long end) throws IOException{
+		long length = Math.min(end - position, MAP_WINDOW);
+		MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		if (position + length < end){
+			int limit = lastLineBreak(buffer, (int) length) + 1;
+			if (limit == 0){
+				return null;
+			}
+			buffer.limit(limit);
+		}
+		return buffer;
+	}
+
+	/**
+	 * Parses every line in buffer up to limit.
+	 * @param buffer The mapped window of the file.
+	 * @param limit The number of bytes of the window to parse.
+	 * @param handler Receives each SKU as it is parsed.
+	 * @throws Exception Throws any exception raised while parsing a line or by handler.
+	 */
+	private void parseWindow(MappedByteBuffer buffer, int limit, SKUHandler handler) throws Exception{
+		int lineStart = 0;
+		while (lineStart < limit){
+			int lineEnd = lineStart;
+			while (lineEnd < limit && buffer.get(lineEnd) != '\n'){
+				lineEnd++;
+			}
+			int next = lineEnd + 1;
+			if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r'){
+				lineEnd--;
+			}
+			lineNumber++;
+			SKU sku;
+			if (report == null){
+				sku = parseLine(buffer, lineStart, lineEnd);
+			} else {
+				/**
+				 * Field counts, colors, sizes and half windows are rejected without an exception. Only numbers and dates
+				 * that fail to parse still throw, and those are caught here so the rest of the file is still read.
+				 */
+				try {
+					sku = parseLine(buffer, lineStart, lineEnd);
+				} catch(Exception e){
+					sku = reject(ParseError.of(e), e.getMessage(), buffer, lineStart, lineEnd);
+				}
+				if (sku != null){
+					report.accept();
+				}
+			}
+			if (sku != null){
+				handler.handle(sku);
+			}
+			lineStart = next;
+		}
+	}
+
+	/**
+	 * Turns the bytes of one line into an SKU, using the same rules as Cart.parseLine.
+	 * @param buffer The mapped window of the file.
+	 * @param start The offset of the first byte of the line.
+	 * @param end The offset just past the last byte of the line, not counting the line break.
+	 * @return The SKU for the line, or null if the line should be skipped or was recorded in the report.
+	 * @throws Exception Throws an exception if the line is malformed, or any exception raised by the SKU constructors.
+	 */
+	private SKU parseLine(MappedByteBuffer buffer, int start, int end) throws Exception{
+		int field = 0;
+		fieldStart[0] = start;
+		for (int i = start; i < end && field < FIELD_COUNT; i++){
+			if (buffer.get(i) == ','){
+				fieldEnd[field] = i;
+				field++;
+				if (field < FIELD_COUNT){
+					fieldStart[field] = i + 1;
+				}
+			}
+		}
+		if (field < FIELD_COUNT){
+			fieldEnd[field] = end;
+			field++;
+		}
+		if (field < FIELD_COUNT){
+			String message = "Line " + lineNumber + " has " + field + " fields, expected " + FIELD_COUNT;
+			if (report != null){
+				return reject(ParseError.MISSING_FIELD, message, buffer, start, end);
+			}
+			throw new Exception(message);
+		}
+
+		int id = parseInt(buffer, fieldStart[0], fieldEnd[0]);
+		long price = Money.parse(buffer, fieldStart[4], fieldEnd[4]);
+		/**
+		 * Checked in the same order as Cart.parseFields, so a bad line fails or is skipped the same way: a line with only
+		 * one date set is skipped before its promotion, dates, color or size are looked at.
+		 */
+		boolean noStart = isNone(buffer, fieldStart[6], fieldEnd[6]);
+		boolean noEnd = isNone(buffer, fieldStart[7], fieldEnd[7]);
+		if (noStart != noEnd){
+			if (report != null){
+				return reject(ParseError.HALF_WINDOW, null, buffer, start, end);
+			}
+			return null;
+		}
+		Promotion promotion = promotion(lookup(buffer, fieldStart[5], fieldEnd[5]));
+		PromotionTerms terms;
+		if (noStart){
+			terms = catalog.lookup(id, promotion, PromotionDates.NO_PROMOTION_DAY, PromotionDates.NO_PROMOTION_DAY);
+		} else {
+			int startDay = parseDate(buffer, fieldStart[6], fieldEnd[6]);
+			int endDay = parseDate(buffer, fieldStart[7], fieldEnd[7]);
+			terms = catalog.lookup(id, promotion, startDay, endDay);
+		}
+		ColorCode color = ColorCode.fromName(buffer, fieldStart[1], fieldEnd[1]);
+		if (color == null){
+			if (report != null){
+				return reject(ParseError.UNSUPPORTED_COLOR, null, buffer, start, end);
+			}
+			throw new Exception("Unsupported Color");
+		}
+		SizeCode size = SizeCode.fromName(buffer, fieldStart[2], fieldEnd[2]);
+		if (size == null){
+			if (report != null){
+				return reject(ParseError.UNSUPPORTED_SIZE, null, buffer, start, end);
+			}
+			throw new Exception("Unsupported Size");
+		}
+		return new SKU(id, color, size, lookup(buffer, fieldStart[3], fieldEnd[3]), price, terms);
+	}
+
+	/**
+	 * Records the current line in the report, and reports the error to Cart's metrics.
+	 * @param reason What was wrong with the line.
+	 * @param detail More detail on what was wrong, or null.
+	 * @param buffer The mapped window of the file.
+	 * @param start The offset of the first byte of the line.
+	 * @param end The offset just past the last byte of the line, not counting the line break.
+	 * @return null, so callers can return the result as the line's SKU.
+	 * @throws UnsupportedEncodingException Never, as UTF-8 is always supported.
+	 */
+	private SKU reject(ParseError reason, String detail, MappedByteBuffer buffer, int start, int end) throws UnsupportedEncodingException{
+		report.reject(lineNumber, reason, detail, decode(buffer, start, end));
+		CartMetrics metrics = Cart.getMetrics();
+		if (metrics.isEnabled()){
+			metrics.parseError(reason);
+		}
+		return null;
+	}
+
+	/**
+	 * Parses an optionally signed decimal integer from the buffer.
+	 * @param buffer The mapped window of the file.
+	 * @param start The offset of the first byte of the number.
+	 * @param end The offset just past the last byte of the number.
+	 * @return The parsed integer.
+	 * @throws NumberFormatException Throws if the bytes are not a valid int.
+	 */
+	private int parseInt(MappedByteBuffer buffer, int start, int end){
+		boolean negative = false;
+		int i = start;
+		if (i < end && (buffer.get(i) == '-' || buffer.get(i) == '+')){
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		if (i == end){
+			throw new NumberFormatException("Bad number on line " + lineNumber);
+		}
+		long value = 0;
+		for (; i < end; i++){
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9 || value > Integer.MAX_VALUE){
+				throw new NumberFormatException("Bad number on line " + lineNumber);
+			}
+			value = value * 10 + digit;
+		}
+		value = negative ? -value : value;
+		if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE){
+			throw new NumberFormatException("Bad number on line " + lineNumber);
+		}
+		return (int) value;
+	}
+
+	/**
+	 * Parses a d/M/yyyy date from the buffer the same way SimpleDateFormat("dd/MM/yyyy") would.
+	 * @param buffer The mapped window of the file.
+	 * @param start The offset of the first byte of the date.
+	 * @param end The offset just past the last byte of the date.
+	 * @return The parsed day, as an epoch day.
+	 * @throws Exception Throws an exception if the bytes are not a valid date.
+	 */
+	private int parseDate(MappedByteBuffer buffer, int start, int end) throws Exception{
+		try {
+			return PromotionDates.parse(buffer, start, end);
+		} catch(ParseException e){
+			throw new Exception("Unparseable date on line " + lineNumber, e);
+		}
+	}
+
+	/**
+	 * Gets the parsed promotion for a type String, parsing it the first time the type is seen.
+	 * @param type The promotion type String.
+	 * @return The parsed promotion.
+	 */
+	private Promotion promotion(String type){
+		Promotion promotion = promotions.get(type);
+		if (promotion == null){
+			promotion = Promotion.compile(type);
+			if (promotions.size() < TABLE_SIZE){
+				promotions.put(type, promotion);
+			}
+		}
+		return promotion;
+	}
+
+	/**
+	 * Checks if the bytes spell "None", ignoring case.
+	 * @param buffer The mapped window of the file.
+	 * @param start The offset of the first byte of the field.
+	 * @param end The offset just past the last byte of the field.
+	 * @return true if the field is "None".
+	 */
+	private static boolean isNone(MappedByteBuffer buffer, int start, int end){
+		return end - start == 4
+				&& (buffer.get(start) | 0x20) == 'n' && (buffer.get(start + 1) | 0x20) == 'o'
+				&& (buffer.get(start + 2) | 0x20) == 'n' && (buffer.get(start + 3) | 0x20) == 'e';
+	}
+
+	/**
+	 * Returns the String for the bytes between start and end, reusing an earlier String with the same bytes if there is one.
+	 * @param buffer The mapped window of the file.
+	 * @param start The offset of the first byte of the field.
+	 * @param end The offset just past the last byte of the field.
+	 * @return The String for the field.
+	 * @throws UnsupportedEncodingException Never thrown in practice, UTF-8 is always supported.
+	 */
+	private String lookup(MappedByteBuffer buffer, int start, int end) throws UnsupportedEncodingException{
+		int hash = 0;
+		for (int i = start; i < end; i++){
+			hash = 31 * hash + buffer.get(i);
+		}
+		int mask = tableKeys.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		while (tableKeys[slot] != null){
+			if (matches(tableKeys[slot], buffer, start, end)){
+				return tableValues[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		String value = decode(buffer, start, end);
+		if (tableCount < TABLE_SIZE){
+			byte[] key = new byte[end - start];
+			for (int i = start; i < end; i++){
+				key[i - start] = buffer.get(i);
+			}
+			tableKeys[slot] = key;
+			tableValues[slot] = value;
+			tableCount++;
+		}
+		return value;
+	}
+
+	/**
+	 * Checks if key holds the same bytes as the buffer between start and end.
+	 */
+	private static boolean matches(byte[] key, MappedByteBuffer buffer, int start, int end){
+		if (key.length != end - start){
+			return false;
+		}
+		for (int i = 0; i < key.length; i++){
+			if (key[i] != buffer.get(start + i)){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Builds a String from the bytes between start and end. Only used for values not already in the table.
+	 */
+	private static String decode(MappedByteBuffer buffer, int start, int end) throws UnsupportedEncodingException{
+		byte[] bytes = new byte[end - start];
+		for (int i = start; i < end; i++){
+			bytes[i - start] = buffer.get(i);
+		}
+		return new String(bytes, "UTF-8");
+	}
+
+	/**
+	 * Finds the last line break before limit, or -1 if there is none.
+	 */
+	private static int lastLineBreak(MappedByteBuffer buffer, int limit){
+		for (int i = limit - 1; i >= 0; i--){
+			if (buffer.get(i) == '\n'){
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,248 @@
+package classes;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.math.RoundingMode;
+
+/**
+ * Static helpers for exact money arithmetic. Prices, discounts, rebates and totals are held as a long count of cents,
+ * so totals are exact and never drift the way repeated double additions do. Percentages are held as a long count of
+ * hundredths of a percent (basis points), so "%x12.5" is 1250.
+ *
+ * Rounding rules:
+ * Text with more than two decimal places is rounded half up (away from zero) to the nearest hundredth when parsed.
+ * A percent discount is applied to each item on its own, and the discounted price is rounded half up to the nearest cent.
+ * Totals are plain sums of the rounded item prices, so no further rounding happens.
+ * @author Alex
+ *
+ */
+public final class Money {
+
+	/**
+	 * The number of cents in a dollar, and the number of basis points in one percent.
+	 */
+	public static final long HUNDRED = 100;
+
+	/**
+	 * The number of basis points in 100%.
+	 */
+	private static final long WHOLE = 10000;
+
+	/**
+	 * Static helpers only.
+	 */
+	private Money(){
+	}
+
+	/**
+	 * Parses decimal text such as "15.5" or "84" into hundredths, so dollars become cents and percents become basis points.
+	 * Accepts what Double.parseDouble did before prices were held in cents: whitespace around the number, and a trailing
+	 * f, F, d or D, are ignored. Plain decimals are parsed without allocating. Text with an exponent falls back to
+	 * BigDecimal, and hexadecimal text to the double it names.
+	 * @param text The decimal text.
+	 * @return The value in hundredths, rounded half up.
+	 * @throws NumberFormatException Throws if text is not a valid decimal number.
+	 */
+	public static long parse(String text){
+		int i = 0;
+		int length = text.length();
+		while (i < length && text.charAt(i) <= ' '){
+			i++;
+		}
+		while (length > i && text.charAt(length - 1) <= ' '){
+			length--;
+		}
+		if (length - i > 1 && isSuffix(text.charAt(length - 1))){
+			length--;
+		}
+		int start = i;
+		boolean negative = false;
+		if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')){
+			negative = text.charAt(i) == '-';
+			i++;
+		}
+		long whole = 0;
+		int fraction = -1;
+		long fractionValue = 0;
+		boolean roundUp = false;
+		int digits = 0;
+		for (; i < length; i++){
+			char c = text.charAt(i);
+			if (c == '.' && fraction < 0){
+				fraction = 0;
+			} else if (c >= '0' && c <= '9'){
+				digits++;
+				if (fraction < 0){
+					if (whole > (Long.MAX_VALUE / HUNDRED - 9) / 10){
+						return parseSlow(text, text.substring(start, length));
+					}
+					whole = whole * 10 + (c - '0');
+				} else if (fraction < 2){
+					fractionValue = fractionValue * 10 + (c - '0');
+					fraction++;
+				} else {
+					if (fraction == 2){
+						roundUp = c >= '5';
+					}
+					fraction++;
+				}
+			} else {
+				return parseSlow(text, text.substring(start, length));
+			}
+		}
+		if (digits == 0){
+			throw new NumberFormatException("Not a number: \"" + text + "\"");
+		}
+		if (fraction == 1){
+			fractionValue *= 10;
+		}
+		long value = whole * HUNDRED + fractionValue + (roundUp ? 1 : 0);
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses decimal text held as ASCII bytes in a buffer into hundredths, the same way parse(String) does,
+	 * without building a String unless the text needs the BigDecimal fallback.
+	 * @param buffer The buffer holding the text.
+	 * @param start The offset of the first byte of the text.
+	 * @param end The offset just past the last byte of the text.
+	 * @return The value in hundredths, rounded half up.
+	 * @throws NumberFormatException Throws if the bytes are not a valid decimal number.
+	 */
+	public static long parse(ByteBuffer buffer, int start, int end){
+		int i = start;
+		int last = end;
+		while (i < last && (buffer.get(i) & 0xff) <= ' '){
+			i++;
+		}
+		while (last > i && (buffer.get(last - 1) & 0xff) <= ' '){
+			last--;
+		}
+		if (last - i > 1 && isSuffix((char) buffer.get(last - 1))){
+			last--;
+		}
+		int first = i;
+		boolean negative = false;
+		if (i < last && (buffer.get(i) == '-' || buffer.get(i) == '+')){
+			negative = buffer.get(i) == '-';
+			i++;
+		}
+		long whole = 0;
+		int fraction = -1;
+		long fractionValue = 0;
+		boolean roundUp = false;
+		int digits = 0;
+		for (; i < last; i++){
+			byte c = buffer.get(i);
+			if (c == '.' && fraction < 0){
+				fraction = 0;
+			} else if (c >= '0' && c <= '9'){
+				digits++;
+				if (fraction < 0){
+					if (whole > (Long.MAX_VALUE / HUNDRED - 9) / 10){
+						return parseSlow(decode(buffer, start, end), decode(buffer, first, last));
+					}
+					whole = whole * 10 + (c - '0');
+				} else if (fraction < 2){
+					fractionValue = fractionValue * 10 + (c - '0');
+					fraction++;
+				} else {
+					if (fraction == 2){
+						roundUp = c >= '5';
+					}
+					fraction++;
+				}
+			} else {
+				return parseSlow(decode(buffer, start, end), decode(buffer, first, last));
+			}
+		}
+		if (digits == 0){
+			throw new NumberFormatException("Not a number: \"" + decode(buffer, start, end) + "\"");
+		}
+		if (fraction == 1){
+			fractionValue *= 10;
+		}
+		long value = whole * HUNDRED + fractionValue + (roundUp ? 1 : 0);
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Builds a String from ASCII bytes in a buffer, for error messages and the BigDecimal fallback.
+	 */
+	private static String decode(ByteBuffer buffer, int start, int end){
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++){
+			chars[i - start] = (char) (buffer.get(i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	/**
+	 * Checks if a character is one of the type suffixes Double.parseDouble allows after a number.
+	 */
+	private static boolean isSuffix(char c){
+		return c == 'f' || c == 'F' || c == 'd' || c == 'D';
+	}
+
+	/**
+	 * Parses text the hand written parser does not handle, such as exponents. Anything else Double.parseDouble accepted,
+	 * such as hexadecimal, goes through the shortest decimal text of the double it names.
+	 * @param field The text as it was given, for error messages.
+	 * @param text The text without surrounding whitespace or a type suffix.
+	 */
+	private static long parseSlow(String field, String text){
+		BigDecimal value;
+		try {
+			value = new BigDecimal(text);
+		} catch(NumberFormatException e){
+			double amount;
+			try {
+				amount = Double.parseDouble(field);
+			} catch(NumberFormatException f){
+				throw new NumberFormatException("Not a number: \"" + field + "\"");
+			}
+			if (Double.isNaN(amount) || Double.isInfinite(amount)){
+				throw new NumberFormatException("Not a number: \"" + field + "\"");
+			}
+			value = new BigDecimal(Double.toString(amount));
+		}
+		try {
+			return value.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+		} catch(ArithmeticException e){
+			throw new NumberFormatException("Out of range: \"" + field + "\"");
+		}
+	}
+
+	/**
+	 * Converts a double amount of dollars to cents, for callers still passing prices as doubles.
+	 * Goes through the shortest decimal text for the double, so 15.5 becomes exactly 1550 and 1.005 becomes 101.
+	 * @param amount The amount in dollars.
+	 * @return The amount in cents, rounded half up.
+	 */
+	public static long fromDouble(double amount){
+		return parse(Double.toString(amount));
+	}
+
+	/**
+	 * Converts cents to a double amount of dollars, for display and for callers still reading prices as doubles.
+	 * @param cents The amount in cents.
+	 * @return The nearest double to the amount in dollars.
+	 */
+	public static double toDouble(long cents){
+		return cents / (double) HUNDRED;
+	}
+
+	/**
+	 * Applies a percent discount to a price.
+	 * @param cents The price in cents.
+	 * @param basisPoints The discount in hundredths of a percent.
+	 * @return The price after the discount in cents, rounded half up.
+	 */
+	public static long percentOff(long cents, long basisPoints){
+		long product = cents * (WHOLE - basisPoints);
+		if (product >= 0){
+			return (product + WHOLE / 2) / WHOLE;
+		}
+		return -((-product + WHOLE / 2) / WHOLE);
+	}
+}
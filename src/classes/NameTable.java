@@ -0,0 +1,147 @@
+package classes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed, case-insensitive lookup table from names to values, built once up front.
+ * Lookups hash the name with ASCII case folding and compare it in place, so finding a value never allocates,
+ * whether the name is a String or a run of bytes in a buffer.
+ * @author Alex
+ *
+ * @param <E> The type of value the names map to.
+ */
+final class NameTable<E> {
+
+	/**
+	 * The name held in each slot, or null if the slot is empty.
+	 */
+	private final String[] names;
+
+	/**
+	 * The value for the name in each slot.
+	 */
+	private final Object[] values;
+
+	/**
+	 * One less than the number of slots, which is a power of two.
+	 */
+	private final int mask;
+
+	/**
+	 * Builds a table holding each of values under the matching entry of inNames.
+	 * @param inNames The names, matched ignoring case.
+	 * @param inValues The value for each name.
+	 */
+	NameTable(String[] inNames, E[] inValues){
+		int slots = Integer.highestOneBit(Math.max(inNames.length, 1) * 4 - 1) << 1;
+		names = new String[slots];
+		values = new Object[slots];
+		mask = slots - 1;
+		for (int i = 0; i < inNames.length; i++){
+			int h = hash(inNames[i]) & mask;
+			while (names[h] != null){
+				h = (h + 1) & mask;
+			}
+			names[h] = inNames[i];
+			values[h] = inValues[i];
+		}
+	}
+
+	/**
+	 * Finds the value for a name, ignoring case.
+	 * @param name The name to look up.
+	 * @return The value for the name, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	E get(String name){
+		if (name == null){
+			return null;
+		}
+		int h = hash(name) & mask;
+		while (names[h] != null){
+			if (matches(names[h], name)){
+				return (E) values[h];
+			}
+			h = (h + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Finds the value for a name held as ASCII bytes in a buffer, ignoring case.
+	 * @param buffer The buffer holding the name.
+	 * @param start The offset of the first byte of the name.
+	 * @param end The offset just past the last byte of the name.
+	 * @return The value for the name, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	E get(ByteBuffer buffer, int start, int end){
+		int hash = 0;
+		for (int i = start; i < end; i++){
+			hash = 31 * hash + fold((char) (buffer.get(i) & 0xff));
+		}
+		int h = spread(hash) & mask;
+		while (names[h] != null){
+			if (matches(names[h], buffer, start, end)){
+				return (E) values[h];
+			}
+			h = (h + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Hashes a name with ASCII letters folded to lower case.
+	 */
+	private static int hash(String name){
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++){
+			hash = 31 * hash + fold(name.charAt(i));
+		}
+		return spread(hash);
+	}
+
+	/**
+	 * Mixes the high bits of a hash into the low bits used to pick a slot.
+	 */
+	private static int spread(int hash){
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Folds an ASCII upper case letter to lower case, leaving every other character alone.
+	 */
+	private static char fold(char c){
+		return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/**
+	 * Checks if two names are the same, ignoring ASCII case.
+	 */
+	private static boolean matches(String key, String name){
+		if (key.length() != name.length()){
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++){
+			if (fold(key.charAt(i)) != fold(name.charAt(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if a name is the same as the bytes in a buffer, ignoring ASCII case.
+	 */
+	private static boolean matches(String key, ByteBuffer buffer, int start, int end){
+		if (key.length() != end - start){
+			return false;
+		}
+		for (int i = 0; i < key.length(); i++){
+			if (fold(key.charAt(i)) != fold((char) (buffer.get(start + i) & 0xff))){
+				return false;
+			}
+		}
+		return true;
+	}
+}
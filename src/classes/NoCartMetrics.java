@@ -0,0 +1,25 @@
+package classes;
+
+/**
+ * Metrics that are switched off. Cart checks isEnabled first, so none of the other methods are ever called.
+ * @author Alex
+ *
+ */
+class NoCartMetrics implements CartMetrics {
+
+	public boolean isEnabled(){
+		return false;
+	}
+
+	public void cartParsed(long lines, long bytes, long parseNanos, long constructNanos){
+	}
+
+	public void parseError(ParseError kind){
+	}
+
+	public void cartPriced(long items, long passes, long priceNanos){
+	}
+
+	public void promotionsApplied(LineDiscount.Outcome outcome, long count){
+	}
+}
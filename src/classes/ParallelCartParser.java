@@ -0,0 +1,199 @@
+package classes;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Loads one large csv on several threads. The file is split into byte ranges that each start just after a line break,
+ * every range is parsed by its own MappedCartParser, and the SKUs of each range are joined back together in range
+ * order. Every line lands in the same place it would with MappedCartParser.loadCart, so the BOGO deals in
+ * applyDiscounts, which depend on array order, come out the same.
+ *
+ * A range parser only knows line numbers within its range, so when any range fails the whole file is parsed again
+ * on the calling thread. The exception thrown is then exactly the one MappedCartParser.loadCart throws.
+ * Files smaller than MIN_PARALLEL_BYTES are always parsed on the calling thread.
+ * @author Alex
+ *
+ */
+public class ParallelCartParser {
+
+	/**
+	 * Files smaller than this are not worth splitting.
+	 */
+	public static final long MIN_PARALLEL_BYTES = 1L << 20;
+
+	/**
+	 * The number of bytes read at a time while looking for the line break that ends a range.
+	 */
+	private static final int SCAN_BUFFER = 4096;
+
+	/**
+	 * Runs the parse of each range.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * The number of ranges each file is split into.
+	 */
+	private final int ranges;
+
+	/**
+	 * Builds a parser that splits each file into one range per thread of executor.
+	 * @param inExecutor Runs the parse of each range. It is not shut down by the parser.
+	 * @param inRanges The number of ranges to split each file into.
+	 */
+	public ParallelCartParser(ExecutorService inExecutor, int inRanges){
+		if (inRanges < 1){
+			throw new IllegalArgumentException("Ranges must be at least 1: " + inRanges);
+		}
+		this.executor = inExecutor;
+		this.ranges = inRanges;
+	}
+
+	/**
+	 * Loads a csv using one thread per available processor.
+	 * @param csvFile The location of the csv
+	 * @return A dense array holding one SKU per accepted line of the csv, in csv order.
+	 * @throws Exception Throws any exception MappedCartParser.loadCart throws for the same file.
+	 */
+	public static SKU[] loadCart(String csvFile) throws Exception{
+		return loadCart(csvFile, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Loads a csv on a pool of the given number of threads, which is shut down before returning.
+	 * @param csvFile The location of the csv
+	 * @param threads The number of threads to parse with.
+	 * @return A dense array holding one SKU per accepted line of the csv, in csv order.
+	 * @throws Exception Throws any exception MappedCartParser.loadCart throws for the same file.
+	 */
+	public static SKU[] loadCart(String csvFile, int threads) throws Exception{
+		if (threads <= 1){
+			return MappedCartParser.loadCart(csvFile);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			return new ParallelCartParser(pool, threads).load(csvFile);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads a csv, splitting it into ranges parsed on the executor.
+	 * @param csvFile The location of the csv
+	 * @return A dense array holding one SKU per accepted line of the csv, in csv order.
+	 * @throws Exception Throws any exception MappedCartParser.loadCart throws for the same file.
+	 */
+	public SKU[] load(final String csvFile) throws Exception{
+		RandomAccessFile file = new RandomAccessFile(csvFile, "r");
+		try {
+			final FileChannel channel = file.getChannel();
+			long size = channel.size();
+			if (ranges == 1 || size < MIN_PARALLEL_BYTES){
+				return MappedCartParser.loadCart(csvFile);
+			}
+			long[] bounds = split(channel, size, ranges);
+
+			List<Future<List<SKU>>> pending = new ArrayList<Future<List<SKU>>>(ranges);
+			for (int i = 0; i < bounds.length - 1; i++){
+				final long start = bounds[i];
+				final long end = bounds[i + 1];
+				pending.add(executor.submit(() -> {
+					final List<SKU> items = new ArrayList<SKU>();
+					new MappedCartParser().parse(channel, start, end, new SKUHandler(){
+						public void handle(SKU sku){
+							items.add(sku);
+						}
+					});
+					return items;
+				}));
+			}
+
+			List<List<SKU>> parts = new ArrayList<List<SKU>>(pending.size());
+			int count = 0;
+			try {
+				for (Future<List<SKU>> part : pending){
+					List<SKU> items = part.get();
+					parts.add(items);
+					count += items.size();
+				}
+			} catch(ExecutionException e){
+				for (Future<List<SKU>> part : pending){
+					part.cancel(true);
+				}
+				return MappedCartParser.loadCart(csvFile);
+			}
+
+			SKU[] SKUArray = new SKU[count];
+			int index = 0;
+			for (List<SKU> items : parts){
+				for (SKU sku : items){
+					SKUArray[index++] = sku;
+				}
+			}
+			return SKUArray;
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Splits a file into ranges of about equal size that each start just after a line break.
+	 * @param channel The channel of the csv.
+	 * @param size The size of the file.
+	 * @param count The number of ranges wanted.
+	 * @return The start offset of each range, followed by size. Ranges that would be empty are dropped.
+	 * @throws Exception Throws an IOException if the file cannot be read.
+	 */
+	static long[] split(FileChannel channel, long size, int count) throws Exception{
+		long[] bounds = new long[count + 1];
+		int found = 1;
+		ByteBuffer scan = ByteBuffer.allocate(SCAN_BUFFER);
+		for (int i = 1; i < count; i++){
+			long target = Math.max(size / count * i, bounds[found - 1] + 1);
+			long start = lineStartAfter(channel, target, size, scan);
+			if (start < size && start > bounds[found - 1]){
+				bounds[found++] = start;
+			}
+		}
+		bounds[found++] = size;
+		long[] trimmed = new long[found];
+		System.arraycopy(bounds, 0, trimmed, 0, found);
+		return trimmed;
+	}
+
+	/**
+	 * Finds the start of the first line that begins at or after position.
+	 * @param channel The channel of the csv.
+	 * @param position The offset to search from.
+	 * @param size The size of the file.
+	 * @param scan A buffer to read into.
+	 * @return The offset just past the first line break at or after position - 1, or size if there is none.
+	 * @throws Exception Throws an IOException if the file cannot be read.
+	 */
+	private static long lineStartAfter(FileChannel channel, long position, long size, ByteBuffer scan) throws Exception{
+		long offset = position - 1;
+		while (offset < size){
+			scan.clear();
+			int read = channel.read(scan, offset);
+			if (read <= 0){
+				break;
+			}
+			for (int i = 0; i < read; i++){
+				if (scan.get(i) == '\n'){
+					return offset + i + 1;
+				}
+			}
+			offset += read;
+		}
+		return size;
+	}
+}
@@ -0,0 +1,59 @@
+package classes;
+
+import java.text.ParseException;
+
+/**
+ * The ways a line of the csv can fail to become an SKU.
+ * @author Alex
+ *
+ */
+public enum ParseError {
+	/**
+	 * The line has fewer than eight fields.
+	 */
+	MISSING_FIELD,
+	/**
+	 * The id or price is not a number.
+	 */
+	BAD_NUMBER,
+	/**
+	 * A promotion date is not a d/M/yyyy date.
+	 */
+	BAD_DATE,
+	/**
+	 * The color is not one SKU accepts.
+	 */
+	UNSUPPORTED_COLOR,
+	/**
+	 * The size is not one SKU accepts.
+	 */
+	UNSUPPORTED_SIZE,
+	/**
+	 * Only one of the promotion dates is "None". The line is skipped rather than failing the load.
+	 */
+	HALF_WINDOW,
+	/**
+	 * Anything else.
+	 */
+	OTHER;
+
+	/**
+	 * Works out what was wrong with a line from the exception parsing it threw.
+	 * @param e The exception thrown while parsing the line.
+	 * @return The kind of error.
+	 */
+	public static ParseError of(Exception e){
+		if (e instanceof ArrayIndexOutOfBoundsException){
+			return MISSING_FIELD;
+		} else if (e instanceof NumberFormatException){
+			return BAD_NUMBER;
+		} else if (e instanceof ParseException || e.getCause() instanceof ParseException){
+			return BAD_DATE;
+		} else if ("Unsupported Color".equals(e.getMessage())){
+			return UNSUPPORTED_COLOR;
+		} else if ("Unsupported Size".equals(e.getMessage())){
+			return UNSUPPORTED_SIZE;
+		}
+		return OTHER;
+	}
+}
@@ -0,0 +1,930 @@
+package classes;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.CRC32;
+
+/**
+ * An append only log of pricing runs, so any total that was ever given can be worked out again and checked. Each
+ * record holds the cart that was priced, a SHA-256 digest of it, the day it was priced as of, what was applied to each
+ * line, and the total and rebate total. Cart.price writes a record for every run once Cart.setAudit is called, and
+ * AuditReplay reads them back, prices each cart again and reports any difference.
+ *
+ * Pricing threads only copy the fields pricing reads out of the SKUs and put the copy on a bounded queue. One writer
+ * thread takes everything waiting on the queue at once, encodes it, and writes the batch with a single write, then
+ * forces it to disk once if sync is on, so many runs share each write and each fsync. If the queue fills up, record
+ * waits for room rather than dropping a run.
+ *
+ * The log is a directory of segments, pricing-000001.audit, pricing-000002.audit and so on. A new segment is started
+ * whenever the current one would grow past the segment size, and every time a log is opened, so an existing segment is
+ * never written to again.
+ *
+ * Segment layout, numbers big endian: the magic number 'NAUD' (int), the format version (short) and reserved flags
+ * (short), then records. Each record is its body length (int), the CRC32 of its body (int) and the body. A record cut
+ * short by a crash fails its length or CRC check, and the reader skips the rest of that segment.
+ * Record body, with whole numbers written as variable length ints, signed ones zigzag encoded:
+ * the time it was recorded (millis), the day the cart was priced as of, the 32 byte digest of the cart section, the
+ * cart section, then the total and rebate total in cents and the lines.
+ * The cart section is the item count, the strings table (a count, then each string as its UTF-8 length plus one and
+ * its bytes, 0 for null), then for each item its id, color code, size code, style index, price in cents, promotion type
+ * index, start day and end day.
+ * Each line is the item index, the LineDiscount.Outcome ordinal, the amount charged in cents and the remaining count.
+ * @author Alex
+ *
+ */
+public class PricingAudit implements Closeable {
+
+	/**
+	 * The first four bytes of every segment, "NAUD".
+	 */
+	public static final int MAGIC = 0x4E415544;
+
+	/**
+	 * The format version this class writes and reads.
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * The size of a segment header in bytes.
+	 */
+	public static final int HEADER_SIZE = 8;
+
+	/**
+	 * The size a segment is kept under unless another is given, in bytes.
+	 */
+	public static final long DEFAULT_SEGMENT_BYTES = 64L << 20;
+
+	/**
+	 * The number of runs that can wait for the writer unless another is given.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+
+	/**
+	 * The most runs the writer takes off the queue for one write.
+	 */
+	private static final int MAX_BATCH = 1024;
+
+	/**
+	 * The largest record body the reader will accept, so a damaged length cannot make it allocate gigabytes.
+	 */
+	private static final int MAX_RECORD_BYTES = 1 << 30;
+
+	/**
+	 * The name of every segment file is SEGMENT_PREFIX, a six digit number, and SEGMENT_SUFFIX.
+	 */
+	private static final String SEGMENT_PREFIX = "pricing-";
+	private static final String SEGMENT_SUFFIX = ".audit";
+
+	/**
+	 * Handles each record read back from a log.
+	 */
+	public interface RecordHandler {
+		/**
+		 * Handles one record.
+		 * @param record The record.
+		 * @throws Exception Throws anything, which stops the read.
+		 */
+		void handle(Record record) throws Exception;
+	}
+
+	/**
+	 * One pricing run, as read back from the log.
+	 */
+	public static class Record {
+
+		/**
+		 * The segment the record was read from, and its offset there.
+		 */
+		private final File segment;
+		private final long offset;
+
+		/**
+		 * When the run was recorded, in millis since 1970.
+		 */
+		private final long recordedAt;
+
+		/**
+		 * The epoch day the cart was priced as of.
+		 */
+		private final int today;
+
+		/**
+		 * The digest stored with the record, and the digest of the cart section as it was read.
+		 */
+		private final byte[] digest;
+		private final byte[] readDigest;
+
+		/**
+		 * The cart, and how it was priced.
+		 */
+		private final SKU[] cart;
+		private final PricingResult result;
+
+		Record(File inSegment, long inOffset, long inRecordedAt, int inToday, byte[] inDigest, byte[] inReadDigest,
+				SKU[] inCart, PricingResult inResult){
+			this.segment = inSegment;
+			this.offset = inOffset;
+			this.recordedAt = inRecordedAt;
+			this.today = inToday;
+			this.digest = inDigest;
+			this.readDigest = inReadDigest;
+			this.cart = inCart;
+			this.result = inResult;
+		}
+
+		/**
+		 * Gets the segment the record was read from.
+		 * @return The segment file.
+		 */
+		public File getSegment(){
+			return segment;
+		}
+
+		/**
+		 * Gets the offset of the record in its segment.
+		 * @return The offset, in bytes.
+		 */
+		public long getOffset(){
+			return offset;
+		}
+
+		/**
+		 * Gets when the run was recorded.
+		 * @return The time, in millis since 1970.
+		 */
+		public long getRecordedAt(){
+			return recordedAt;
+		}
+
+		/**
+		 * Gets the day the cart was priced as of.
+		 * @return The epoch day promotions were checked against.
+		 */
+		public int getToday(){
+			return today;
+		}
+
+		/**
+		 * Gets the SHA-256 digest of the cart, as it was recorded.
+		 * @return The digest, 32 bytes.
+		 */
+		public byte[] getDigest(){
+			return digest.clone();
+		}
+
+		/**
+		 * Checks the cart read back hashes to the digest recorded with it.
+		 * @return true if the digests match.
+		 */
+		public boolean isDigestValid(){
+			return Arrays.equals(digest, readDigest);
+		}
+
+		/**
+		 * Gets the cart that was priced.
+		 * @return The items, in cart order.
+		 */
+		public SKU[] getCart(){
+			return cart;
+		}
+
+		/**
+		 * Gets how the cart was priced.
+		 * @return The totals and the line records, as they were recorded.
+		 */
+		public PricingResult getResult(){
+			return result;
+		}
+	}
+
+	/**
+	 * A copy of what pricing read from a cart and what it came to, taken on the pricing thread.
+	 */
+	private static class Run {
+		long recordedAt;
+		int today;
+		int[] ids;
+		byte[] colors;
+		byte[] sizes;
+		String[] styles;
+		long[] prices;
+		String[] types;
+		int[] startDays;
+		int[] endDays;
+		long total;
+		long rebateTotal;
+		List<LineDiscount> lines;
+	}
+
+	/**
+	 * Put on the queue by flush and close. The writer counts down done once everything before it is written.
+	 */
+	private static class Marker {
+		final CountDownLatch done = new CountDownLatch(1);
+		final boolean stop;
+
+		Marker(boolean inStop){
+			this.stop = inStop;
+		}
+	}
+
+	/**
+	 * The directory the segments are written to.
+	 */
+	private final File directory;
+
+	/**
+	 * The size a segment is kept under, in bytes. A single record bigger than this gets a segment of its own.
+	 */
+	private final long segmentBytes;
+
+	/**
+	 * True to force every batch to disk before flush returns.
+	 */
+	private final boolean sync;
+
+	/**
+	 * The runs and markers waiting for the writer.
+	 */
+	private final BlockingQueue<Object> queue;
+
+	/**
+	 * The writer thread.
+	 */
+	private final Thread writer;
+
+	/**
+	 * The first error the writer hit. Once set, nothing more is written.
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * True once close has been called.
+	 */
+	private volatile boolean closed;
+
+	/**
+	 * The segment being written, its number, and its size so far. Only used by the writer thread.
+	 */
+	private FileChannel channel;
+	private int segmentNumber;
+	private long segmentSize;
+
+	/**
+	 * The number of runs written, batches written, and segments started.
+	 */
+	private volatile long recordCount;
+	private volatile long batchCount;
+	private volatile long segmentCount;
+
+	/**
+	 * Opens a log with the default segment size and queue capacity, forcing every batch to disk.
+	 * @param inDirectory The directory to write segments to. Made if it does not exist.
+	 * @throws IOException Throws if the directory or the first segment cannot be made.
+	 */
+	public PricingAudit(File inDirectory) throws IOException{
+		this(inDirectory, DEFAULT_SEGMENT_BYTES, DEFAULT_QUEUE_CAPACITY, true);
+	}
+
+	/**
+	 * Opens a log, starting a new segment after any already in the directory.
+	 * @param inDirectory The directory to write segments to. Made if it does not exist.
+	 * @param inSegmentBytes The size a segment is kept under, in bytes.
+	 * @param queueCapacity The number of runs that can wait for the writer before record waits.
+	 * @param inSync True to force every batch to disk, false to leave it to the operating system.
+	 * @throws IOException Throws if the directory or the first segment cannot be made.
+	 */
+	public PricingAudit(File inDirectory, long inSegmentBytes, int queueCapacity, boolean inSync) throws IOException{
+		if (inSegmentBytes <= HEADER_SIZE){
+			throw new IllegalArgumentException("Segment size must be more than " + HEADER_SIZE + " bytes: " + inSegmentBytes);
+		}
+		if (!inDirectory.isDirectory() && !inDirectory.mkdirs()){
+			throw new IOException("Cannot make audit directory " + inDirectory);
+		}
+		this.directory = inDirectory;
+		this.segmentBytes = inSegmentBytes;
+		this.sync = inSync;
+		this.queue = new ArrayBlockingQueue<Object>(queueCapacity);
+		List<File> existing = segments(inDirectory);
+		this.segmentNumber = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1));
+		startSegment();
+		this.writer = new Thread(this::write, "pricing-audit");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Records one pricing run. Copies what pricing read from the cart and returns; the run is written later by the writer.
+	 * @param SKUArray The items that were priced.
+	 * @param today The epoch day the cart was priced as of.
+	 * @param result How the cart was priced.
+	 * @throws Exception Throws an IOException if the writer has failed or the log is closed, or any exception raised
+	 * while reading an SKU.
+	 */
+	public void record(SKU[] SKUArray, int today, PricingResult result) throws Exception{
+		checkOpen();
+		int n = SKUArray.length;
+		Run run = new Run();
+		run.recordedAt = System.currentTimeMillis();
+		run.today = today;
+		run.ids = new int[n];
+		run.colors = new byte[n];
+		run.sizes = new byte[n];
+		run.styles = new String[n];
+		run.prices = new long[n];
+		run.types = new String[n];
+		run.startDays = new int[n];
+		run.endDays = new int[n];
+		for (int i = 0; i < n; i++){
+			SKU sku = SKUArray[i];
+			run.ids[i] = sku.getSKUIDUnchecked();
+			run.colors[i] = sku.getSKUColorCode().getCode();
+			run.sizes[i] = sku.getSKUSizeCode().getCode();
+			run.styles[i] = sku.getSKUStyle();
+			run.prices[i] = sku.getSKUPriceCents();
+			run.types[i] = sku.getSKUPromotion().getType();
+			run.startDays[i] = sku.getSKUPromotionStartDay();
+			run.endDays[i] = sku.getSKUPromotionEndDay();
+		}
+		run.total = result.getTotalCents();
+		run.rebateTotal = result.getRebateTotalCents();
+		run.lines = result.getLines();
+		queue.put(run);
+	}
+
+	/**
+	 * Waits until every run recorded by this thread before the call is written, and forced to disk if sync is on.
+	 * @throws IOException Throws if the writer has failed or the log is closed.
+	 * @throws InterruptedException Throws if interrupted while waiting.
+	 */
+	public void flush() throws IOException, InterruptedException{
+		checkOpen();
+		Marker marker = new Marker(false);
+		queue.put(marker);
+		marker.done.await();
+		if (failure != null){
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writes every run recorded so far, then closes the segment and stops the writer.
+	 * @throws IOException Throws if the writer failed at any point.
+	 */
+	@Override
+	public void close() throws IOException{
+		if (closed){
+			return;
+		}
+		closed = true;
+		Marker marker = new Marker(true);
+		boolean interrupted = false;
+		while (true){
+			try {
+				queue.put(marker);
+				marker.done.await();
+				writer.join();
+				break;
+			} catch(InterruptedException e){
+				interrupted = true;
+			}
+		}
+		if (interrupted){
+			Thread.currentThread().interrupt();
+		}
+		/**
+		 * Anything put on the queue after the stop marker is never written. Release any flush waiting on it.
+		 */
+		Object left;
+		while ((left = queue.poll()) != null){
+			if (left instanceof Marker){
+				((Marker) left).done.countDown();
+			}
+		}
+		if (failure != null){
+			throw failure;
+		}
+	}
+
+	/**
+	 * Gets the directory the segments are written to.
+	 * @return The directory.
+	 */
+	public File getDirectory(){
+		return directory;
+	}
+
+	/**
+	 * Gets the number of runs written so far.
+	 * @return The record count.
+	 */
+	public long getRecordCount(){
+		return recordCount;
+	}
+
+	/**
+	 * Gets the number of writes the runs were grouped into.
+	 * @return The batch count.
+	 */
+	public long getBatchCount(){
+		return batchCount;
+	}
+
+	/**
+	 * Gets the number of segments this log has started.
+	 * @return The segment count.
+	 */
+	public long getSegmentCount(){
+		return segmentCount;
+	}
+
+	/**
+	 * Throws if runs can no longer be recorded.
+	 */
+	private void checkOpen() throws IOException{
+		if (failure != null){
+			throw failure;
+		}
+		if (closed){
+			throw new IOException("Pricing audit " + directory + " is closed");
+		}
+	}
+
+	/**
+	 * The writer thread. Takes everything waiting on the queue, writes it as one batch, then releases any markers.
+	 */
+	private void write(){
+		List<Object> batch = new ArrayList<Object>();
+		Encoder buffer = new Encoder(1 << 16);
+		Encoder cart = new Encoder(1 << 12);
+		Encoder body = new Encoder(1 << 12);
+		MessageDigest sha = sha256();
+		boolean stop = false;
+		while (!stop){
+			batch.clear();
+			try {
+				batch.add(queue.take());
+			} catch(InterruptedException e){
+				continue;
+			}
+			queue.drainTo(batch, MAX_BATCH - 1);
+			int runs = 0;
+			try {
+				buffer.reset();
+				for (Object item : batch){
+					if (item instanceof Run && failure == null){
+						encode((Run) item, cart, body, sha);
+						if (segmentSize + buffer.size() + body.size() + 8 > segmentBytes && segmentSize + buffer.size() > HEADER_SIZE){
+							flushBuffer(buffer);
+							endSegment();
+							startSegment();
+						}
+						buffer.writeInt(body.size());
+						buffer.writeInt(crc(body));
+						buffer.write(body);
+						runs++;
+					}
+				}
+				if (failure == null){
+					flushBuffer(buffer);
+					if (sync && runs > 0){
+						channel.force(false);
+					}
+					recordCount += runs;
+					batchCount++;
+				}
+			} catch(IOException e){
+				failure = e;
+			}
+			for (Object item : batch){
+				if (item instanceof Marker){
+					Marker marker = (Marker) item;
+					if (marker.stop){
+						stop = true;
+						try {
+							endSegment();
+						} catch(IOException e){
+							if (failure == null){
+								failure = e;
+							}
+						}
+					}
+					marker.done.countDown();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes whatever is in the buffer to the current segment.
+	 */
+	private void flushBuffer(Encoder buffer) throws IOException{
+		if (buffer.size() == 0){
+			return;
+		}
+		ByteBuffer bytes = ByteBuffer.wrap(buffer.bytes, 0, buffer.size());
+		while (bytes.hasRemaining()){
+			channel.write(bytes);
+		}
+		segmentSize += buffer.size();
+		buffer.reset();
+	}
+
+	/**
+	 * Starts the next segment and writes its header.
+	 */
+	@SuppressWarnings("resource")
+	private void startSegment() throws IOException{
+		segmentNumber++;
+		File file = new File(directory, String.format("%s%06d%s", SEGMENT_PREFIX, segmentNumber, SEGMENT_SUFFIX));
+		if (file.exists()){
+			throw new IOException("Audit segment " + file + " already exists");
+		}
+		channel = new RandomAccessFile(file, "rw").getChannel();
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).flip();
+		while (header.hasRemaining()){
+			channel.write(header);
+		}
+		segmentSize = HEADER_SIZE;
+		segmentCount++;
+	}
+
+	/**
+	 * Forces and closes the current segment.
+	 */
+	private void endSegment() throws IOException{
+		if (channel != null && channel.isOpen()){
+			try {
+				if (sync){
+					channel.force(true);
+				}
+			} finally {
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Encodes a run into body: the cart section is encoded into cart first and hashed, then copied into body.
+	 */
+	private static void encode(Run run, Encoder cart, Encoder body, MessageDigest sha){
+		int n = run.ids.length;
+		HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+		List<String> strings = new ArrayList<String>();
+		int[] styleIndexes = new int[n];
+		int[] typeIndexes = new int[n];
+		for (int i = 0; i < n; i++){
+			styleIndexes[i] = intern(run.styles[i], indexes, strings);
+			typeIndexes[i] = intern(run.types[i], indexes, strings);
+		}
+		cart.reset();
+		cart.writeUnsigned(n);
+		cart.writeUnsigned(strings.size());
+		for (String string : strings){
+			cart.writeString(string);
+		}
+		for (int i = 0; i < n; i++){
+			cart.writeSigned(run.ids[i]);
+			cart.writeByte(run.colors[i]);
+			cart.writeByte(run.sizes[i]);
+			cart.writeUnsigned(styleIndexes[i]);
+			cart.writeSigned(run.prices[i]);
+			cart.writeUnsigned(typeIndexes[i]);
+			cart.writeSigned(run.startDays[i]);
+			cart.writeSigned(run.endDays[i]);
+		}
+		sha.reset();
+		sha.update(cart.bytes, 0, cart.size());
+
+		body.reset();
+		body.writeUnsigned(run.recordedAt);
+		body.writeSigned(run.today);
+		body.write(sha.digest());
+		body.write(cart);
+		body.writeSigned(run.total);
+		body.writeSigned(run.rebateTotal);
+		body.writeUnsigned(run.lines.size());
+		for (LineDiscount line : run.lines){
+			body.writeUnsigned(line.getIndex());
+			body.writeByte((byte) line.getOutcome().ordinal());
+			body.writeSigned(line.getChargedCents());
+			body.writeSigned(line.getRemaining());
+		}
+	}
+
+	/**
+	 * Gets the index of a string in the strings table, adding it if it is not there yet. null is index 0 of every table.
+	 */
+	private static int intern(String string, HashMap<String, Integer> indexes, List<String> strings){
+		if (string == null){
+			return 0;
+		}
+		Integer index = indexes.get(string);
+		if (index == null){
+			index = Integer.valueOf(strings.size() + 1);
+			indexes.put(string, index);
+			strings.add(string);
+		}
+		return index.intValue();
+	}
+
+	/**
+	 * Works out the CRC32 of everything in an encoder.
+	 */
+	private static int crc(Encoder encoder){
+		CRC32 crc = new CRC32();
+		crc.update(encoder.bytes, 0, encoder.size());
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Gets a SHA-256 digest, which every JVM has.
+	 */
+	private static MessageDigest sha256(){
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(Exception e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Reads every record of a log, oldest first.
+	 * @param logDirectory The directory the segments were written to.
+	 * @param handler Handles each record.
+	 * @return The number of segments whose last records were cut short or damaged, and skipped.
+	 * @throws Exception Throws an IOException if a segment is not an audit segment, or anything the handler throws.
+	 */
+	public static int read(File logDirectory, RecordHandler handler) throws Exception{
+		int damaged = 0;
+		MessageDigest sha = sha256();
+		for (File segment : segments(logDirectory)){
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment), 1 << 16));
+			try {
+				if (in.readInt() != MAGIC){
+					throw new IOException(segment + " is not a pricing audit segment");
+				}
+				short version = in.readShort();
+				if (version != VERSION){
+					throw new IOException(segment + " is audit version " + version + ", expected " + VERSION);
+				}
+				in.readShort();
+				long offset = HEADER_SIZE;
+				long length = segment.length();
+				while (offset < length){
+					if (length - offset < 8){
+						damaged++;
+						break;
+					}
+					int size = in.readInt();
+					int expected = in.readInt();
+					if (size < 0 || size > MAX_RECORD_BYTES || size > length - offset - 8){
+						damaged++;
+						break;
+					}
+					byte[] bytes = new byte[size];
+					in.readFully(bytes);
+					CRC32 crc = new CRC32();
+					crc.update(bytes, 0, size);
+					if ((int) crc.getValue() != expected){
+						damaged++;
+						break;
+					}
+					handler.handle(decode(segment, offset, bytes, sha));
+					offset += 8 + size;
+				}
+			} catch(EOFException e){
+				damaged++;
+			} finally {
+				in.close();
+			}
+		}
+		return damaged;
+	}
+
+	/**
+	 * Decodes a record body.
+	 */
+	private static Record decode(File segment, long offset, byte[] bytes, MessageDigest sha) throws IOException{
+		Decoder in = new Decoder(bytes);
+		long recordedAt = in.readUnsigned();
+		int today = (int) in.readSigned();
+		byte[] digest = in.readBytes(32);
+		int cartStart = in.position;
+		int n = (int) in.readUnsigned();
+		String[] strings = new String[(int) in.readUnsigned() + 1];
+		for (int s = 1; s < strings.length; s++){
+			strings[s] = in.readString();
+		}
+		PromotionCatalog catalog = PromotionCatalog.getShared();
+		SKU[] cart = new SKU[n];
+		for (int i = 0; i < n; i++){
+			int id = (int) in.readSigned();
+			ColorCode color = ColorCode.fromCode(in.readByte());
+			SizeCode size = SizeCode.fromCode(in.readByte());
+			String style = strings[(int) in.readUnsigned()];
+			long price = in.readSigned();
+			Promotion promotion = catalog.promotion(strings[(int) in.readUnsigned()]);
+			int startDay = (int) in.readSigned();
+			int endDay = (int) in.readSigned();
+			cart[i] = new SKU(id, color, size, style, price, promotion, startDay, endDay);
+		}
+		sha.reset();
+		sha.update(bytes, cartStart, in.position - cartStart);
+		byte[] readDigest = sha.digest();
+
+		long total = in.readSigned();
+		long rebateTotal = in.readSigned();
+		int lineCount = (int) in.readUnsigned();
+		LineDiscount.Outcome[] outcomes = LineDiscount.Outcome.values();
+		List<LineDiscount> lines = new ArrayList<LineDiscount>(lineCount);
+		for (int l = 0; l < lineCount; l++){
+			int index = (int) in.readUnsigned();
+			LineDiscount.Outcome outcome = outcomes[in.readByte()];
+			long charged = in.readSigned();
+			int remaining = (int) in.readSigned();
+			SKU sku = cart[index];
+			lines.add(new LineDiscount(index, outcome, sku.getSKUPriceCents(), charged, sku.getSKUPromotion(), remaining,
+					sku.getSKUPromotionStartDay(), sku.getSKUPromotionEndDay()));
+		}
+		return new Record(segment, offset, recordedAt, today, digest, readDigest, cart, new PricingResult(total, rebateTotal, lines));
+	}
+
+	/**
+	 * Lists the segments of a log in the order they were written.
+	 */
+	private static List<File> segments(File logDirectory){
+		List<File> segments = new ArrayList<File>();
+		File[] files = logDirectory.listFiles();
+		if (files != null){
+			for (File file : files){
+				if (segmentNumber(file) > 0){
+					segments.add(file);
+				}
+			}
+		}
+		segments.sort((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)));
+		return segments;
+	}
+
+	/**
+	 * Gets the number of a segment from its file name.
+	 * @return The number, or 0 if the file is not a segment.
+	 */
+	private static int segmentNumber(File file){
+		String name = file.getName();
+		if (!name.startsWith(SEGMENT_PREFIX) || !name.endsWith(SEGMENT_SUFFIX)){
+			return 0;
+		}
+		try {
+			return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+		} catch(NumberFormatException e){
+			return 0;
+		}
+	}
+
+	/**
+	 * A growable byte array with the encodings the log uses.
+	 */
+	private static final class Encoder {
+		byte[] bytes;
+		int size;
+
+		Encoder(int capacity){
+			bytes = new byte[capacity];
+		}
+
+		int size(){
+			return size;
+		}
+
+		void reset(){
+			size = 0;
+		}
+
+		void ensure(int more){
+			if (size + more > bytes.length){
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + more));
+			}
+		}
+
+		void writeByte(byte b){
+			ensure(1);
+			bytes[size++] = b;
+		}
+
+		void writeInt(int v){
+			ensure(4);
+			bytes[size++] = (byte) (v >>> 24);
+			bytes[size++] = (byte) (v >>> 16);
+			bytes[size++] = (byte) (v >>> 8);
+			bytes[size++] = (byte) v;
+		}
+
+		void writeUnsigned(long v){
+			ensure(10);
+			while ((v & ~0x7FL) != 0){
+				bytes[size++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			bytes[size++] = (byte) v;
+		}
+
+		void writeSigned(long v){
+			writeUnsigned((v << 1) ^ (v >> 63));
+		}
+
+		void writeString(String s){
+			if (s == null){
+				writeUnsigned(0);
+				return;
+			}
+			byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+			writeUnsigned(utf8.length + 1L);
+			write(utf8);
+		}
+
+		void write(byte[] b){
+			ensure(b.length);
+			System.arraycopy(b, 0, bytes, size, b.length);
+			size += b.length;
+		}
+
+		void write(Encoder other){
+			ensure(other.size);
+			System.arraycopy(other.bytes, 0, bytes, size, other.size);
+			size += other.size;
+		}
+	}
+
+	/**
+	 * Reads what an Encoder wrote.
+	 */
+	private static final class Decoder {
+		final byte[] bytes;
+		int position;
+
+		Decoder(byte[] inBytes){
+			this.bytes = inBytes;
+		}
+
+		byte readByte() throws IOException{
+			if (position >= bytes.length){
+				throw new IOException("Audit record ends early");
+			}
+			return bytes[position++];
+		}
+
+		long readUnsigned() throws IOException{
+			long v = 0;
+			for (int shift = 0; shift < 64; shift += 7){
+				byte b = readByte();
+				v |= (long) (b & 0x7F) << shift;
+				if (b >= 0){
+					return v;
+				}
+			}
+			throw new IOException("Audit record has a bad number");
+		}
+
+		long readSigned() throws IOException{
+			long v = readUnsigned();
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		byte[] readBytes(int length) throws IOException{
+			if (position + length > bytes.length){
+				throw new IOException("Audit record ends early");
+			}
+			byte[] b = Arrays.copyOfRange(bytes, position, position + length);
+			position += length;
+			return b;
+		}
+
+		String readString() throws IOException{
+			long length = readUnsigned();
+			if (length == 0){
+				return null;
+			}
+			return new String(readBytes((int) (length - 1)), StandardCharsets.UTF_8);
+		}
+	}
+}
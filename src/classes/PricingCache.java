@@ -0,0 +1,518 @@
+package classes;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of cart totals keyed by the contents of the cart file, so a cart that is submitted again, or that
+ * was generated from the same template, is priced by hashing its bytes and one lookup instead of parsing and applying
+ * discounts again.
+ *
+ * A cart is keyed by a 128 bit Murmur3 hash of its bytes, normalized so that line endings the parsers treat alike hash
+ * alike: a carriage return before a line feed or at the end of the file, and one final line feed, are left out. A hit
+ * is trusted on the hash alone, without the cart being compared: Murmur3 is not a cryptographic hash, and while two
+ * carts colliding by chance is vanishingly unlikely, carts can be built to collide on purpose. Only cache carts from
+ * sources trusted not to do that, since two carts with the same key are answered with the same totals.
+ *
+ * Pricing only looks at the evaluation date through each item's promotion window, so the totals of a cart priced as of
+ * one day hold for every day up to the next day one of its promotions starts or ends. Each entry keeps that span of
+ * days, and a lookup only hits if its date falls in it. Carts with items priced by a registered PromotionRule are only
+ * kept for the day they were priced as of, since a rule can look at the date itself. An entry is dropped the first time
+ * it is looked up once the date has reached the end of its span, which is the day the first of its promotions ends or
+ * starts, or once it has been held longer than the time to live.
+ *
+ * Carts are kept in least recently used order. Once the cache holds capacity carts, adding a new one evicts the one
+ * used longest ago. The cache is thread-safe.
+ *
+ * The cache does not see promotion rules being registered. Clear it after registering a rule, as types that were
+ * unknown when a cart was priced may now mean something.
+ * @author Alex
+ *
+ */
+public class PricingCache {
+
+	/**
+	 * The bytes read from a cart file at a time while hashing it.
+	 */
+	private static final int READ_SIZE = 64 * 1024;
+
+	/**
+	 * The 128 bit hash of a cart's normalized contents.
+	 */
+	public static final class Digest {
+		/**
+		 * The two halves of the hash.
+		 */
+		private final long high;
+		private final long low;
+
+		/**
+		 * Constructor for a digest.
+		 * @param inHigh The first 64 bits of the hash.
+		 * @param inLow The last 64 bits of the hash.
+		 */
+		Digest(long inHigh, long inLow){
+			this.high = inHigh;
+			this.low = inLow;
+		}
+
+		@Override
+		public boolean equals(Object other){
+			if (!(other instanceof Digest)){
+				return false;
+			}
+			Digest digest = (Digest) other;
+			return high == digest.high && low == digest.low;
+		}
+
+		@Override
+		public int hashCode(){
+			return (int) (low ^ (low >>> 32));
+		}
+
+		@Override
+		public String toString(){
+			return String.format("%016x%016x", high, low);
+		}
+	}
+
+	/**
+	 * The totals cached for one cart, with the days and the time they hold for.
+	 */
+	private static class Cached {
+		final CartTotals totals;
+		/**
+		 * The first epoch day the totals hold for.
+		 */
+		final int fromDay;
+		/**
+		 * The first epoch day after fromDay the totals no longer hold for.
+		 */
+		final int untilDay;
+		/**
+		 * The System.nanoTime after which the entry is dropped.
+		 */
+		final long expiresAt;
+		Cached(CartTotals inTotals, int inFromDay, int inUntilDay, long inExpiresAt){
+			this.totals = inTotals;
+			this.fromDay = inFromDay;
+			this.untilDay = inUntilDay;
+			this.expiresAt = inExpiresAt;
+		}
+	}
+
+	/**
+	 * Streams bytes through Murmur3 x64 128, leaving out the ones normalization drops. Runs of bytes between line breaks
+	 * are copied to a staging buffer whole, and the buffer is hashed 16 bytes at a time.
+	 */
+	private static class Hasher {
+		private static final long C1 = 0x87c37b91114253d5L;
+		private static final long C2 = 0x4cf5ad432745937fL;
+
+		private long h1;
+		private long h2;
+		/**
+		 * The number of bytes hashed.
+		 */
+		private long length;
+		/**
+		 * Normalized bytes waiting to be hashed, read as little endian longs through view.
+		 */
+		private final byte[] staged = new byte[READ_SIZE];
+		private final ByteBuffer view = ByteBuffer.wrap(staged).order(ByteOrder.LITTLE_ENDIAN);
+		private int stagedLength;
+		/**
+		 * A carriage return or line feed held back until the next byte shows whether it is dropped, or 0 if none is.
+		 */
+		private byte held;
+
+		/**
+		 * Adds the next bytes of the file.
+		 */
+		void update(byte[] bytes, int offset, int count){
+			int end = offset + count;
+			int runStart = offset;
+			for (int i = offset; i < end; i++){
+				byte b = bytes[i];
+				if (b != '\r' && b != '\n'){
+					continue;
+				}
+				if (i > runStart){
+					release();
+					stage(bytes, runStart, i - runStart);
+				}
+				runStart = i + 1;
+				/**
+				 * A held byte is kept if anything but a line feed follows it, and a held line feed is kept whatever follows it.
+				 * Only a carriage return followed by a line feed is dropped.
+				 */
+				if (b == '\r' || held == '\n'){
+					release();
+				}
+				held = b;
+			}
+			if (end > runStart){
+				release();
+				stage(bytes, runStart, end - runStart);
+			}
+		}
+
+		/**
+		 * Hashes the held byte, once it turns out not to be dropped.
+		 */
+		private void release(){
+			if (held != 0){
+				if (stagedLength == staged.length){
+					hashBlocks();
+				}
+				staged[stagedLength++] = held;
+				length++;
+				held = 0;
+			}
+		}
+
+		/**
+		 * Adds bytes of normalized contents, hashing each block of 16 once the staging buffer is full.
+		 */
+		private void stage(byte[] bytes, int offset, int count){
+			length += count;
+			while (count > 0){
+				int copied = Math.min(count, staged.length - stagedLength);
+				System.arraycopy(bytes, offset, staged, stagedLength, copied);
+				stagedLength += copied;
+				offset += copied;
+				count -= copied;
+				if (stagedLength == staged.length){
+					hashBlocks();
+				}
+			}
+		}
+
+		/**
+		 * Hashes every whole block of 16 staged bytes, and moves what is left to the front of the buffer.
+		 */
+		private void hashBlocks(){
+			int blocksEnd = stagedLength & ~15;
+			for (int p = 0; p < blocksEnd; p += 16){
+				h1 ^= mixK1(view.getLong(p));
+				h1 = Long.rotateLeft(h1, 27);
+				h1 += h2;
+				h1 = h1 * 5 + 0x52dce729;
+				h2 ^= mixK2(view.getLong(p + 8));
+				h2 = Long.rotateLeft(h2, 31);
+				h2 += h1;
+				h2 = h2 * 5 + 0x38495ab5;
+			}
+			stagedLength -= blocksEnd;
+			System.arraycopy(staged, blocksEnd, staged, 0, stagedLength);
+		}
+
+		/**
+		 * Finishes the hash. A byte still held back is at the end of the file, so it is dropped.
+		 */
+		Digest digest(){
+			hashBlocks();
+			long k1 = 0;
+			long k2 = 0;
+			for (int i = stagedLength - 1; i >= 8; i--){
+				k2 = (k2 << 8) | (staged[i] & 0xffL);
+			}
+			for (int i = Math.min(stagedLength, 8) - 1; i >= 0; i--){
+				k1 = (k1 << 8) | (staged[i] & 0xffL);
+			}
+			if (stagedLength > 8){
+				h2 ^= mixK2(k2);
+			}
+			if (stagedLength > 0){
+				h1 ^= mixK1(k1);
+			}
+			h1 ^= length;
+			h2 ^= length;
+			h1 += h2;
+			h2 += h1;
+			h1 = fmix(h1);
+			h2 = fmix(h2);
+			h1 += h2;
+			h2 += h1;
+			return new Digest(h1, h2);
+		}
+
+		private static long mixK1(long k){
+			return Long.rotateLeft(k * C1, 31) * C2;
+		}
+
+		private static long mixK2(long k){
+			return Long.rotateLeft(k * C2, 33) * C1;
+		}
+
+		private static long fmix(long k){
+			k ^= k >>> 33;
+			k *= 0xff51afd7ed558ccdL;
+			k ^= k >>> 33;
+			k *= 0xc4ceb9fe1a85ec53L;
+			k ^= k >>> 33;
+			return k;
+		}
+	}
+
+	/**
+	 * The most carts the cache holds.
+	 */
+	private final int capacity;
+
+	/**
+	 * How long an entry is held, in nanoseconds.
+	 */
+	private final long timeToLive;
+
+	/**
+	 * The cached totals of each cart, least recently used first.
+	 */
+	private final LinkedHashMap<Digest, Cached> entries;
+
+	/**
+	 * Lookups answered from the cache, lookups that were not, carts evicted to make room, and entries dropped because
+	 * their time to live or their span of days had run out.
+	 */
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long expirations;
+
+	/**
+	 * Constructor for an empty cache.
+	 * @param inCapacity The most carts the cache holds.
+	 * @param timeToLiveMillis How long each cart is held, in milliseconds, however long its promotions last.
+	 */
+	public PricingCache(int inCapacity, long timeToLiveMillis){
+		if (inCapacity < 1){
+			throw new IllegalArgumentException("Capacity must be at least 1: " + inCapacity);
+		}
+		if (timeToLiveMillis < 1){
+			throw new IllegalArgumentException("Time to live must be at least 1ms: " + timeToLiveMillis);
+		}
+		this.capacity = inCapacity;
+		this.timeToLive = timeToLiveMillis >= Long.MAX_VALUE / 1000000 ? Long.MAX_VALUE : timeToLiveMillis * 1000000;
+		this.entries = new LinkedHashMap<Digest, Cached>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Digest, Cached> eldest){
+				if (size() > capacity){
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Hashes the normalized contents of a cart file.
+	 * @param csvFile The path of the cart file.
+	 * @return The digest the file's totals are cached under.
+	 * @throws IOException Throws if the file cannot be read.
+	 */
+	public static Digest digest(String csvFile) throws IOException{
+		Hasher hasher = new Hasher();
+		byte[] buffer = new byte[READ_SIZE];
+		try (InputStream in = new FileInputStream(csvFile)){
+			int read;
+			while ((read = in.read(buffer)) > 0){
+				hasher.update(buffer, 0, read);
+			}
+		}
+		return hasher.digest();
+	}
+
+	/**
+	 * Hashes the normalized contents of a cart file already mapped into memory, without reading the file again.
+	 * @param windows The mapped windows of the file, each read from its start to its limit.
+	 * @return The digest the file's totals are cached under.
+	 */
+	static Digest digest(ByteBuffer[] windows){
+		Hasher hasher = new Hasher();
+		byte[] buffer = new byte[READ_SIZE];
+		for (ByteBuffer window : windows){
+			ByteBuffer bytes = window.duplicate();
+			bytes.position(0);
+			while (bytes.hasRemaining()){
+				int read = Math.min(buffer.length, bytes.remaining());
+				bytes.get(buffer, 0, read);
+				hasher.update(buffer, 0, read);
+			}
+		}
+		return hasher.digest();
+	}
+
+	/**
+	 * Hashes the normalized contents of a cart held in memory.
+	 * @param bytes The bytes of the csv.
+	 * @param offset The index of the first byte.
+	 * @param length The number of bytes.
+	 * @return The digest the cart's totals are cached under.
+	 */
+	public static Digest digest(byte[] bytes, int offset, int length){
+		Hasher hasher = new Hasher();
+		hasher.update(bytes, offset, length);
+		return hasher.digest();
+	}
+
+	/**
+	 * Gets the cached totals of a cart.
+	 * @param digest The digest of the cart's contents.
+	 * @param today The epoch day the cart is priced as of.
+	 * @return The totals, or null if the cart is not cached for that day.
+	 */
+	public synchronized CartTotals get(Digest digest, int today){
+		Cached entry = entries.get(digest);
+		if (entry != null && (today >= entry.untilDay || System.nanoTime() - entry.expiresAt > 0)){
+			entries.remove(digest);
+			expirations++;
+			entry = null;
+		}
+		if (entry == null || today < entry.fromDay){
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.totals;
+	}
+
+	/**
+	 * Caches the totals of a cart, for every day its promotion windows are the same as they are today.
+	 * @param digest The digest of the cart's contents.
+	 * @param today The epoch day the cart was priced as of.
+	 * @param cart The SKUs the cart was priced from.
+	 * @param totals The totals.
+	 */
+	public void put(Digest digest, int today, SKU[] cart, CartTotals totals){
+		int fromDay = Integer.MIN_VALUE;
+		int untilDay = Integer.MAX_VALUE;
+		for (SKU sku : cart){
+			if (sku.getSKUPromotion().getKind() == Promotion.Kind.RULE){
+				fromDay = today;
+				untilDay = today + 1;
+				break;
+			}
+			/**
+			 * An item's window is valid from its start day up to its end day, so the test only changes on those days.
+			 */
+			int start = sku.getSKUPromotionStartDay();
+			int end = sku.getSKUPromotionEndDay();
+			if (start <= today){
+				fromDay = Math.max(fromDay, start);
+			} else {
+				untilDay = Math.min(untilDay, start);
+			}
+			if (end <= today){
+				fromDay = Math.max(fromDay, end);
+			} else {
+				untilDay = Math.min(untilDay, end);
+			}
+		}
+		Cached entry = new Cached(totals, fromDay, untilDay, System.nanoTime() + timeToLive);
+		synchronized (this){
+			entries.put(digest, entry);
+		}
+	}
+
+	/**
+	 * Drops every entry whose time to live has run out, or whose span of days ends on or before today.
+	 * @param today The current epoch day.
+	 * @return The number of entries dropped.
+	 */
+	public synchronized int removeExpired(int today){
+		long now = System.nanoTime();
+		int removed = 0;
+		Iterator<Cached> values = entries.values().iterator();
+		while (values.hasNext()){
+			Cached entry = values.next();
+			if (today >= entry.untilDay || now - entry.expiresAt > 0){
+				values.remove();
+				removed++;
+			}
+		}
+		expirations += removed;
+		return removed;
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache.
+	 * @return The hit count.
+	 */
+	public synchronized long getHits(){
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups that were not cached.
+	 * @return The miss count.
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * Gets the number of carts evicted to make room for others.
+	 * @return The eviction count.
+	 */
+	public synchronized long getEvictions(){
+		return evictions;
+	}
+
+	/**
+	 * Gets the number of entries dropped because their time to live ran out or one of their promotions started or ended.
+	 * @return The expiration count.
+	 */
+	public synchronized long getExpirations(){
+		return expirations;
+	}
+
+	/**
+	 * Gets the share of lookups answered from the cache.
+	 * @return The hit rate, from 0 to 1.
+	 */
+	public synchronized double getHitRate(){
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : hits / (double) lookups;
+	}
+
+	/**
+	 * Gets the number of carts held.
+	 * @return The number of carts.
+	 */
+	public synchronized int size(){
+		return entries.size();
+	}
+
+	/**
+	 * Gets the most carts the cache holds.
+	 * @return The capacity.
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * Empties the cache and sets the statistics back to zero.
+	 */
+	public synchronized void clear(){
+		entries.clear();
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		expirations = 0;
+	}
+
+	@Override
+	public synchronized String toString(){
+		return String.format("%d carts cached, %d hits, %d misses (%.1f%% hit rate), %d evicted, %d expired",
+				entries.size(), hits, misses, getHitRate() * 100, evictions, expirations);
+	}
+}
@@ -0,0 +1,127 @@
+package classes;
+
+/**
+ * The pricing of one cart as the PromotionRules of its items see it: the day it is priced as of, the amounts rules
+ * add on top of what they charge for each item, and each rule's state for the cart.
+ *
+ * A context is made for each cart and used by one thread. State is kept in an array indexed by rule code, so looking
+ * it up on every item is one array load.
+ * @author Alex
+ *
+ */
+public final class PricingContext {
+
+	/**
+	 * The epoch day promotions are checked against.
+	 */
+	private final int today;
+
+	/**
+	 * Amounts added to the cart total by rules, beyond what they charged for each item, in cents.
+	 */
+	private long total;
+
+	/**
+	 * Rebates accrued by rules, in cents.
+	 */
+	private long rebateTotal;
+
+	/**
+	 * The state of each rule, indexed by code. Made the first time a rule sets its state.
+	 */
+	private Object[] states;
+
+	/**
+	 * The rules that have set state, in the order they first did, so finish is called on each of them once.
+	 */
+	private PromotionRule[] active = new PromotionRule[4];
+	private int activeCount;
+
+	/**
+	 * Constructor for the pricing of one cart.
+	 * @param inToday The epoch day promotions are checked against.
+	 */
+	public PricingContext(int inToday){
+		this.today = inToday;
+	}
+
+	/**
+	 * Gets the day the cart is priced as of.
+	 * @return The epoch day promotions are checked against.
+	 */
+	public int getToday(){
+		return today;
+	}
+
+	/**
+	 * Adds to the cart total, for charges that are not part of one item's price, or takes off it if negative.
+	 * @param cents The amount, in cents.
+	 */
+	public void addTotal(long cents){
+		total += cents;
+	}
+
+	/**
+	 * Adds to the rebates accrued by the cart.
+	 * @param cents The amount, in cents.
+	 */
+	public void addRebate(long cents){
+		rebateTotal += cents;
+	}
+
+	/**
+	 * Gets what rules have added to the cart total beyond the charges of each item.
+	 * @return The amount, in cents.
+	 */
+	public long getTotal(){
+		return total;
+	}
+
+	/**
+	 * Gets the rebates rules have accrued.
+	 * @return The rebate total, in cents.
+	 */
+	public long getRebateTotal(){
+		return rebateTotal;
+	}
+
+	/**
+	 * Gets a rule's state for this cart.
+	 * @param rule The rule.
+	 * @return The state the rule last set, or null if it has not set any yet.
+	 */
+	public Object getState(PromotionRule rule){
+		return states == null ? null : states[rule.getCode()];
+	}
+
+	/**
+	 * Sets a rule's state for this cart. Once a rule has set state, its finish is called when the cart is finished.
+	 * @param rule The rule.
+	 * @param state The state.
+	 */
+	public void setState(PromotionRule rule, Object state){
+		if (states == null){
+			states = new Object[PromotionRules.CODES];
+		}
+		char code = rule.getCode();
+		if (states[code] == null){
+			if (activeCount == active.length){
+				PromotionRule[] grown = new PromotionRule[activeCount * 2];
+				System.arraycopy(active, 0, grown, 0, activeCount);
+				active = grown;
+			}
+			active[activeCount++] = rule;
+		}
+		states[code] = state;
+	}
+
+	/**
+	 * Calls finish on every rule that set state, in the order they first did. Called by the pricing engines once the
+	 * last item of the cart has been applied.
+	 */
+	void finish(){
+		for (int r = 0; r < activeCount; r++){
+			active[r].finish(this);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package classes;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A load test client for PricingServer. Posts the same cart over and over from a number of threads, then prints the
+ * throughput, the count of each status code, and latency percentiles of the successful requests.
+ *
+ * With no URL given, a server is started in the same JVM on a free port and stopped afterwards, so the whole test
+ * runs on one machine with one command.
+ *
+ * Usage: java classes.PricingLoadTest cartFile requests concurrency [url]
+ * @author Alex
+ *
+ */
+public class PricingLoadTest {
+
+	/**
+	 * The percentiles printed, as fractions.
+	 */
+	private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+	/**
+	 * Runs the load test from the command line.
+	 * @param args The cart to post (a .json file is sent as JSON), the number of requests, the number of threads
+	 * sending them, and optionally the URL of a running server's /price.
+	 * @throws Exception Throws any exception raised reading the cart or starting the server.
+	 */
+	public static void main(String[] args) throws Exception{
+		if (args.length < 3){
+			System.out.println("Usage: java classes.PricingLoadTest cartFile requests concurrency [url]");
+			return;
+		}
+		byte[] cart = Files.readAllBytes(Paths.get(args[0]));
+		boolean json = args[0].toLowerCase().endsWith(".json");
+		int requests = Integer.parseInt(args[1]);
+		int concurrency = Integer.parseInt(args[2]);
+		PricingServer server = null;
+		String url;
+		if (args.length > 3){
+			url = args[3];
+		} else {
+			server = new PricingServer(0);
+			server.start();
+			url = "http://localhost:" + server.getPort() + "/price";
+		}
+		try {
+			run(new URL(url), cart, json, requests, concurrency);
+			if (server != null){
+				System.out.println("Batches: " + server.getBatchCount() + " for " + server.getPricedCount() + " carts");
+			}
+		} finally {
+			if (server != null){
+				server.stop(0);
+			}
+		}
+	}
+
+	/**
+	 * Sends requests and prints the results.
+	 * @param url The /price URL.
+	 * @param cart The body of each request.
+	 * @param json True to send the cart as JSON, false as csv.
+	 * @param requests The number of requests to send.
+	 * @param concurrency The number of threads sending them.
+	 * @throws Exception Throws if interrupted while waiting for the requests.
+	 */
+	public static void run(final URL url, final byte[] cart, final boolean json, int requests, int concurrency) throws Exception{
+		final AtomicLongArray latencies = new AtomicLongArray(requests);
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger succeeded = new AtomicInteger();
+		final AtomicLongArray statuses = new AtomicLongArray(600);
+		final int total = requests;
+		ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+		long started = System.nanoTime();
+		for (int t = 0; t < concurrency; t++){
+			clients.execute(() -> {
+				while (next.getAndIncrement() < total){
+					long start = System.nanoTime();
+					int status = post(url, cart, json);
+					long elapsed = System.nanoTime() - start;
+					statuses.incrementAndGet(status >= 0 && status < 600 ? status : 0);
+					if (status == 200){
+						latencies.set(succeeded.getAndIncrement(), elapsed);
+					}
+				}
+			});
+		}
+		clients.shutdown();
+		clients.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		double seconds = (System.nanoTime() - started) / 1e9;
+
+		System.out.printf("%d requests in %.2f s, %.0f requests/s, %d threads%n", total, seconds, total / seconds, concurrency);
+		for (int status = 0; status < 600; status++){
+			if (statuses.get(status) > 0){
+				System.out.println("  " + (status == 0 ? "failed" : "HTTP " + status) + ": " + statuses.get(status));
+			}
+		}
+		int count = succeeded.get();
+		if (count == 0){
+			return;
+		}
+		long[] sorted = new long[count];
+		for (int i = 0; i < count; i++){
+			sorted[i] = latencies.get(i);
+		}
+		Arrays.sort(sorted);
+		StringBuilder line = new StringBuilder("Latency ms:");
+		for (double percentile : PERCENTILES){
+			int index = (int) Math.min(count - 1, Math.ceil(percentile * count) - 1);
+			line.append(String.format(" p%s=%.3f", trim(percentile * 100), sorted[Math.max(index, 0)] / 1e6));
+		}
+		line.append(String.format(" max=%.3f", sorted[count - 1] / 1e6));
+		System.out.println(line);
+	}
+
+	/**
+	 * Posts the cart once.
+	 * @return The status code, or 0 if the request failed without one.
+	 */
+	private static int post(URL url, byte[] cart, boolean json){
+		HttpURLConnection connection = null;
+		try {
+			connection = (HttpURLConnection) url.openConnection();
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			connection.setFixedLengthStreamingMode(cart.length);
+			connection.setRequestProperty("Content-Type", json ? "application/json" : "text/csv");
+			OutputStream out = connection.getOutputStream();
+			out.write(cart);
+			out.close();
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (in != null){
+				drain(in);
+			}
+			return status;
+		} catch(Exception e){
+			return 0;
+		}
+	}
+
+	/**
+	 * Reads a response to the end and closes it, so the connection can be reused.
+	 */
+	private static void drain(InputStream in) throws Exception{
+		try {
+			byte[] buffer = new byte[4096];
+			while (in.read(buffer) != -1){
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Formats a percentile without a trailing ".0".
+	 */
+	private static String trim(double percent){
+		return percent == Math.rint(percent) ? Long.toString((long) percent) : Double.toString(percent);
+	}
+}
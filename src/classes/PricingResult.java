@@ -0,0 +1,89 @@
+package classes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The immutable result of pricing a cart: the total, the rebate total, and a record of what was applied to each item,
+ * in the order the items were totalled.
+ * @author Alex
+ *
+ */
+public final class PricingResult {
+
+	/**
+	 * The total price of the cart after discounts, in cents.
+	 */
+	private final long total;
+
+	/**
+	 * The total amount of rebate a customer has accrued, in cents.
+	 */
+	private final long rebateTotal;
+
+	/**
+	 * What was applied to each item, in the order the items were totalled.
+	 */
+	private final List<LineDiscount> lines;
+
+	/**
+	 * Constructor for a pricing result.
+	 * @param inTotal The total price of the cart after discounts, in cents.
+	 * @param inRebateTotal The total amount of rebate a customer has accrued, in cents.
+	 * @param inLines What was applied to each item, in the order the items were totalled.
+	 */
+	public PricingResult(long inTotal, long inRebateTotal, List<LineDiscount> inLines){
+		this.total = inTotal;
+		this.rebateTotal = inRebateTotal;
+		this.lines = Collections.unmodifiableList(new ArrayList<LineDiscount>(inLines));
+	}
+
+	/**
+	 * Gets the total price of the cart after discounts.
+	 * @return The total price of the cart.
+	 */
+	public double getTotal(){
+		return Money.toDouble(total);
+	}
+
+	/**
+	 * Gets the exact total price of the cart after discounts.
+	 * @return The total price of the cart, in cents.
+	 */
+	public long getTotalCents(){
+		return total;
+	}
+
+	/**
+	 * Gets the total amount of rebate a customer has accrued.
+	 * @return The total rebate.
+	 */
+	public double getRebateTotal(){
+		return Money.toDouble(rebateTotal);
+	}
+
+	/**
+	 * Gets the exact total amount of rebate a customer has accrued.
+	 * @return The total rebate, in cents.
+	 */
+	public long getRebateTotalCents(){
+		return rebateTotal;
+	}
+
+	/**
+	 * Gets the totals of the cart, without the line records.
+	 * @return The total and rebate total.
+	 */
+	public CartTotals getTotals(){
+		return new CartTotals(total, rebateTotal);
+	}
+
+	/**
+	 * Gets what was applied to each item.
+	 * @return An unmodifiable list of line records, in the order the items were totalled.
+	 */
+	public List<LineDiscount> getLines(){
+		return lines;
+	}
+}
@@ -0,0 +1,620 @@
+package classes;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An embedded HTTP service that prices carts, built on the JDK's com.sun.net.httpserver.
+ *
+ * POST /price with a cart in the CartContents.csv format, or as JSON (see CartJson) with a Content-Type containing
+ * "json". The reply is JSON holding the item count, the total and the rebate total, priced with the same rules as
+ * Cart.applyDiscounts. GET /stats replies with the request, rejection and batch counts.
+ *
+ * Each request is parsed on a request thread, a virtual thread when the JVM has them and otherwise one of a fixed pool,
+ * then put on a bounded queue. A request takes one of queue capacity permits on the server's dispatcher thread, before
+ * it waits for a request thread, and gives it back once it has been answered, so no more carts than the queue holds are
+ * ever being read, parsed, waiting or priced at once. The request thread does not wait for the cart to be priced: the
+ * reply is sent from a request thread once it is, so a fixed pool of request threads is never held up by the queue.
+ * Pricing threads take carts off the queue in micro-batches: a batch starts with the first cart waiting and takes
+ * every cart that arrives within the batch wait, up to the batch size, so a burst of small requests shares one
+ * wake up and one evaluation date. When the queue is full a request is turned away at once with 503 and a Retry-After
+ * header, as soon as a request thread reaches it and without its body being read, rather than queueing without bound. A cart not priced within the timeout gets
+ * 504 and is taken off the queue, or skipped by the pricing thread that already took it.
+ *
+ * Usage: java classes.PricingServer [port]
+ * @author Alex
+ *
+ */
+public class PricingServer {
+
+	/**
+	 * The port used when none is given.
+	 */
+	public static final int DEFAULT_PORT = 8080;
+
+	/**
+	 * The most carts waiting to be priced unless another limit is set.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+	/**
+	 * The most carts priced in one batch unless another limit is set.
+	 */
+	public static final int DEFAULT_MAX_BATCH = 64;
+
+	/**
+	 * How long a batch waits for more carts unless another wait is set, in microseconds.
+	 */
+	public static final long DEFAULT_BATCH_WAIT_MICROS = 200;
+
+	/**
+	 * How long a request waits for its cart to be priced unless another timeout is set, in milliseconds.
+	 */
+	public static final long DEFAULT_TIMEOUT_MILLIS = 5000;
+
+	/**
+	 * The largest request body accepted, in bytes.
+	 */
+	public static final int MAX_BODY_BYTES = 16 << 20;
+
+	/**
+	 * A parsed cart waiting to be priced, and the future its request waits on.
+	 */
+	private static class PendingCart {
+		final SKU[] cart;
+		final CompletableFuture<CartTotals> result = new CompletableFuture<CartTotals>();
+
+		PendingCart(SKU[] inCart){
+			this.cart = inCart;
+		}
+	}
+
+	/**
+	 * Whether a request was given a permit when the dispatcher handed it off, and whether its handler has kept the
+	 * permit, to give back once the cart has been answered.
+	 */
+	private static class Admission {
+		final boolean admitted;
+		boolean kept;
+
+		Admission(boolean inAdmitted){
+			this.admitted = inAdmitted;
+		}
+	}
+
+	/**
+	 * The address the server listens on.
+	 */
+	private final InetSocketAddress address;
+
+	/**
+	 * The limits the server runs with. Set before start.
+	 */
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+	private int maxBatch = DEFAULT_MAX_BATCH;
+	private long batchWaitMicros = DEFAULT_BATCH_WAIT_MICROS;
+	private long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+	private int pricingThreads = Runtime.getRuntime().availableProcessors();
+
+	/**
+	 * The running server, its request threads, the queue of carts, the pricing threads and the thread timing out carts
+	 * that wait too long. Null until start.
+	 */
+	private HttpServer server;
+	private ExecutorService requestExecutor;
+	private ArrayBlockingQueue<PendingCart> queue;
+	private Semaphore admitted;
+	private Thread[] pricers;
+	private ScheduledThreadPoolExecutor timer;
+
+	/**
+	 * The admission of the request running on each request thread.
+	 */
+	private final ThreadLocal<Admission> admission = new ThreadLocal<Admission>();
+
+	/**
+	 * True from start until stop.
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Counts of carts priced, requests turned away because the queue was full, bad requests, timed out requests,
+	 * batches priced and carts priced in those batches.
+	 */
+	private final LongAdder priced = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+	private final LongAdder badRequests = new LongAdder();
+	private final LongAdder timedOut = new LongAdder();
+	private final LongAdder batches = new LongAdder();
+	private final LongAdder batchedCarts = new LongAdder();
+
+	/**
+	 * Builds a server for a port on every local address.
+	 * @param port The port to listen on, or 0 for any free port.
+	 */
+	public PricingServer(int port){
+		this(new InetSocketAddress(port));
+	}
+
+	/**
+	 * Builds a server for an address.
+	 * @param inAddress The address to listen on.
+	 */
+	public PricingServer(InetSocketAddress inAddress){
+		this.address = inAddress;
+	}
+
+	/**
+	 * Starts a server from the command line and runs until the process is stopped.
+	 * @param args Optionally the port to listen on.
+	 * @throws Exception Throws an IOException if the port cannot be bound.
+	 */
+	public static void main(String[] args) throws Exception{
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		final PricingServer pricingServer = new PricingServer(port);
+		pricingServer.start();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> pricingServer.stop(1)));
+		System.out.println("Pricing carts on port " + pricingServer.getPort());
+	}
+
+	/**
+	 * Sets the most carts that may be read, parsed, waiting or priced at once. Requests past this get 503.
+	 * @param inQueueCapacity The queue capacity.
+	 * @return This server.
+	 */
+	public PricingServer setQueueCapacity(int inQueueCapacity){
+		this.queueCapacity = atLeastOne(inQueueCapacity, "Queue capacity");
+		return this;
+	}
+
+	/**
+	 * Sets the most carts priced in one batch.
+	 * @param inMaxBatch The batch size.
+	 * @return This server.
+	 */
+	public PricingServer setMaxBatch(int inMaxBatch){
+		this.maxBatch = atLeastOne(inMaxBatch, "Batch size");
+		return this;
+	}
+
+	/**
+	 * Sets how long a batch waits for more carts after its first.
+	 * @param inBatchWaitMicros The wait in microseconds, or 0 to take only the carts already waiting.
+	 * @return This server.
+	 */
+	public PricingServer setBatchWaitMicros(long inBatchWaitMicros){
+		this.batchWaitMicros = Math.max(inBatchWaitMicros, 0);
+		return this;
+	}
+
+	/**
+	 * Sets how long a request waits for its cart to be priced before getting 504.
+	 * @param inTimeoutMillis The timeout in milliseconds.
+	 * @return This server.
+	 */
+	public PricingServer setTimeoutMillis(long inTimeoutMillis){
+		if (inTimeoutMillis < 1){
+			throw new IllegalArgumentException("Timeout must be at least 1: " + inTimeoutMillis);
+		}
+		this.timeoutMillis = inTimeoutMillis;
+		return this;
+	}
+
+	/**
+	 * Sets the number of threads pricing batches.
+	 * @param inPricingThreads The number of threads.
+	 * @return This server.
+	 */
+	public PricingServer setPricingThreads(int inPricingThreads){
+		this.pricingThreads = atLeastOne(inPricingThreads, "Pricing threads");
+		return this;
+	}
+
+	/**
+	 * Starts listening and pricing.
+	 * @throws IOException Throws if the address cannot be bound.
+	 */
+	public synchronized void start() throws IOException{
+		if (running){
+			throw new IllegalStateException("Already started");
+		}
+		/**
+		 * Replies are sent as a header write and a body write, which Nagle's algorithm and delayed acks hold up by
+		 * about 40 ms each. The JDK server reads this property when its first server is created.
+		 */
+		if (System.getProperty("sun.net.httpserver.nodelay") == null){
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		queue = new ArrayBlockingQueue<PendingCart>(queueCapacity);
+		admitted = new Semaphore(queueCapacity);
+		server = HttpServer.create(address, 0);
+		requestExecutor = BatchPricer.newLoadExecutor(pricingThreads * 4);
+		timer = new ScheduledThreadPoolExecutor(1, task -> {
+			Thread thread = new Thread(task, "pricing-timeouts");
+			thread.setDaemon(true);
+			return thread;
+		});
+		timer.setRemoveOnCancelPolicy(true);
+		server.setExecutor(new Executor(){
+			public void execute(Runnable exchange){
+				dispatch(exchange);
+			}
+		});
+		server.createContext("/price", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException{
+				handlePrice(exchange);
+			}
+		});
+		server.createContext("/stats", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException{
+				reply(exchange, 200, statsJson());
+			}
+		});
+		running = true;
+		pricers = new Thread[pricingThreads];
+		for (int i = 0; i < pricers.length; i++){
+			pricers[i] = new Thread(() -> priceBatches(), "pricing-" + i);
+			pricers[i].setDaemon(true);
+			pricers[i].start();
+		}
+		server.start();
+	}
+
+	/**
+	 * Stops listening, stops the pricing threads, and fails any carts still waiting.
+	 * @param delaySeconds The most seconds to wait for open exchanges to finish.
+	 */
+	public synchronized void stop(int delaySeconds){
+		if (!running){
+			return;
+		}
+		running = false;
+		server.stop(delaySeconds);
+		for (Thread pricer : pricers){
+			pricer.interrupt();
+		}
+		List<PendingCart> left = new ArrayList<PendingCart>();
+		queue.drainTo(left);
+		for (PendingCart pending : left){
+			pending.result.completeExceptionally(new IllegalStateException("Server stopped"));
+		}
+		requestExecutor.shutdownNow();
+		timer.shutdownNow();
+	}
+
+	/**
+	 * Gets the port the server is listening on, which is the one picked if it was started on port 0.
+	 * @return The port.
+	 */
+	public int getPort(){
+		return server != null ? server.getAddress().getPort() : address.getPort();
+	}
+
+	/**
+	 * Gets the number of carts priced.
+	 * @return The priced count.
+	 */
+	public long getPricedCount(){
+		return priced.sum();
+	}
+
+	/**
+	 * Gets the number of requests turned away because the queue was full.
+	 * @return The rejected count.
+	 */
+	public long getRejectedCount(){
+		return rejected.sum();
+	}
+
+	/**
+	 * Gets the number of batches priced.
+	 * @return The batch count.
+	 */
+	public long getBatchCount(){
+		return batches.sum();
+	}
+
+	/**
+	 * Runs on the server's dispatcher thread for each request: takes a permit for it there, before it waits for a request
+	 * thread, and hands it to the request threads marked with whether it got one. Requests to /stats take a permit too,
+	 * for as long as their handler runs.
+	 * @param exchange The server's task for the request.
+	 */
+	private void dispatch(final Runnable exchange){
+		final Admission entry = new Admission(admitted.tryAcquire());
+		try {
+			requestExecutor.execute(() -> {
+				admission.set(entry);
+				try {
+					exchange.run();
+				} finally {
+					admission.remove();
+					if (entry.admitted && !entry.kept){
+						admitted.release();
+					}
+				}
+			});
+		} catch(RuntimeException e){
+			if (entry.admitted){
+				admitted.release();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Reads and queues one pricing request, turning it away without reading its body if it was not given a permit.
+	 * The reply is sent once the cart is priced, so the permit is kept until then.
+	 * @param exchange The request.
+	 * @throws IOException Throws if a reply cannot be sent.
+	 */
+	private void handlePrice(HttpExchange exchange) throws IOException{
+		Admission entry = admission.get();
+		boolean answered = true;
+		try {
+			if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())){
+				exchange.getResponseHeaders().set("Allow", "POST");
+				reply(exchange, 405, error("Use POST"));
+				return;
+			}
+			if (!running || entry == null || !entry.admitted){
+				reject(exchange);
+				return;
+			}
+			PendingCart pending = readCart(exchange);
+			if (pending == null){
+				return;
+			}
+			/**
+			 * Admission keeps the queue from filling, so this only fails once the server is stopping.
+			 */
+			if (!running || !queue.offer(pending)){
+				reject(exchange);
+				return;
+			}
+			answerWhenPriced(exchange, pending);
+			entry.kept = true;
+			answered = false;
+		} finally {
+			if (answered){
+				exchange.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads and parses the cart of a pricing request, answering 413 or 400 if it cannot.
+	 * @param exchange The request.
+	 * @return The cart ready to be queued, or null if the request has been answered.
+	 * @throws IOException Throws if the body cannot be read or a reply cannot be sent.
+	 */
+	private PendingCart readCart(HttpExchange exchange) throws IOException{
+		byte[] body = readBody(exchange.getRequestBody());
+		if (body == null){
+			badRequests.increment();
+			reply(exchange, 413, error("Cart is larger than " + MAX_BODY_BYTES + " bytes"));
+			return null;
+		}
+		try {
+			String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			if (contentType != null && contentType.toLowerCase().contains("json")){
+				return new PendingCart(CartJson.parse(new String(body, StandardCharsets.UTF_8)));
+			}
+			return new PendingCart(Cart.loadCart(CartSource.fromStream(new ByteArrayInputStream(body)).setCharset(StandardCharsets.UTF_8)));
+		} catch(Exception e){
+			badRequests.increment();
+			reply(exchange, 400, error("Bad cart: " + e));
+			return null;
+		}
+	}
+
+	/**
+	 * Answers a queued request on a request thread once its cart is priced, or with 504 once the timeout passes, then
+	 * closes it and gives back its permit.
+	 * @param exchange The request.
+	 * @param pending The queued cart.
+	 */
+	private void answerWhenPriced(final HttpExchange exchange, final PendingCart pending){
+		final ScheduledFuture<?> timeout = timer.schedule(() -> {
+			/**
+			 * Nobody will read this cart's total, so drop it from the queue, or have the pricer that took it skip it.
+			 */
+			if (pending.result.completeExceptionally(new TimeoutException())){
+				queue.remove(pending);
+			}
+		}, timeoutMillis, TimeUnit.MILLISECONDS);
+		pending.result.whenCompleteAsync((totals, failure) -> {
+			timeout.cancel(false);
+			try {
+				answer(exchange, pending.cart.length, totals, failure);
+			} catch(IOException e){
+				/**
+				 * The client has gone, so there is no one to tell.
+				 */
+			} finally {
+				exchange.close();
+				admitted.release();
+			}
+		}, requestExecutor);
+	}
+
+	/**
+	 * Sends the reply for a queued cart.
+	 */
+	private void answer(HttpExchange exchange, int items, CartTotals totals, Throwable failure) throws IOException{
+		if (failure instanceof TimeoutException){
+			timedOut.increment();
+			reply(exchange, 504, error("Cart was not priced within " + timeoutMillis + " ms"));
+		} else if (failure != null){
+			reply(exchange, 500, error("Pricing failed: " + failure));
+		} else {
+			reply(exchange, 200, "{\"items\":" + items
+					+ ",\"total\":\"" + dollars(totals.getTotalCents())
+					+ "\",\"rebateTotal\":\"" + dollars(totals.getRebateTotalCents())
+					+ "\",\"totalCents\":" + totals.getTotalCents()
+					+ ",\"rebateTotalCents\":" + totals.getRebateTotalCents() + "}");
+		}
+	}
+
+	/**
+	 * Turns a request away with 503 because the server has no room for its cart.
+	 */
+	private void reject(HttpExchange exchange) throws IOException{
+		rejected.increment();
+		exchange.getResponseHeaders().set("Retry-After", "1");
+		reply(exchange, 503, error("Pricing queue is full"));
+	}
+
+	/**
+	 * Runs on each pricing thread: takes a batch of carts off the queue, prices them against one evaluation date, and
+	 * completes each cart's future, skipping carts whose request has timed out, until the server stops.
+	 */
+	private void priceBatches(){
+		List<PendingCart> batch = new ArrayList<PendingCart>(maxBatch);
+		long waitNanos = TimeUnit.MICROSECONDS.toNanos(batchWaitMicros);
+		while (running){
+			try {
+				PendingCart first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null){
+					continue;
+				}
+				batch.add(first);
+				long deadline = System.nanoTime() + waitNanos;
+				while (batch.size() < maxBatch){
+					queue.drainTo(batch, maxBatch - batch.size());
+					long left = deadline - System.nanoTime();
+					if (batch.size() >= maxBatch || left <= 0){
+						break;
+					}
+					PendingCart next = queue.poll(left, TimeUnit.NANOSECONDS);
+					if (next == null){
+						break;
+					}
+					batch.add(next);
+				}
+				int today = PromotionDates.today();
+				for (PendingCart pending : batch){
+					if (pending.result.isDone()){
+						continue;
+					}
+					try {
+						pending.result.complete(DiscountEngine.price(pending.cart, today));
+						priced.increment();
+					} catch(Exception e){
+						pending.result.completeExceptionally(e);
+					}
+				}
+				batches.increment();
+				batchedCarts.add(batch.size());
+			} catch(InterruptedException e){
+				for (PendingCart pending : batch){
+					pending.result.completeExceptionally(e);
+				}
+				Thread.currentThread().interrupt();
+				return;
+			} finally {
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Builds the /stats reply.
+	 */
+	private String statsJson(){
+		long batchCount = batches.sum();
+		return "{\"priced\":" + priced.sum()
+				+ ",\"rejected\":" + rejected.sum()
+				+ ",\"badRequests\":" + badRequests.sum()
+				+ ",\"timedOut\":" + timedOut.sum()
+				+ ",\"batches\":" + batchCount
+				+ ",\"averageBatch\":" + (batchCount == 0 ? 0 : batchedCarts.sum() / (double) batchCount)
+				+ ",\"queued\":" + (queue != null ? queue.size() : 0) + "}";
+	}
+
+	/**
+	 * Reads a request body, giving up past MAX_BODY_BYTES.
+	 * @return The body, or null if it is too large.
+	 */
+	private static byte[] readBody(InputStream in) throws IOException{
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		byte[] chunk = new byte[8192];
+		int read;
+		while ((read = in.read(chunk)) != -1){
+			if (body.size() + read > MAX_BODY_BYTES){
+				return null;
+			}
+			body.write(chunk, 0, read);
+		}
+		return body.toByteArray();
+	}
+
+	/**
+	 * Sends a JSON reply.
+	 */
+	private static void reply(HttpExchange exchange, int status, String json) throws IOException{
+		byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	/**
+	 * Builds a JSON error reply.
+	 */
+	private static String error(String message){
+		StringBuilder json = new StringBuilder("{\"error\":\"");
+		for (int i = 0; i < message.length(); i++){
+			char c = message.charAt(i);
+			if (c == '"' || c == '\\'){
+				json.append('\\').append(c);
+			} else if (c < ' '){
+				json.append(String.format("\\u%04x", (int) c));
+			} else {
+				json.append(c);
+			}
+		}
+		return json.append("\"}").toString();
+	}
+
+	/**
+	 * Formats cents as a dollar amount with two decimals.
+	 */
+	private static String dollars(long cents){
+		return BigDecimal.valueOf(cents, 2).toPlainString();
+	}
+
+	/**
+	 * Checks a setting is at least 1.
+	 */
+	private static int atLeastOne(int value, String name){
+		if (value < 1){
+			throw new IllegalArgumentException(name + " must be at least 1: " + value);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,218 @@
+package classes;
+
+/**
+ * An immutable, pre-parsed promotion. The promotion type strings from the csv ("n", "%x10", "rx10", "bx2x1x100") are split
+ * and parsed once when the SKU is built, so applying a discount is plain arithmetic on the fields of this class.
+ * @author Alex
+ *
+ */
+public final class Promotion {
+
+	/**
+	 * The kinds of promotion an item can have.
+	 * UNKNOWN covers type strings that are not recognized or are missing a value. Those items are never totalled, same as before.
+	 * RULE covers types compiled by a PromotionRule registered with PromotionRules, which prices them.
+	 */
+	public enum Kind {
+		NONE, PERCENT, REBATE, BOGO, UNKNOWN, RULE
+	}
+
+	/**
+	 * When looking at any given cell in the csv, promotion types are seperated by 'x', allowing for promotion type and amount to be in one cell.
+	 */
+	private static final String TYPE_SPLIT_BY = "x";
+
+	/**
+	 * The kind of this promotion.
+	 */
+	private final Kind kind;
+
+	/**
+	 * The rule that compiled this promotion, or null for UNKNOWN.
+	 */
+	private final PromotionRule rule;
+
+	/**
+	 * The original type string this promotion was parsed from.
+	 */
+	private final String type;
+
+	/**
+	 * The percent off for PERCENT, the flat rebate for REBATE, or the Z in buy X get Y Z% off for BOGO, in hundredths,
+	 * parsed exactly with Money.parse. Cents for REBATE, basis points for PERCENT and BOGO.
+	 */
+	private final long fixedAmount;
+
+	/**
+	 * The X in buy X get Y Z% off.
+	 */
+	private final int buyCount;
+
+	/**
+	 * The Y in buy X get Y Z% off.
+	 */
+	private final int getCount;
+
+	/**
+	 * The amount, X and Y as they were written in the csv, kept so console output matches the input exactly.
+	 */
+	private final String amountText;
+	private final String buyText;
+	private final String getText;
+
+	/**
+	 * The values of a RULE promotion, as its rule parsed them.
+	 */
+	private final Object terms;
+
+	/**
+	 * Constructor for the built in rules, use compile to build a promotion from a type string.
+	 * @throws NumberFormatException Throws if amountText is not a number, which compile takes as an UNKNOWN type.
+	 */
+	Promotion(Kind kind, PromotionRule rule, String type, int buyCount, int getCount, String amountText, String buyText, String getText, Object terms){
+		this.kind = kind;
+		this.rule = rule;
+		this.type = type;
+		this.fixedAmount = amountText == null ? 0 : Money.parse(amountText);
+		this.buyCount = buyCount;
+		this.getCount = getCount;
+		this.amountText = amountText;
+		this.buyText = buyText;
+		this.getText = getText;
+		this.terms = terms;
+	}
+
+	/**
+	 * Parses a promotion type string into a Promotion.
+	 * Valid types are "n" for none, "%xA" for A percent off, "rxA" for a flat rebate of A, and "bxXxYxZ" for buy X get Y Z% off,
+	 * along with the types of any rule registered with PromotionRules.
+	 * @param inType The type string from the csv.
+	 * @return The parsed promotion. Unrecognized or malformed types give a promotion of kind UNKNOWN.
+	 */
+	public static Promotion compile(String inType){
+		if (inType == null){
+			return unknown(inType);
+		}
+		String[] typeData = inType.split(TYPE_SPLIT_BY);
+		try {
+			PromotionRule found = PromotionRules.get(typeData[0]);
+			if (found != null){
+				Promotion promotion = found.compile(inType, typeData);
+				if (promotion != null){
+					return promotion;
+				}
+			}
+		} catch(NumberFormatException e){
+			//Falls through to UNKNOWN, the same as an unrecognized type.
+		} catch(ArrayIndexOutOfBoundsException e){
+			//Falls through to UNKNOWN, the same as an unrecognized type.
+		}
+		return unknown(inType);
+	}
+
+	/**
+	 * Builds a promotion for a registered rule, from its PromotionRule.compile.
+	 * @param inRule The rule compiling the promotion.
+	 * @param inType The type string from the csv.
+	 * @param inTerms The values parsed from the type string, in whatever form the rule wants them back in apply.
+	 * @return A promotion of kind RULE.
+	 */
+	public static Promotion forRule(PromotionRule inRule, String inType, Object inTerms){
+		return new Promotion(Kind.RULE, inRule, inType, 0, 0, null, null, null, inTerms);
+	}
+
+	/**
+	 * Builds a promotion of kind UNKNOWN.
+	 */
+	private static Promotion unknown(String inType){
+		return new Promotion(Kind.UNKNOWN, null, inType, 0, 0, null, null, null, null);
+	}
+
+	/**
+	 * Gets the kind of this promotion.
+	 * @return The kind of this promotion.
+	 */
+	public Kind getKind(){
+		return kind;
+	}
+
+	/**
+	 * Gets the rule that compiled this promotion, which prices its items.
+	 * @return The rule, or null for UNKNOWN.
+	 */
+	public PromotionRule getRule(){
+		return rule;
+	}
+
+	/**
+	 * Gets the values of a RULE promotion, as its rule parsed them.
+	 * @return The terms, or null for the built in kinds.
+	 */
+	public Object getTerms(){
+		return terms;
+	}
+
+	/**
+	 * Gets the type string this promotion was parsed from.
+	 * @return The original type string.
+	 */
+	public String getType(){
+		return type;
+	}
+
+	/**
+	 * Gets the flat rebate of a REBATE promotion, in cents.
+	 * @return The rebate in cents.
+	 */
+	public long getRebateCents(){
+		return fixedAmount;
+	}
+
+	/**
+	 * Gets the percent off of a PERCENT promotion, or the Z in buy X get Y Z% off, in hundredths of a percent.
+	 * @return The percent off in basis points.
+	 */
+	public long getRateBasisPoints(){
+		return fixedAmount;
+	}
+
+	/**
+	 * Gets the X in buy X get Y Z% off.
+	 * @return The number of items that must be bought before the deal starts.
+	 */
+	public int getBuyCount(){
+		return buyCount;
+	}
+
+	/**
+	 * Gets the Y in buy X get Y Z% off.
+	 * @return The number of items the deal discounts.
+	 */
+	public int getGetCount(){
+		return getCount;
+	}
+
+	/**
+	 * Gets the amount as it was written in the csv.
+	 * @return The amount text.
+	 */
+	public String getAmountText(){
+		return amountText;
+	}
+
+	/**
+	 * Gets the X in buy X get Y Z% off as it was written in the csv.
+	 * @return The buy count text.
+	 */
+	public String getBuyText(){
+		return buyText;
+	}
+
+	/**
+	 * Gets the Y in buy X get Y Z% off as it was written in the csv.
+	 * @return The get count text.
+	 */
+	public String getGetText(){
+		return getText;
+	}
+}
@@ -0,0 +1,325 @@
+package classes;
+
+import java.text.ParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded cache of the promotion terms of each SKU id, so every line of an id shares one immutable PromotionTerms
+ * instead of each SKU holding its own, and repeated lines skip parsing the promotion type and dates altogether.
+ *
+ * Ids are kept in least recently used order. Once the catalog holds capacity ids, looking up a new id evicts the one
+ * used longest ago. A line whose promotion differs from the one cached for its id replaces it. Parsed promotion types
+ * are cached the same way, keyed by the type text.
+ *
+ * The catalog is thread-safe. Cart and MappedCartParser share the one returned by getShared unless given another.
+ * Each load looks terms up through its own Local, which answers lines whose id repeats its promotion without taking
+ * the catalog's lock, so parsers on many threads only contend when they meet an id or promotion they have not seen.
+ * @author Alex
+ *
+ */
+public class PromotionCatalog {
+
+	/**
+	 * The number of ids the shared catalog holds.
+	 */
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	/**
+	 * The catalog shared by the cart parsers.
+	 */
+	private static final PromotionCatalog SHARED = new PromotionCatalog(DEFAULT_CAPACITY);
+
+	/**
+	 * The terms cached for one id, with the csv text they were parsed from if they came from Cart's parser.
+	 */
+	private static class Cached {
+		final PromotionTerms terms;
+		final String type;
+		final String startText;
+		final String endText;
+
+		Cached(PromotionTerms inTerms, String inType, String inStartText, String inEndText){
+			this.terms = inTerms;
+			this.type = inType;
+			this.startText = inStartText;
+			this.endText = inEndText;
+		}
+	}
+
+	/**
+	 * An unsynchronized front to a catalog for one load. Holds the terms last handed out for each of a small number of
+	 * id slots, and goes to the catalog only when the slot holds another id or different terms. A Local is not
+	 * thread-safe, so each parser or load makes its own with newLocal.
+	 */
+	public static final class Local {
+		/**
+		 * The number of id slots. A power of two.
+		 */
+		private static final int SLOTS = 256;
+
+		/**
+		 * The catalog behind this front.
+		 */
+		private final PromotionCatalog catalog;
+
+		/**
+		 * The id, and the terms last handed out for it, in each slot.
+		 */
+		private final int[] ids = new int[SLOTS];
+		private final Cached[] entries = new Cached[SLOTS];
+
+		/**
+		 * Constructor for an empty front.
+		 * @param inCatalog The catalog behind this front.
+		 */
+		private Local(PromotionCatalog inCatalog){
+			this.catalog = inCatalog;
+		}
+
+		/**
+		 * Gets the terms for a line of the csv from its promotion fields, the same way PromotionCatalog.lookup does.
+		 * @param id The SKU id.
+		 * @param type The promotion type text.
+		 * @param startText The start date text, d/M/yyyy or "None".
+		 * @param endText The end date text, d/M/yyyy or "None".
+		 * @return The shared terms.
+		 * @throws ParseException Throws if a date is not valid.
+		 */
+		public PromotionTerms lookup(int id, String type, String startText, String endText) throws ParseException{
+			int slot = slot(id);
+			Cached entry = entries[slot];
+			if (entry != null && ids[slot] == id && entry.type != null && type.equals(entry.type)
+					&& startText.equals(entry.startText) && endText.equals(entry.endText)){
+				catalog.hits.increment();
+				return entry.terms;
+			}
+			PromotionTerms terms = catalog.lookup(id, type, startText, endText);
+			ids[slot] = id;
+			entries[slot] = new Cached(terms, type, startText, endText);
+			return terms;
+		}
+
+		/**
+		 * Gets the terms for an id from an already parsed promotion and window, the same way PromotionCatalog.lookup does.
+		 * @param id The SKU id.
+		 * @param promotion The parsed promotion type.
+		 * @param startDay The start of the promotion, as an epoch day.
+		 * @param endDay The end of the promotion, as an epoch day.
+		 * @return The shared terms.
+		 */
+		public PromotionTerms lookup(int id, Promotion promotion, int startDay, int endDay){
+			int slot = slot(id);
+			Cached entry = entries[slot];
+			if (entry != null && ids[slot] == id && entry.terms.matches(promotion, startDay, endDay)){
+				catalog.hits.increment();
+				return entry.terms;
+			}
+			PromotionTerms terms = catalog.lookup(id, promotion, startDay, endDay);
+			ids[slot] = id;
+			entries[slot] = new Cached(terms, null, null, null);
+			return terms;
+		}
+
+		/**
+		 * Spreads the bits of an id over the slots.
+		 */
+		private static int slot(int id){
+			return (id * 0x9E3779B9) >>> 24;
+		}
+	}
+
+	/**
+	 * The most ids, and the most promotion types, the catalog holds.
+	 */
+	private final int capacity;
+
+	/**
+	 * The cached terms of each id, least recently used first.
+	 */
+	private final LinkedHashMap<Integer, Cached> byId;
+
+	/**
+	 * The parsed promotion of each type text, least recently used first.
+	 */
+	private final LinkedHashMap<String, Promotion> byType;
+
+	/**
+	 * Lookups answered from the cache, lookups that had to parse, and ids evicted to make room. Hits are counted
+	 * without the lock, as Locals answer most lookups on their own.
+	 */
+	private final LongAdder hits = new LongAdder();
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Constructor for an empty catalog.
+	 * @param inCapacity The most ids the catalog holds.
+	 */
+	public PromotionCatalog(int inCapacity){
+		if (inCapacity < 1){
+			throw new IllegalArgumentException("Capacity must be at least 1: " + inCapacity);
+		}
+		this.capacity = inCapacity;
+		this.byId = new LinkedHashMap<Integer, Cached>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Cached> eldest){
+				if (size() > capacity){
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+		this.byType = new LinkedHashMap<String, Promotion>(16, 0.75f, true){
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Promotion> eldest){
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Gets the catalog shared by the cart parsers.
+	 * @return The shared catalog.
+	 */
+	public static PromotionCatalog getShared(){
+		return SHARED;
+	}
+
+	/**
+	 * Makes an unsynchronized front to this catalog for one load.
+	 * @return A new, empty front.
+	 */
+	public Local newLocal(){
+		return new Local(this);
+	}
+
+	/**
+	 * Gets the terms for a line of the csv from its promotion fields. If the id's cached terms were parsed from the
+	 * same text they are returned as they are, otherwise the text is parsed and cached for the id.
+	 * @param id The SKU id.
+	 * @param type The promotion type text.
+	 * @param startText The start date text, d/M/yyyy or "None".
+	 * @param endText The end date text, d/M/yyyy or "None".
+	 * @return The shared terms.
+	 * @throws ParseException Throws if a date is not valid.
+	 */
+	public synchronized PromotionTerms lookup(int id, String type, String startText, String endText) throws ParseException{
+		Integer key = Integer.valueOf(id);
+		Cached entry = byId.get(key);
+		if (entry != null && type.equals(entry.type) && startText.equals(entry.startText) && endText.equals(entry.endText)){
+			hits.increment();
+			return entry.terms;
+		}
+		misses++;
+		Promotion promotion = promotion(type);
+		int startDay = startText.equalsIgnoreCase("None") ? PromotionDates.NO_PROMOTION_DAY : PromotionDates.parse(startText);
+		int endDay = endText.equalsIgnoreCase("None") ? PromotionDates.NO_PROMOTION_DAY : PromotionDates.parse(endText);
+		PromotionTerms terms = entry != null && entry.terms.matches(promotion, startDay, endDay)
+				? entry.terms : new PromotionTerms(promotion, startDay, endDay);
+		byId.put(key, new Cached(terms, type, startText, endText));
+		return terms;
+	}
+
+	/**
+	 * Gets the terms for an id from an already parsed promotion and window.
+	 * @param id The SKU id.
+	 * @param promotion The parsed promotion type.
+	 * @param startDay The start of the promotion, as an epoch day.
+	 * @param endDay The end of the promotion, as an epoch day.
+	 * @return The shared terms.
+	 */
+	public synchronized PromotionTerms lookup(int id, Promotion promotion, int startDay, int endDay){
+		Integer key = Integer.valueOf(id);
+		Cached entry = byId.get(key);
+		if (entry != null && entry.terms.matches(promotion, startDay, endDay)){
+			hits.increment();
+			return entry.terms;
+		}
+		misses++;
+		PromotionTerms terms = new PromotionTerms(promotion, startDay, endDay);
+		byId.put(key, new Cached(terms, null, null, null));
+		return terms;
+	}
+
+	/**
+	 * Gets the parsed promotion for a type text, parsing it the first time the type is seen.
+	 * @param type The promotion type text.
+	 * @return The shared parsed promotion.
+	 */
+	public synchronized Promotion promotion(String type){
+		Promotion promotion = byType.get(type);
+		if (promotion == null){
+			promotion = Promotion.compile(type);
+			byType.put(type, promotion);
+		}
+		return promotion;
+	}
+
+	/**
+	 * Gets the number of lookups answered from the cache.
+	 * @return The hit count.
+	 */
+	public synchronized long getHits(){
+		return hits.sum();
+	}
+
+	/**
+	 * Gets the number of lookups that had to parse or build new terms.
+	 * @return The miss count.
+	 */
+	public synchronized long getMisses(){
+		return misses;
+	}
+
+	/**
+	 * Gets the number of ids evicted to make room for others.
+	 * @return The eviction count.
+	 */
+	public synchronized long getEvictions(){
+		return evictions;
+	}
+
+	/**
+	 * Gets the share of lookups answered from the cache.
+	 * @return The hit rate, from 0 to 1.
+	 */
+	public synchronized double getHitRate(){
+		long hitCount = hits.sum();
+		long lookups = hitCount + misses;
+		return lookups == 0 ? 0 : hitCount / (double) lookups;
+	}
+
+	/**
+	 * Gets the number of ids held.
+	 * @return The number of ids.
+	 */
+	public synchronized int size(){
+		return byId.size();
+	}
+
+	/**
+	 * Gets the most ids the catalog holds.
+	 * @return The capacity.
+	 */
+	public int getCapacity(){
+		return capacity;
+	}
+
+	/**
+	 * Empties the catalog and sets the statistics back to zero.
+	 */
+	public synchronized void clear(){
+		byId.clear();
+		byType.clear();
+		hits.reset();
+		misses = 0;
+		evictions = 0;
+	}
+}
@@ -0,0 +1,227 @@
+package classes;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+/**
+ * Static helpers for promotion windows held as epoch days, the number of days since 1970-01-01,
+ * as used by java.time.LocalDate.toEpochDay.
+ *
+ * Promotion dates in the csv are whole days written d/M/yyyy, so a promotion is valid today when its start day is on
+ * or before today and its end day is after today. That is the same test the old Date comparisons made, since a parsed
+ * date always falls at midnight. Working out today once per pricing run leaves two int comparisons per item.
+ *
+ * The parser is plain arithmetic on the digits, so it is thread-safe and never allocates. Like SimpleDateFormat it is
+ * lenient, so a day or month past the end of its range rolls over into the next month or year, and it skips spaces
+ * and tabs before each number and ignores whatever follows the year. Unlike SimpleDateFormat it rejects numbers of
+ * more than nine digits.
+ * @author Alex
+ *
+ */
+public final class PromotionDates {
+
+	/**
+	 * The start and end day given to items with no promotion, 11/11/1000.
+	 */
+	public static final int NO_PROMOTION_DAY = daysFromCivil(1000, 11, 11);
+
+	/**
+	 * The most digits read for one number. Longer numbers are rejected rather than overflowing the way
+	 * SimpleDateFormat's did.
+	 */
+	private static final int MAX_DIGITS = 9;
+
+	/**
+	 * Static helpers only.
+	 */
+	private PromotionDates(){
+	}
+
+	/**
+	 * Parses a d/M/yyyy date into an epoch day, accepting what SimpleDateFormat("dd/MM/yyyy") did: spaces or tabs before
+	 * each number, a minus sign on any of them, and anything at all after the year.
+	 * @param text The date text.
+	 * @return The epoch day of the date.
+	 * @throws ParseException Throws if the text does not start with three numbers separated by '/'.
+	 */
+	public static int parse(String text) throws ParseException{
+		int length = text.length();
+		long day = 0, month = 0, year = 0;
+		int i = 0;
+		for (int part = 0; part < 3; part++){
+			while (i < length && (text.charAt(i) == ' ' || text.charAt(i) == '\t')){
+				i++;
+			}
+			boolean negative = i < length && text.charAt(i) == '-';
+			if (negative){
+				i++;
+			}
+			long value = 0;
+			int digits = 0;
+			while (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9' && digits < MAX_DIGITS){
+				value = value * 10 + (text.charAt(i) - '0');
+				digits++;
+				i++;
+			}
+			if (digits == 0 || (i < length && text.charAt(i) >= '0' && text.charAt(i) <= '9')){
+				throw new ParseException("Unparseable date: \"" + text + "\"", i);
+			}
+			if (negative){
+				value = -value;
+			}
+			if (part == 0){
+				day = value;
+			} else if (part == 1){
+				month = value;
+			} else {
+				year = value;
+			}
+			if (part < 2){
+				if (i == length || text.charAt(i) != '/'){
+					throw new ParseException("Unparseable date: \"" + text + "\"", i);
+				}
+				i++;
+			}
+		}
+		return lenientDays(year, month, day);
+	}
+
+	/**
+	 * Parses a d/M/yyyy date held as ASCII bytes in a buffer into an epoch day, the same way parse(String) does.
+	 * @param buffer The buffer holding the date.
+	 * @param start The offset of the first byte of the date.
+	 * @param end The offset just past the last byte of the date.
+	 * @return The epoch day of the date.
+	 * @throws ParseException Throws if the bytes do not start with three numbers separated by '/'.
+	 */
+	public static int parse(ByteBuffer buffer, int start, int end) throws ParseException{
+		long day = 0, month = 0, year = 0;
+		int i = start;
+		for (int part = 0; part < 3; part++){
+			while (i < end && (buffer.get(i) == ' ' || buffer.get(i) == '\t')){
+				i++;
+			}
+			boolean negative = i < end && buffer.get(i) == '-';
+			if (negative){
+				i++;
+			}
+			long value = 0;
+			int digits = 0;
+			while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9' && digits < MAX_DIGITS){
+				value = value * 10 + (buffer.get(i) - '0');
+				digits++;
+				i++;
+			}
+			if (digits == 0 || (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9')){
+				throw new ParseException("Unparseable date", i - start);
+			}
+			if (negative){
+				value = -value;
+			}
+			if (part == 0){
+				day = value;
+			} else if (part == 1){
+				month = value;
+			} else {
+				year = value;
+			}
+			if (part < 2){
+				if (i == end || buffer.get(i) != '/'){
+					throw new ParseException("Unparseable date", i - start);
+				}
+				i++;
+			}
+		}
+		return lenientDays(year, month, day);
+	}
+
+	/**
+	 * Gets today's epoch day in the default time zone.
+	 * @return The epoch day of today.
+	 */
+	public static int today(){
+		return epochDay(new Date());
+	}
+
+	/**
+	 * Gets the epoch day a Date falls on in the default time zone.
+	 * @param date The date to convert.
+	 * @return The epoch day of the date.
+	 */
+	public static int epochDay(Date date){
+		Calendar calendar = new GregorianCalendar();
+		calendar.setTime(date);
+		int year = calendar.get(Calendar.YEAR);
+		if (calendar.get(Calendar.ERA) == GregorianCalendar.BC){
+			year = 1 - year;
+		}
+		return daysFromCivil(year, calendar.get(Calendar.MONTH) + 1, calendar.get(Calendar.DAY_OF_MONTH));
+	}
+
+	/**
+	 * Builds a Date for midnight at the start of an epoch day in the default time zone,
+	 * the same Date SimpleDateFormat("dd/MM/yyyy") gives for that day.
+	 * @param epochDay The epoch day.
+	 * @return A new Date for the day.
+	 */
+	public static Date toDate(int epochDay){
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		Calendar calendar = new GregorianCalendar(TimeZone.getDefault());
+		calendar.clear();
+		calendar.set(date.getYear(), date.getMonthValue() - 1, date.getDayOfMonth());
+		return calendar.getTime();
+	}
+
+	/**
+	 * Formats an epoch day as dd/MM/yyyy.
+	 * @param epochDay The epoch day.
+	 * @return The formatted date.
+	 */
+	public static String format(int epochDay){
+		LocalDate date = LocalDate.ofEpochDay(epochDay);
+		StringBuilder text = new StringBuilder(10);
+		pad(text, date.getDayOfMonth(), 2).append('/');
+		pad(text, date.getMonthValue(), 2).append('/');
+		pad(text, date.getYear(), 4);
+		return text.toString();
+	}
+
+	/**
+	 * Appends value to text, zero padded to width digits.
+	 */
+	private static StringBuilder pad(StringBuilder text, int value, int width){
+		String digits = Integer.toString(value);
+		for (int i = digits.length(); i < width; i++){
+			text.append('0');
+		}
+		return text.append(digits);
+	}
+
+	/**
+	 * Works out the epoch day of a date, rolling months past 12 into later years and days past the end of the month
+	 * into later months, as a lenient calendar does.
+	 */
+	private static int lenientDays(long year, long month, long day){
+		long monthIndex = year * 12 + (month - 1);
+		long days = daysFromCivil(Math.floorDiv(monthIndex, 12), Math.floorMod(monthIndex, 12) + 1, 1) + (day - 1);
+		return (int) days;
+	}
+
+	/**
+	 * Works out the epoch day of a date in the proleptic Gregorian calendar, matching LocalDate.toEpochDay
+	 * without building a LocalDate. Uses Howard Hinnant's days_from_civil algorithm.
+	 */
+	private static int daysFromCivil(long year, long month, long day){
+		year -= month <= 2 ? 1 : 0;
+		long era = Math.floorDiv(year, 400);
+		long yearOfEra = year - era * 400;
+		long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+		long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		return (int) (era * 146097 + dayOfEra - 719468);
+	}
+}
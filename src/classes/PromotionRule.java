@@ -0,0 +1,54 @@
+package classes;
+
+/**
+ * A kind of promotion: how its type string is parsed, and how the items carrying it are priced.
+ *
+ * Every rule has a one character code, the part of the type string before the first 'x'. PromotionRules keeps a table
+ * of rules indexed by code, so Promotion.compile finds the rule for a type with one array lookup. The built in rules
+ * are "n" for no sale, "%" for percent off, "r" for a flat rebate and "b" for buy X get Y Z% off. Other rules, such as
+ * spend thresholds or bundle prices, are added with PromotionRules.register and are then priced by every engine.
+ *
+ * A rule is shared by every cart and every thread, so it must not keep any state of its own. Anything it needs to
+ * remember while one cart is priced, such as a running spend or a count of bundle items, goes in that cart's
+ * PricingContext with setState.
+ * @author Alex
+ *
+ */
+public interface PromotionRule {
+
+	/**
+	 * Gets the code of this rule.
+	 * @return The code, an ASCII character other than 'x' or ','. Case is ignored when a type string is matched.
+	 */
+	char getCode();
+
+	/**
+	 * Parses a type string whose code is this rule's code.
+	 * @param type The whole type string, for example "tx100x10".
+	 * @param typeData The type string split on 'x'. typeData[0] is the code.
+	 * @return The parsed promotion, built with Promotion.forRule, or null if the values are not valid for this rule.
+	 * A NumberFormatException or ArrayIndexOutOfBoundsException is taken the same as null. Either way the type is
+	 * compiled as UNKNOWN, and its items are never totalled.
+	 */
+	Promotion compile(String type, String[] typeData);
+
+	/**
+	 * Prices one item whose promotion is this rule's and whose promotion dates are valid. Items are passed in cart order.
+	 * Must not allocate for every item, as it is called once per item on every cart.
+	 * @param context The pricing of the cart the item is in.
+	 * @param index The index of the item in the cart.
+	 * @param id The id of the item.
+	 * @param price The price of the item before discounts, in cents.
+	 * @param promotion The promotion of the item, as compiled by this rule.
+	 * @return The amount charged for the item, in cents, which is added to the cart total. A rule that can only work out
+	 * the charge once it has seen the whole cart returns 0 here and adds it in finish.
+	 */
+	long apply(PricingContext context, int index, int id, long price, Promotion promotion);
+
+	/**
+	 * Called once after the last item of a cart, if this rule set any state in the context. Adds whatever depends on the
+	 * whole cart with context.addTotal and context.addRebate.
+	 * @param context The pricing of the cart.
+	 */
+	void finish(PricingContext context);
+}
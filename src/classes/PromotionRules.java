@@ -0,0 +1,343 @@
+package classes;
+
+import java.util.Arrays;
+
+/**
+ * The table of PromotionRules, indexed by code. Promotion.compile looks up the rule for a type string here instead of
+ * comparing the code against each kind in turn, and new kinds of promotion are added with register without changing
+ * Promotion or any of the pricing engines.
+ *
+ * The four built in rules are always registered. DiscountEngine calls them through fields of their own final classes
+ * rather than through the table, so each of those call sites only ever sees one class and can be inlined, and the other
+ * engines keep their own code for the built in kinds. Promotions compiled by any other rule are of kind RULE, and
+ * every engine prices them by calling Promotion.getRule().apply.
+ *
+ * Rules are meant to be registered once, at start up, before carts are loaded. Registering a rule clears the shared
+ * PromotionCatalog, so type strings it had already compiled as UNKNOWN are compiled again, but carts already loaded
+ * keep the promotions they were built with.
+ * @author Alex
+ *
+ */
+public final class PromotionRules {
+
+	/**
+	 * The size of the table. Codes are ASCII characters.
+	 */
+	static final int CODES = 128;
+
+	/**
+	 * The built in rules.
+	 */
+	static final NoSale NONE = new NoSale();
+	static final PercentOff PERCENT = new PercentOff();
+	static final Rebate REBATE = new Rebate();
+	static final Bogo BOGO = new Bogo();
+
+	/**
+	 * The rule for each lower case code. Replaced whole when a rule is registered, so lookups never need a lock.
+	 */
+	private static volatile PromotionRule[] table = builtIns();
+
+	/**
+	 * Not meant to be built.
+	 */
+	private PromotionRules(){
+	}
+
+	/**
+	 * Builds the table holding only the built in rules.
+	 */
+	private static PromotionRule[] builtIns(){
+		PromotionRule[] rules = new PromotionRule[CODES];
+		rules[NONE.getCode()] = NONE;
+		rules[PERCENT.getCode()] = PERCENT;
+		rules[REBATE.getCode()] = REBATE;
+		rules[BOGO.getCode()] = BOGO;
+		return rules;
+	}
+
+	/**
+	 * Adds a rule to the table.
+	 * @param rule The rule.
+	 * @throws IllegalArgumentException Throws if the code is not an ASCII character, is 'x' or ',', or is already taken
+	 * by another rule, ignoring case.
+	 */
+	public static synchronized void register(PromotionRule rule){
+		char code = rule.getCode();
+		if (code <= ' ' || code >= CODES || code == ',' || Character.toLowerCase(code) == 'x'){
+			throw new IllegalArgumentException("Promotion code must be a printable ASCII character other than 'x' or ',': " + code);
+		}
+		int index = Character.toLowerCase(code);
+		if (table[index] != null){
+			throw new IllegalArgumentException("Promotion code " + code + " is already used by " + table[index]);
+		}
+		PromotionRule[] rules = table.clone();
+		rules[index] = rule;
+		table = rules;
+		PromotionCatalog.getShared().clear();
+	}
+
+	/**
+	 * Gets the rule for a code.
+	 * @param code The code, the part of a type string before the first 'x'.
+	 * @return The rule, or null if code is not one character or no rule has that code.
+	 */
+	public static PromotionRule get(String code){
+		if (code.length() != 1){
+			return null;
+		}
+		char c = code.charAt(0);
+		return c < CODES ? table[Character.toLowerCase(c)] : null;
+	}
+
+	/**
+	 * "n", no sale. Items are totalled at full price.
+	 */
+	static final class NoSale implements PromotionRule {
+
+		public char getCode(){
+			return 'n';
+		}
+
+		public Promotion compile(String type, String[] typeData){
+			return new Promotion(Promotion.Kind.NONE, this, type, 0, 0, null, null, null, null);
+		}
+
+		public long apply(PricingContext context, int index, int id, long price, Promotion promotion){
+			return price;
+		}
+
+		public void finish(PricingContext context){
+		}
+	}
+
+	/**
+	 * "%xA", A percent off.
+	 */
+	static final class PercentOff implements PromotionRule {
+
+		public char getCode(){
+			return '%';
+		}
+
+		public Promotion compile(String type, String[] typeData){
+			return new Promotion(Promotion.Kind.PERCENT, this, type, 0, 0, typeData[1], null, null, null);
+		}
+
+		public long apply(PricingContext context, int index, int id, long price, Promotion promotion){
+			return Money.percentOff(price, promotion.getRateBasisPoints());
+		}
+
+		public void finish(PricingContext context){
+		}
+	}
+
+	/**
+	 * "rxA", a flat rebate of A. Items are totalled at full price and the rebate is accrued.
+	 */
+	static final class Rebate implements PromotionRule {
+
+		public char getCode(){
+			return 'r';
+		}
+
+		public Promotion compile(String type, String[] typeData){
+			return new Promotion(Promotion.Kind.REBATE, this, type, 0, 0, typeData[1], null, null, null);
+		}
+
+		public long apply(PricingContext context, int index, int id, long price, Promotion promotion){
+			context.addRebate(promotion.getRebateCents());
+			return price;
+		}
+
+		public void finish(PricingContext context){
+		}
+	}
+
+	/**
+	 * "bxXxYxZ", buy X get Y Z% off.
+	 *
+	 * Cart.applyDiscounts works through the BOGO items one deal at a time. A deal starts on the first untotalled BOGO
+	 * item, then uses up the following items with the same id: X-1 at full price, then Y at Z% off. Once a deal is used
+	 * up the scan starts over, so deals are taken in the order of the item that started them. If a deal can never be
+	 * used up, every BOGO item that has not been totalled by then is left out of the total.
+	 *
+	 * This rule keeps one set of X and Y counters per id instead. Because the items of one id are always used up in cart
+	 * order, each id's deals come out the same as before. Each deal's subtotal is kept together with the index of the
+	 * item that started it, and finish adds only the deals that the rescanning loop would have reached.
+	 */
+	static final class Bogo implements PromotionRule {
+
+		/**
+		 * The deals of one cart. The open deal of each id is kept in parallel arrays indexed by a slot per id, found
+		 * through an open addressed map from id to slot, so running the counters of an item never allocates.
+		 */
+		private static class Deals {
+			/**
+			 * Open addressed map from id to one more than the slot holding that id's counters, 0 for an empty entry.
+			 */
+			int[] groupKeys = new int[16];
+			int[] groupSlots = new int[16];
+			int groupCount = 0;
+
+			/**
+			 * For each slot: whether a deal has been started for the id and not yet used up, the index of the item that
+			 * started it, the items still to buy at full price before the discount starts (the X in buy X get Y Z% off,
+			 * less the starting item), the items still to discount before it is used up (the Y), and the price of the
+			 * items it has totalled so far, in cents.
+			 */
+			boolean[] active = new boolean[8];
+			int[] dealStart = new int[8];
+			int[] bogoX = new int[8];
+			int[] bogoY = new int[8];
+			long[] subtotal = new long[8];
+
+			/**
+			 * The start index and subtotal of every deal that has been used up, in the order they were used up.
+			 */
+			int[] dealStarts = new int[16];
+			long[] dealSubtotals = new long[16];
+			int dealCount = 0;
+
+			/**
+			 * Finds the slot of an id, adding one if the id has not been seen yet.
+			 */
+			int slot(int id){
+				int mask = groupKeys.length - 1;
+				int h = hash(id) & mask;
+				while (groupSlots[h] != 0 && groupKeys[h] != id){
+					h = (h + 1) & mask;
+				}
+				if (groupSlots[h] != 0){
+					return groupSlots[h] - 1;
+				}
+				int g = groupCount++;
+				if (g == active.length){
+					active = Arrays.copyOf(active, g * 2);
+					dealStart = Arrays.copyOf(dealStart, g * 2);
+					bogoX = Arrays.copyOf(bogoX, g * 2);
+					bogoY = Arrays.copyOf(bogoY, g * 2);
+					subtotal = Arrays.copyOf(subtotal, g * 2);
+				}
+				groupKeys[h] = id;
+				groupSlots[h] = g + 1;
+				if (groupCount * 2 > groupKeys.length){
+					rehash();
+				}
+				return g;
+			}
+
+			/**
+			 * Records a deal that has been used up.
+			 */
+			void complete(int g){
+				if (dealCount == dealStarts.length){
+					dealStarts = Arrays.copyOf(dealStarts, dealCount * 2);
+					dealSubtotals = Arrays.copyOf(dealSubtotals, dealCount * 2);
+				}
+				dealStarts[dealCount] = dealStart[g];
+				dealSubtotals[dealCount] = subtotal[g];
+				dealCount++;
+				active[g] = false;
+			}
+
+			/**
+			 * Doubles the size of the id to slot map.
+			 */
+			private void rehash(){
+				int[] newKeys = new int[groupKeys.length * 2];
+				int[] newSlots = new int[groupKeys.length * 2];
+				int mask = newKeys.length - 1;
+				for (int i = 0; i < groupKeys.length; i++){
+					if (groupSlots[i] != 0){
+						int h = hash(groupKeys[i]) & mask;
+						while (newSlots[h] != 0){
+							h = (h + 1) & mask;
+						}
+						newKeys[h] = groupKeys[i];
+						newSlots[h] = groupSlots[i];
+					}
+				}
+				groupKeys = newKeys;
+				groupSlots = newSlots;
+			}
+
+			/**
+			 * Spreads the bits of an id so nearby ids land in different slots.
+			 */
+			private static int hash(int id){
+				int h = id * 0x9E3779B9;
+				return h ^ (h >>> 16);
+			}
+		}
+
+		public char getCode(){
+			return 'b';
+		}
+
+		public Promotion compile(String type, String[] typeData){
+			return new Promotion(Promotion.Kind.BOGO, this, type, Integer.parseInt(typeData[1]),
+					Integer.parseInt(typeData[2]), typeData[3], typeData[1], typeData[2], null);
+		}
+
+		/**
+		 * Runs the counters of the item's id. Always returns 0, as a deal's items only count if the deal is reached.
+		 */
+		public long apply(PricingContext context, int index, int id, long price, Promotion promotion){
+			Deals deals = (Deals) context.getState(this);
+			if (deals == null){
+				deals = new Deals();
+				context.setState(this, deals);
+			}
+			int g = deals.slot(id);
+			if (!deals.active[g]){
+				deals.active[g] = true;
+				deals.dealStart[g] = index;
+				deals.bogoX[g] = promotion.getBuyCount() - 1;
+				deals.bogoY[g] = promotion.getGetCount();
+				deals.subtotal[g] = price;
+			} else if (deals.bogoX[g] > 0){
+				deals.bogoX[g]--;
+				deals.subtotal[g] += price;
+			} else if (deals.bogoX[g] == 0 && deals.bogoY[g] > 0){
+				deals.bogoY[g]--;
+				deals.subtotal[g] += Money.percentOff(price, promotion.getRateBasisPoints());
+				if (deals.bogoY[g] == 0){
+					deals.complete(g);
+				}
+			}
+			/**
+			 * Otherwise the open deal for this id can never be used up, so the item is never totalled.
+			 */
+			return 0;
+		}
+
+		/**
+		 * Adds the deals the rescanning loop would have reached.
+		 */
+		public void finish(PricingContext context){
+			Deals deals = (Deals) context.getState(this);
+
+			/**
+			 * The first deal that was never used up stops the rescanning loop. Its items still count,
+			 * but no deal started after it is reached.
+			 */
+			int cutoff = Integer.MAX_VALUE;
+			int stuck = -1;
+			for (int g = 0; g < deals.groupCount; g++){
+				if (deals.active[g] && deals.dealStart[g] < cutoff){
+					cutoff = deals.dealStart[g];
+					stuck = g;
+				}
+			}
+			if (stuck >= 0){
+				context.addTotal(deals.subtotal[stuck]);
+			}
+			for (int d = 0; d < deals.dealCount; d++){
+				if (deals.dealStarts[d] < cutoff){
+					context.addTotal(deals.dealSubtotals[d]);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,122 @@
+package classes;
+
+import java.util.Date;
+
+/**
+ * The promotion an item is sold under: the parsed promotion type and the days it is valid.
+ * Immutable, so every item with the same terms can share one instance, which PromotionCatalog hands out.
+ * @author Alex
+ *
+ */
+public final class PromotionTerms {
+
+	/**
+	 * The parsed promotion type.
+	 */
+	private final Promotion promotion;
+
+	/**
+	 * The first day the promotion is valid, and the day it stops being valid, as epoch days.
+	 */
+	private final int startDay;
+	private final int endDay;
+
+	/**
+	 * Constructor for a set of terms.
+	 * @param inPromotion The parsed promotion type.
+	 * @param inStartDay The first day the promotion is valid, as an epoch day.
+	 * @param inEndDay The day the promotion stops being valid, as an epoch day.
+	 */
+	public PromotionTerms(Promotion inPromotion, int inStartDay, int inEndDay){
+		this.promotion = inPromotion;
+		this.startDay = inStartDay;
+		this.endDay = inEndDay;
+	}
+
+	/**
+	 * Gets the parsed promotion type.
+	 * @return The promotion.
+	 */
+	public Promotion getPromotion(){
+		return promotion;
+	}
+
+	/**
+	 * Gets the promotion type as written in the csv.
+	 * @return The promotion type.
+	 */
+	public String getType(){
+		return promotion.getType();
+	}
+
+	/**
+	 * Gets the first day the promotion is valid.
+	 * @return The start of the promotion, as an epoch day.
+	 */
+	public int getStartDay(){
+		return startDay;
+	}
+
+	/**
+	 * Gets the day the promotion stops being valid.
+	 * @return The end of the promotion, as an epoch day.
+	 */
+	public int getEndDay(){
+		return endDay;
+	}
+
+	/**
+	 * Gets the start date of the promotion.
+	 * @return A new Date for midnight on the start day of the promotion.
+	 */
+	public Date getStart(){
+		return PromotionDates.toDate(startDay);
+	}
+
+	/**
+	 * Gets the end date of the promotion.
+	 * @return A new Date for midnight on the end day of the promotion.
+	 */
+	public Date getEnd(){
+		return PromotionDates.toDate(endDay);
+	}
+
+	/**
+	 * Checks if these terms are the given promotion and window.
+	 * @param inPromotion The parsed promotion type.
+	 * @param inStartDay The start of the promotion, as an epoch day.
+	 * @param inEndDay The end of the promotion, as an epoch day.
+	 * @return True if the terms match.
+	 */
+	public boolean matches(Promotion inPromotion, int inStartDay, int inEndDay){
+		return startDay == inStartDay && endDay == inEndDay
+				&& (promotion == inPromotion || promotion.getType().equals(inPromotion.getType()));
+	}
+
+	/**
+	 * Copies these terms with a different promotion type.
+	 * @param inPromotion The new promotion type.
+	 * @return The new terms.
+	 */
+	public PromotionTerms withPromotion(Promotion inPromotion){
+		return new PromotionTerms(inPromotion, startDay, endDay);
+	}
+
+	/**
+	 * Copies these terms with a different start day.
+	 * @param inStartDay The new start day, as an epoch day.
+	 * @return The new terms.
+	 */
+	public PromotionTerms withStartDay(int inStartDay){
+		return new PromotionTerms(promotion, inStartDay, endDay);
+	}
+
+	/**
+	 * Copies these terms with a different end day.
+	 * @param inEndDay The new end day, as an epoch day.
+	 * @return The new terms.
+	 */
+	public PromotionTerms withEndDay(int inEndDay){
+		return new PromotionTerms(promotion, startDay, inEndDay);
+	}
+}
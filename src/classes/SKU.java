@@ -4,9 +4,7 @@ package classes;
  */
 
 import java.lang.Exception;
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.awt.Color;
 
 /**
  * @author Alexander Glass
@@ -26,15 +24,16 @@ public class SKU {
 	
 	/**
 	 * The size of the item. Sizes range from xxs to xxl, in both mens and womens
+	 * Stored as the one byte code of a SizeCode.
 	 */
-	private SKUSize size; 
+	private byte size; 
 	
 	/**
 	 * The color of the item. Allowed values are black, blue, cyan, darkGray, gray, green, lightgray, 
 	 * magenta, orange, pink, red, white, and yellow
-	 * SKUColor is an wrapper class that allows this.color to be set using strings.
+	 * Stored as the one byte code of a ColorCode.
 	 */
-	private SKUColor color;
+	private byte color;
 	
 	/**
 	 * The USD price of the item.
@@ -43,8 +42,9 @@ public class SKU {
 	
 	/**
 	 * The associated promotion of the item, including promotion type, start and end date.
+	 * Immutable, and usually shared with every other item of the same id through PromotionCatalog.
 	 */
-	private SKUPromotion promotion;
+	private PromotionTerms promotion;
 	
 	/**
 	 * The constructor for the SKU when all fields are available.
@@ -62,11 +62,11 @@ public class SKU {
 	public SKU(int inId, String inColor, String inSize, String inStyle, double inPrice, String inType, Date inStart, Date inEnd) throws Exception{
 		try{
 			this.id = new SKUId(inId);
-			this.color = new SKUColor(inColor);
-			this.size = new SKUSize(inSize);
+			this.color = colorCode(inColor);
+			this.size = sizeCode(inSize);
 			this.style = new SKUStyle(inStyle);
 			this.price = new SKUPrice(inPrice);
-			this.promotion = new SKUPromotion(inType, inStart, inEnd);
+			this.promotion = new PromotionTerms(Promotion.compile(inType), PromotionDates.epochDay(inStart), PromotionDates.epochDay(inEnd));
 		} catch(Exception BadConstructor){
 			System.out.print("Caught in constructor");
 			throw BadConstructor;
@@ -89,19 +89,138 @@ public class SKU {
 	public SKU(int inId, String inColor, String inSize, String inStyle, double inPrice, String inType, String inStart, String inEnd) throws Exception{
 		try{
 			this.id = new SKUId(inId);
-			this.color = new SKUColor(inColor);
-			this.size = new SKUSize(inSize);
+			this.color = colorCode(inColor);
+			this.size = sizeCode(inSize);
 			this.style = new SKUStyle(inStyle);
 			this.price = new SKUPrice(inPrice);
-			Date start = new SimpleDateFormat("dd/MM/yyyy").parse("11/11/1000");
-			Date end = new SimpleDateFormat("dd/MM/yyyy").parse("11/11/1000");
-			this.promotion = new SKUPromotion(inType, start, end);
+			this.promotion = new PromotionTerms(Promotion.compile(inType), PromotionDates.NO_PROMOTION_DAY, PromotionDates.NO_PROMOTION_DAY);
 		} catch(Exception BadConstructor){
 			System.out.print("Caught in constructor");
 			throw BadConstructor;
 		}
 	}
 	
+	/**
+	 * The constructor for the SKU used by the cart parsers, taking an exact price and an already parsed promotion.
+	 * 
+	 * @param inId The ID of the item.
+	 * @param inColor The color of the item.
+	 * @param inSize The size of the item.
+	 * @param inStyle The style of the item.
+	 * @param inPriceCents The price of the item, in cents.
+	 * @param inPromotion The promotion of the item.
+	 * @param inStartDay The start date of the promotion, as an epoch day.
+	 * @param inEndDay The end date of the promotion, as an epoch day.
+	 * @throws Exception BadConstructor "If for some reason the constructor fails, throws this exception to help with debug tracing.
+	 */
+	public SKU(int inId, String inColor, String inSize, String inStyle, long inPriceCents, Promotion inPromotion, int inStartDay, int inEndDay) throws Exception{
+		try{
+			this.id = new SKUId(inId);
+			this.color = colorCode(inColor);
+			this.size = sizeCode(inSize);
+			this.style = new SKUStyle(inStyle);
+			this.price = new SKUPrice(inPriceCents);
+			this.promotion = new PromotionTerms(inPromotion, inStartDay, inEndDay);
+		} catch(Exception BadConstructor){
+			System.out.print("Caught in constructor");
+			throw BadConstructor;
+		}
+	}
+	
+	/**
+	 * The constructor for the SKU used by the cart parsers when the color and size have already been looked up.
+	 * 
+	 * @param inId The ID of the item.
+	 * @param inColor The color of the item.
+	 * @param inSize The size of the item.
+	 * @param inStyle The style of the item.
+	 * @param inPriceCents The price of the item, in cents.
+	 * @param inPromotion The promotion of the item.
+	 * @param inStartDay The start date of the promotion, as an epoch day.
+	 * @param inEndDay The end date of the promotion, as an epoch day.
+	 */
+	public SKU(int inId, ColorCode inColor, SizeCode inSize, String inStyle, long inPriceCents, Promotion inPromotion, int inStartDay, int inEndDay){
+		this.id = new SKUId(inId);
+		this.color = inColor.getCode();
+		this.size = inSize.getCode();
+		this.style = new SKUStyle(inStyle);
+		this.price = new SKUPrice(inPriceCents);
+		this.promotion = new PromotionTerms(inPromotion, inStartDay, inEndDay);
+	}
+	
+	/**
+	 * The constructor for the SKU used by the cart parsers, taking promotion terms shared with other items of the same id.
+	 * 
+	 * @param inId The ID of the item.
+	 * @param inColor The color of the item.
+	 * @param inSize The size of the item.
+	 * @param inStyle The style of the item.
+	 * @param inPriceCents The price of the item, in cents.
+	 * @param inTerms The promotion type and dates of the item.
+	 * @throws Exception BadConstructor "If for some reason the constructor fails, throws this exception to help with debug tracing.
+	 */
+	public SKU(int inId, String inColor, String inSize, String inStyle, long inPriceCents, PromotionTerms inTerms) throws Exception{
+		try{
+			this.id = new SKUId(inId);
+			this.color = colorCode(inColor);
+			this.size = sizeCode(inSize);
+			this.style = new SKUStyle(inStyle);
+			this.price = new SKUPrice(inPriceCents);
+			this.promotion = inTerms;
+		} catch(Exception BadConstructor){
+			System.out.print("Caught in constructor");
+			throw BadConstructor;
+		}
+	}
+	
+	/**
+	 * The constructor for the SKU used by the cart parsers when the color and size have already been looked up,
+	 * taking promotion terms shared with other items of the same id.
+	 * 
+	 * @param inId The ID of the item.
+	 * @param inColor The color of the item.
+	 * @param inSize The size of the item.
+	 * @param inStyle The style of the item.
+	 * @param inPriceCents The price of the item, in cents.
+	 * @param inTerms The promotion type and dates of the item.
+	 */
+	public SKU(int inId, ColorCode inColor, SizeCode inSize, String inStyle, long inPriceCents, PromotionTerms inTerms){
+		this.id = new SKUId(inId);
+		this.color = inColor.getCode();
+		this.size = inSize.getCode();
+		this.style = new SKUStyle(inStyle);
+		this.price = new SKUPrice(inPriceCents);
+		this.promotion = inTerms;
+	}
+	
+	/**
+	 * Looks up the code for a color name, ignoring case.
+	 * @param inColor The name of the color.
+	 * @return The one byte code of the color.
+	 * @throws Exception Throws an exception if the color input is not one of the accepted types
+	 */
+	private static byte colorCode(String inColor) throws Exception{
+		ColorCode color = ColorCode.fromName(inColor);
+		if (color == null){
+			throw new Exception("Unsupported Color");
+		}
+		return color.getCode();
+	}
+	
+	/**
+	 * Looks up the code for a size name, ignoring case.
+	 * @param inSize The name of the size. Accepted sizes are XXS-XXL, preceded by either mens or womens.
+	 * @return The one byte code of the size.
+	 * @throws Exception Throws an exception if the give size is not supported.
+	 */
+	private static byte sizeCode(String inSize) throws Exception{
+		SizeCode size = SizeCode.fromName(inSize);
+		if (size == null){
+			throw new Exception("Unsupported Size");
+		}
+		return size.getCode();
+	}
+	
 	/**
 	 * Gets the SKUID of this instance of SKU. Makes sure that the SKUID has been set, else throws an exception
 	 * @return The value of this.SKUID, or throws an exception warning that the ID is still null.
@@ -119,6 +238,15 @@ public class SKU {
 		}
 	}
 	
+	/**
+	 * Gets the SKUID of this instance of SKU without checking that it has been set, for pricing paths that carry the id
+	 * along but never read it, so an unset id cannot stop a cart pricing there when it would price in Cart.price.
+	 * @return The value of this.SKUID, or -1 if it has not been set.
+	 */
+	int getSKUIDUnchecked(){
+		return this.id.getId();
+	}
+	
 	/**
 	 * Sets the SKU to an input. Most likely called by the constructor.
 	 * @param inSKUID The value to set SKUID to. Must be >= 1 and an int.
@@ -128,37 +256,53 @@ public class SKU {
 	}
 	
 	/**
-	 * Calls SKUColor.setColor to set color's value using a string input.
+	 * Sets color's value using a string input.
 	 * @param inColor the input string that color should be set to.
-	 * @throws Exception 
+	 * @throws Exception Throws an exception if the color input is not one of the accepted types
 	 */
 	public void setSKUColor(String inColor) throws Exception{
-		color.setColor(inColor);
+		this.color = colorCode(inColor);
 	}
 	
 	/**
 	 * Gets a string denoting the color of the item.
-	 * @return Returns the string representation of the color of the item.
+	 * @return Returns the name of the color of the item, such as "darkGray".
 	 */
 	public String getSKUColor(){
-		return this.color.getColor();
+		return ColorCode.fromCode(this.color).getLabel();
+	}
+	
+	/**
+	 * Gets the color of the item.
+	 * @return The ColorCode of the item.
+	 */
+	public ColorCode getSKUColorCode(){
+		return ColorCode.fromCode(this.color);
 	}
 	
 	/**
-	 * Calls SKUSize.setSize to set the size using a string input
+	 * Sets the size using a string input
 	 * @param inSize the input string that the size should be set to.
-	 * @throws Exception
+	 * @throws Exception Throws an exception if the give size is not supported.
 	 */
 	public void setSKUSize(String inSize) throws Exception{
-		size.setSize(inSize);
+		this.size = sizeCode(inSize);
 	}
 	
 	/**
 	 * Gets a string denoting the size of the item.
-	 * @return Returns a string representation of the size of the item.
+	 * @return Returns the name of the size of the item, such as "mens XL".
 	 */
 	public String getSKUSize(){
-		return size.getSize();
+		return SizeCode.fromCode(this.size).getLabel();
+	}
+	
+	/**
+	 * Gets the size of the item.
+	 * @return The SizeCode of the item.
+	 */
+	public SizeCode getSKUSizeCode(){
+		return SizeCode.fromCode(this.size);
 	}
 	
 	/**
@@ -194,27 +338,43 @@ public class SKU {
 	}
 	
 	/**
-	 * Calls SKUPromotion.setStart to set the start date of a promotion
-	 * @param inStart The date the promotion should be set to. Uses a Date object as the input type.
+	 * Calls SKUPrice.setCents to set the exact price in cents.
+	 * @param inPriceCents The price of the item, in cents.
+	 */
+	public void setSKUPriceCents(long inPriceCents){
+		this.price.setCents(inPriceCents);
+	}
+	
+	/**
+	 * Gets the exact price of the item in cents. Pricing uses this rather than getSKUPrice, so totals are exact.
+	 * @return The price of the item, in cents.
+	 */
+	public long getSKUPriceCents(){
+		return this.price.getCents();
+	}
+	
+	/**
+	 * Sets the start date of a promotion. The item gets its own copy of its promotion terms, so items sharing them are unaffected.
+	 * @param inStart The date the promotion should be set to. Uses a Date object as the input type. Only the day is kept.
 	 */
 	public void setSKUPromotionStart(Date inStart){
-		this.promotion.setStart(inStart);
+		this.promotion = this.promotion.withStartDay(PromotionDates.epochDay(inStart));
 	}
 	
 	/**
-	 * Calls SKUPromotion.setEnd to set the end date of a promotion.
-	 * @param inEnd The date the promotion should be set to. Uses a Date object as the input type.
+	 * Sets the end date of a promotion. The item gets its own copy of its promotion terms, so items sharing them are unaffected.
+	 * @param inEnd The date the promotion should be set to. Uses a Date object as the input type. Only the day is kept.
 	 */
 	public void setSKUPromotionEnd(Date inEnd){
-		this.promotion.setEnd(inEnd);
+		this.promotion = this.promotion.withEndDay(PromotionDates.epochDay(inEnd));
 	}
 	
 	/**
-	 * Calls SKUPromotion.setEnd to set the Type of a promotion.
+	 * Sets the Type of a promotion. The item gets its own copy of its promotion terms, so items sharing them are unaffected.
 	 * @param inType A String denoting the type of promotion. Valid promotion types are "n" for none, "bx
 	 */
 	public void setSKUPromotionType(String inType){
-		this.promotion.setType(inType);
+		this.promotion = this.promotion.withPromotion(Promotion.compile(inType));
 	}
 	/**
 	 * Gets a Date object that denotes the start of the promotion
@@ -232,6 +392,22 @@ public class SKU {
 		return this.promotion.getEnd();
 	}
 	
+	/**
+	 * Gets the day the promotion starts, so promotion windows can be checked without building Dates.
+	 * @return The start of the promotion, as an epoch day.
+	 */
+	public int getSKUPromotionStartDay(){
+		return this.promotion.getStartDay();
+	}
+	
+	/**
+	 * Gets the day the promotion ends. The promotion is no longer valid from this day on.
+	 * @return The end of the promotion, as an epoch day.
+	 */
+	public int getSKUPromotionEndDay(){
+		return this.promotion.getEndDay();
+	}
+	
 	/**
 	 * Gets a String that denotes the type of the promotion
 	 * @return a String that denotes the type of promotion
@@ -240,6 +416,22 @@ public class SKU {
 		return this.promotion.getType();
 	}
 	
+	/**
+	 * Gets the pre-parsed promotion, so discounts can be applied without re-parsing the type string.
+	 * @return The Promotion parsed from the type of the promotion.
+	 */
+	public Promotion getSKUPromotion(){
+		return this.promotion.getPromotion();
+	}
+	
+	/**
+	 * Gets the promotion type and dates of the item together.
+	 * @return The promotion terms of the item.
+	 */
+	public PromotionTerms getSKUPromotionTerms(){
+		return this.promotion;
+	}
+	
 	/**
 	 * A wrapper class that contains getters, setters, and constructors for the SKUId.
 	 * @author Alex
@@ -284,179 +476,6 @@ public class SKU {
 				this.id = inId;
 		}
 	}
-	/**
-	 * A wrapper class that allows the java.awt.Color static value to be set with Strings, 
-	 * and allows Nordstorm.SKU to get color values as Strings.
-	 */
-	private class SKUColor {
-
-		/**
-		 * The color of the item.
-		 */
-		private Color color;
-		
-		/**
-		 * Constructor for SKUColor. Only allows inputs supported by the java.awt.color class.
-		 * @param inColor String representation to be turned into a color object.
-		 * @throws Exception Throws an exception if the color input is not one of the accepted types
-		 */
-		public SKUColor(String inColor) throws Exception{
-			try {
-				if(inColor.equalsIgnoreCase("black")){
-					this.color = Color.black;
-				} else if(inColor.equalsIgnoreCase("blue")){
-					this.color = Color.blue; 
-				}else if(inColor.equalsIgnoreCase("cyan")){
-					this.color = Color.cyan;
-				}else if(inColor.equalsIgnoreCase("darkGray")){
-					this.color = Color.darkGray;
-				}else if(inColor.equalsIgnoreCase("gray")){
-					this.color = Color.gray;
-				}else if(inColor.equalsIgnoreCase("green")){
-					this.color = Color.green;
-				}else if(inColor.equalsIgnoreCase("lightGray")){
-					this.color = Color.lightGray;
-				}else if(inColor.equalsIgnoreCase("magenta")){
-					this.color = Color.magenta;
-				}else if(inColor.equalsIgnoreCase("orange")){
-					this.color = Color.orange;
-				}else if(inColor.equalsIgnoreCase("pink")){
-					this.color = Color.pink;
-				}else if(inColor.equalsIgnoreCase("red")){
-					this.color = Color.red;
-				}else if(inColor.equalsIgnoreCase("white")){
-					this.color = Color.white;
-				}else if(inColor.equalsIgnoreCase("yellow")){
-					this.color = Color.yellow;
-				}else if(inColor.equalsIgnoreCase("lightGray")){
-					this.color = Color.lightGray;
-				}else {
-					throw new Exception("Unsupported Color");
-				}
-			} catch(Exception UnsupportedColorException){
-				System.out.println("Caught in ColorConstructor");
-				throw UnsupportedColorException;
-			}
-		}
-		
-		/**
-		 * calls java.awt.color.toString to return a string representation of the color
-		 * @return Gets the string representation of the color.
-		 */
-		public String getColor(){
-			return this.color.toString();
-		}
-		
-		/**
-		 * Sets the color of the item. Only allows inputs supported by the java.awt.color class.
-		 * @param inColor String representation to be turned into a color object.
-		 * @throws Exception Throws an exception if the color input is not one of the accepted types
-		 */
-		public void setColor(String inColor) throws Exception{
-			try {
-				if(inColor.equalsIgnoreCase("black")){
-					this.color = Color.black;
-				} else if(inColor.equalsIgnoreCase("blue")){
-					this.color = Color.blue; 
-				}else if(inColor.equalsIgnoreCase("cyan")){
-					this.color = Color.cyan;
-				}else if(inColor.equalsIgnoreCase("darkGray")){
-					this.color = Color.darkGray;
-				}else if(inColor.equalsIgnoreCase("gray")){
-					this.color = Color.gray;
-				}else if(inColor.equalsIgnoreCase("green")){
-					this.color = Color.green;
-				}else if(inColor.equalsIgnoreCase("lightGray")){
-					this.color = Color.lightGray;
-				}else if(inColor.equalsIgnoreCase("magenta")){
-					this.color = Color.magenta;
-				}else if(inColor.equalsIgnoreCase("orange")){
-					this.color = Color.orange;
-				}else if(inColor.equalsIgnoreCase("pink")){
-					this.color = Color.pink;
-				}else if(inColor.equalsIgnoreCase("red")){
-					this.color = Color.red;
-				}else if(inColor.equalsIgnoreCase("white")){
-					this.color = Color.white;
-				}else if(inColor.equalsIgnoreCase("yellow")){
-					this.color = Color.yellow;
-				}else if(inColor.equalsIgnoreCase("lightGray")){
-					this.color = Color.lightGray;
-				}else {
-					throw new Exception("Unsupported Color");
-				}
-			} catch(Exception UnsupportedColorException){
-				System.out.println("Caught in setColor");
-				throw UnsupportedColorException;
-			}
-		}
-	}
-	
-	/**
-	 * Wrapper class that takes string inputs to output SKUSize's
-	 * @author Alex
-	 *
-	 */
-	private class SKUSize {
-		
-		/**
-		 * The string representation of the size of the item.
-		 */
-		private String size;
-		
-		/**
-		 * The constructor that takes a String input. Sizes accepted are XXS-XXL, preceded by either mens or womens.
-		 * @param inSize The String representation of the size. Accepted sizes are XXS-XXL, preceded by either mens or womens.
-		 * @throws Exception
-		 */
-		public SKUSize(String inSize) throws Exception{
-			try {
-				if (inSize.equalsIgnoreCase("womens XXS") || inSize.equalsIgnoreCase("womens XS") || inSize.equalsIgnoreCase("womens S")
-						|| inSize.equalsIgnoreCase("womens M") || inSize.equalsIgnoreCase("womens L") || inSize.equalsIgnoreCase("womens XL")
-						|| inSize.equalsIgnoreCase("womens XXL") || inSize.equalsIgnoreCase("mens XXS") || inSize.equalsIgnoreCase("mens XS") || inSize.equalsIgnoreCase("mens S")
-						|| inSize.equalsIgnoreCase("mens M") || inSize.equalsIgnoreCase("mens L") || inSize.equalsIgnoreCase("mens XL")
-						|| inSize.equalsIgnoreCase("mens XXL")){
-					size = inSize;
-				} else{
-					throw new Exception ("Unsupported Size");
-				}
-			} catch(Exception UnsupportedSizeException) {
-				System.out.println("Caught in setSize");
-				throw UnsupportedSizeException;
-			}
-		}
-		
-		/**
-		 * Returns a string denoting the size of the item.
-		 * @return a string representation of the size.
-		 */
-		public String getSize(){
-			return size;
-		}
-		
-		/**
-		 * Sets the size of the item using a string input of either "mens" or "womens" followed by a size XXS-XXL.
-		 * @param inSize the size the item should be set to.
-		 * @throws Exception Throws an exception if the give size is not supported.
-		 */
-		public void setSize(String inSize) throws Exception{
-			try {
-				if (inSize.equalsIgnoreCase("womens XXS") || inSize.equalsIgnoreCase("womens XS") || inSize.equalsIgnoreCase("womenss S")
-						|| inSize.equalsIgnoreCase("womens M") || inSize.equalsIgnoreCase("womens L") || inSize.equalsIgnoreCase("womens XL")
-						|| inSize.equalsIgnoreCase("womens XXL") || inSize.equalsIgnoreCase("mens XXS") || inSize.equalsIgnoreCase("mens XS") || inSize.equalsIgnoreCase("womenss S")
-						|| inSize.equalsIgnoreCase("mens M") || inSize.equalsIgnoreCase("mens L") || inSize.equalsIgnoreCase("mens XL")
-						|| inSize.equalsIgnoreCase("mens XXL")){
-					size = inSize;
-				} else{
-					throw new Exception ("Unsupported Size");
-				}
-			} catch(Exception UnsupportedSizeException) {
-				System.out.println("Caught in setSize");
-				throw UnsupportedSizeException;
-			}
-		}
-	}
-	
 	/**
 	 * Wrapper class that takes a string input and converts it to an SKUStyle.
 	 * @author Alex
@@ -494,23 +513,31 @@ public class SKU {
 	}
 	
 	/**
-	 * Wrapper class to make double inputs into SKUPrices
+	 * Wrapper class to make double or cent inputs into SKUPrices. The price is held exactly, as a count of cents.
 	 * @author Alex
 	 *
 	 */
 	class SKUPrice {
 		
 		/**
-		 * The price of the item
+		 * The price of the item, in cents.
 		 */
-		private double price;
+		private long cents;
 		
 		/**
 		 * Constructor takes a double input to make an SKUPrice object
-		 * @param inPrice
+		 * @param inPrice The price in dollars, rounded half up to the nearest cent.
 		 */
 		public SKUPrice(double inPrice){
-			this.price = inPrice;
+			this.cents = Money.fromDouble(inPrice);
+		}
+		
+		/**
+		 * Constructor takes an exact price in cents to make an SKUPrice object
+		 * @param inCents The price in cents.
+		 */
+		public SKUPrice(long inCents){
+			this.cents = inCents;
 		}
 		
 		/**
@@ -518,100 +545,31 @@ public class SKU {
 		 * @return A double representing the price of the item.
 		 */
 		public double getPrice(){
-			return this.price;
+			return Money.toDouble(this.cents);
 		}
 		
 		/**
 		 * Sets the price of the item with a double input.
-		 * @param inPrice A double to set the price of the item to.
+		 * @param inPrice A double to set the price of the item to, rounded half up to the nearest cent.
 		 */
 		public void setPrice(double inPrice){
-			this.price = inPrice;
+			this.cents = Money.fromDouble(inPrice);
 		}
-	}
-	
-	/**
-	 * A wrapper class that contains a promotion's start date, end date, and promotion.
-	 * @author Alex
-	 *
-	 */
-	private class SKUPromotion{
-		
-		/**
-		 * The Start date of the promotion.
-		 */
-		private Date start;
-		
-		/**
-		 * The end date of the promotion.
-		 */
-		private Date end;
-		
-		/**
-		 * They type of the promotion.
-		 */
-		private String type;
 		
 		/**
-		 * The Constructor of a promotion
-		 * @param inType the Type of the promotion.
-		 * @param inStart The date the promotion should have as a start date.
-		 * @param inEnd The date the promotion should have as an end date.
+		 * Returns the exact price in cents.
+		 * @return The price of the item, in cents.
 		 */
-		public SKUPromotion(String inType, Date inStart, Date inEnd){
-			this.start = inStart;
-			this.end = inEnd;
-			this.type = inType;
+		public long getCents(){
+			return this.cents;
 		}
 		
 		/**
-		 * Returns the start date of the promotion.
-		 * @return The start date of the promotion.
+		 * Sets the exact price in cents.
+		 * @param inCents The price of the item, in cents.
 		 */
-		public Date getStart() {
-			return this.start;
-		}
-		
-		/**
-		 * Sets the start date of the promotion.
-		 * @param inStart The start date of the promotion
-		 */
-		public void setStart(Date inStart) {
-			this.start = inStart;
-		}
-		
-		/**
-		 * Returns the end date of the promotion.
-		 * @return The end date of the promotion.
-		 */
-		public Date getEnd() {
-			return this.end;
-		}
-		
-		/**
-		 * Sets the end date of the promotion
-		 * @param inEnd The date the promotion should end.
-		 */
-		public void setEnd(Date inEnd) {
-			this.end = inEnd;
-		}
-		
-		/**
-		 * Gets the type of promotion of the item.
-		 * @return A string representation of the type of promotion.
-		 */
-		public String getType() {
-			return this.type;
-		}
-		
-		/**
-		 * Sets the type of promotion with a string input.
-		 * @param inType The type of promotion the item should have.
-		 */
-		public void setType(String inType) {
-			this.type = inType;
+		public void setCents(long inCents){
+			this.cents = inCents;
 		}
 	}
 }
-
-
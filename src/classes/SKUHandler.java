@@ -0,0 +1,15 @@
+package classes;
+
+/**
+ * A callback that receives SKU's one at a time as a cart is read, so the cart never has to be sized or held in memory up front.
+ * @author Alex
+ *
+ */
+public interface SKUHandler {
+	/**
+	 * Called once for each SKU read from the cart, in the order the items appear.
+	 * @param sku The SKU that was just read.
+	 * @throws Exception Throws any exception the handler needs to abort the read with.
+	 */
+	public void handle(SKU sku) throws Exception;
+}
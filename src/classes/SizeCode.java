@@ -0,0 +1,89 @@
+package classes;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The sizes an item can have, XXS to XXL in both mens and womens. Each SKU stores the ordinal of its size as a single byte.
+ * Names are matched ignoring case through a table built once, so parsing a size is one hash lookup.
+ * @author Alex
+ *
+ */
+public enum SizeCode {
+	WOMENS_XXS("womens XXS"), WOMENS_XS("womens XS"), WOMENS_S("womens S"), WOMENS_M("womens M"), WOMENS_L("womens L"), WOMENS_XL("womens XL"), WOMENS_XXL("womens XXL"),
+	MENS_XXS("mens XXS"), MENS_XS("mens XS"), MENS_S("mens S"), MENS_M("mens M"), MENS_L("mens L"), MENS_XL("mens XL"), MENS_XXL("mens XXL");
+
+	/**
+	 * Every size, indexed by code.
+	 */
+	private static final SizeCode[] CODES = values();
+
+	/**
+	 * Looks sizes up by name, ignoring case.
+	 */
+	private static final NameTable<SizeCode> BY_NAME;
+	static {
+		String[] names = new String[CODES.length];
+		for (int i = 0; i < CODES.length; i++){
+			names[i] = CODES[i].label;
+		}
+		BY_NAME = new NameTable<SizeCode>(names, CODES);
+	}
+
+	/**
+	 * The name of the size as it is written in the csv.
+	 */
+	private final String label;
+
+	/**
+	 * Constructor for a size.
+	 * @param inLabel The name of the size as it is written in the csv.
+	 */
+	private SizeCode(String inLabel){
+		this.label = inLabel;
+	}
+
+	/**
+	 * Gets the name of the size as it is written in the csv.
+	 * @return The name of the size.
+	 */
+	public String getLabel(){
+		return label;
+	}
+
+	/**
+	 * Gets the single byte code stored for this size.
+	 * @return The code of the size.
+	 */
+	public byte getCode(){
+		return (byte) ordinal();
+	}
+
+	/**
+	 * Gets the size for a code returned by getCode.
+	 * @param code The code of the size.
+	 * @return The size.
+	 */
+	public static SizeCode fromCode(byte code){
+		return CODES[code];
+	}
+
+	/**
+	 * Finds a size by name, ignoring case.
+	 * @param name The name of the size.
+	 * @return The size, or null if the name is not a supported size.
+	 */
+	public static SizeCode fromName(String name){
+		return BY_NAME.get(name);
+	}
+
+	/**
+	 * Finds a size by a name held as ASCII bytes, ignoring case.
+	 * @param buffer The buffer holding the name.
+	 * @param start The offset of the first byte of the name.
+	 * @param end The offset just past the last byte of the name.
+	 * @return The size, or null if the name is not a supported size.
+	 */
+	public static SizeCode fromName(ByteBuffer buffer, int start, int end){
+		return BY_NAME.get(buffer, start, end);
+	}
+}
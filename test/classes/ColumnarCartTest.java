@@ -0,0 +1,121 @@
+package classes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that ColumnarCart prices large carts the same on several threads as on one, and the same as DiscountEngine.
+ * @author Alex
+ *
+ */
+public class ColumnarCartTest {
+
+	/**
+	 * The day every cart is priced as of.
+	 */
+	private static final int TODAY = PromotionDates.NO_PROMOTION_DAY + 370000;
+
+	/**
+	 * The thread counts each cart is priced with.
+	 */
+	private static final int[] THREADS = {2, 3, 4, 8};
+
+	/**
+	 * Runs the slices and buckets of every parallel pricing.
+	 */
+	private static ExecutorService pool;
+
+	@BeforeClass
+	public static void setUp(){
+		pool = Executors.newFixedThreadPool(4);
+	}
+
+	@AfterClass
+	public static void tearDown(){
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Generated carts, heavy on BOGO items with deals left incomplete, in order and shuffled.
+	 */
+	@Test
+	public void pricesGeneratedCartsTheSameInParallel() throws Exception{
+		Random random = new Random(5);
+		for (int c = 0; c < 6; c++){
+			CartGenerator generator = new CartGenerator(c);
+			generator.setToday(TODAY);
+			generator.setIds(1 + random.nextInt(2000), 1 + random.nextInt(3));
+			generator.setPromotionWeights(20, 20, 10, 50);
+			generator.setBogoCompletePercent(50 + random.nextInt(51));
+			generator.setWindows(random.nextInt(20), random.nextInt(10));
+			SKU[] cart = generator.generate(ColumnarCart.MIN_PARALLEL_ITEMS + random.nextInt(200000));
+			assertSamePrice("cart " + c, cart);
+			List<SKU> shuffled = Arrays.asList(cart.clone());
+			Collections.shuffle(shuffled, random);
+			assertSamePrice("shuffled cart " + c, shuffled.toArray(new SKU[cart.length]));
+		}
+	}
+
+	/**
+	 * Runs of one id's BOGO items placed across every slice boundary for each thread count, some of which leave a deal
+	 * open, so deals are started in one slice and used up or left stuck in the next.
+	 */
+	@Test
+	public void pricesDealsThatCrossSliceBoundaries() throws Exception{
+		Promotion percent = Promotion.compile("%x10");
+		Promotion[] deals = {Promotion.compile("bx3x2x50"), Promotion.compile("bx1x1x80"), Promotion.compile("bx2x3x25")};
+		int size = 100000;
+		for (int threads : THREADS){
+			SKU[] cart = new SKU[size];
+			for (int i = 0; i < size; i++){
+				cart[i] = item(100000 + i % 50, 1000 + i % 997, percent);
+			}
+			int sliceSize = Math.max(4096, (size + threads * 4 - 1) / (threads * 4));
+			for (int boundary = sliceSize, run = 0; boundary < size; boundary += sliceSize, run++){
+				Promotion deal = deals[run % deals.length];
+				/**
+				 * Every third run stops one item short of its last deal, leaving it open.
+				 */
+				int length = (deal.getBuyCount() + deal.getGetCount()) * 2 - (run % 3 == 2 ? 1 : 0);
+				for (int k = 0; k < length; k++){
+					cart[boundary - length / 2 + k] = item(1 + run % 7, 500 + k * 37, deal);
+				}
+			}
+			assertSamePrice("boundaries for " + threads + " threads", cart);
+		}
+	}
+
+	/**
+	 * Prices a cart on one thread, on each thread count, and with DiscountEngine, and compares the totals.
+	 */
+	private static void assertSamePrice(String name, SKU[] cart) throws Exception{
+		ColumnarCart columns = ColumnarCart.from(cart);
+		CartTotals expected = DiscountEngine.price(cart, TODAY);
+		CartTotals sequential = columns.price(TODAY);
+		assertEquals(name + " sequential total", expected.getTotalCents(), sequential.getTotalCents());
+		assertEquals(name + " sequential rebate total", expected.getRebateTotalCents(), sequential.getRebateTotalCents());
+		for (int threads : THREADS){
+			CartTotals parallel = columns.price(TODAY, pool, threads);
+			assertEquals(name + " total on " + threads + " threads", expected.getTotalCents(), parallel.getTotalCents());
+			assertEquals(name + " rebate total on " + threads + " threads", expected.getRebateTotalCents(),
+					parallel.getRebateTotalCents());
+		}
+	}
+
+	/**
+	 * Builds an item with a promotion window around TODAY.
+	 */
+	private static SKU item(int id, long cents, Promotion promotion){
+		return new SKU(id, ColorCode.values()[0], SizeCode.values()[0], "Socks", cents, promotion, TODAY - 5, TODAY + 5);
+	}
+}
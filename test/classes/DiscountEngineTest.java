@@ -0,0 +1,86 @@
+package classes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that DiscountEngine prices randomized carts the same as the rescanning loop in Cart.price.
+ * @author Alex
+ *
+ */
+public class DiscountEngineTest {
+
+	/**
+	 * The day every cart is priced as of.
+	 */
+	private static final int TODAY = PromotionDates.NO_PROMOTION_DAY + 370000;
+
+	/**
+	 * Generated carts, which keep each deal's items together, in their original order and shuffled.
+	 */
+	@Test
+	public void matchesLegacyLoopOnGeneratedCarts() throws Exception{
+		Random random = new Random(4);
+		for (int c = 0; c < 300; c++){
+			CartGenerator generator = new CartGenerator(c);
+			generator.setToday(TODAY);
+			generator.setIds(1 + random.nextInt(40), 1 + random.nextInt(3));
+			generator.setBogoCompletePercent(random.nextInt(101));
+			generator.setWindows(random.nextInt(30), random.nextInt(10));
+			SKU[] cart = generator.generate(random.nextInt(300));
+			assertSamePrice("cart " + c, cart);
+			List<SKU> shuffled = Arrays.asList(cart.clone());
+			Collections.shuffle(shuffled, random);
+			assertSamePrice("shuffled cart " + c, shuffled.toArray(new SKU[cart.length]));
+		}
+	}
+
+	/**
+	 * Carts built item by item, with deals whose X or Y is 0, unknown types, and ids interleaved at random.
+	 */
+	@Test
+	public void matchesLegacyLoopOnEdgeCases() throws Exception{
+		String[] types = {"n", "%x10", "%x33.3", "rx5", "bx1x1x50", "bx2x1x100", "bx3x2x25", "bx0x1x50", "bx2x0x50", "qx1", "bx"};
+		Random random = new Random(11);
+		for (int c = 0; c < 2000; c++){
+			SKU[] cart = new SKU[random.nextInt(40)];
+			for (int i = 0; i < cart.length; i++){
+				int start = TODAY - 10 + random.nextInt(15);
+				int end = start + random.nextInt(20);
+				Promotion promotion = Promotion.compile(types[random.nextInt(types.length)]);
+				cart[i] = new SKU(1 + random.nextInt(4), ColorCode.values()[0], SizeCode.values()[0], "Socks",
+						1 + random.nextInt(10000), promotion, start, end);
+			}
+			assertSamePrice("cart " + c, cart);
+		}
+	}
+
+	/**
+	 * Items without an id still price when their promotion never reads it.
+	 */
+	@Test
+	public void pricesItemsWithoutAnIdOutsideDeals() throws Exception{
+		SKU[] cart = {
+				new SKU(0, ColorCode.values()[0], SizeCode.values()[0], "Socks", 1000, Promotion.compile("%x10"), TODAY - 1, TODAY + 1),
+				new SKU(1, ColorCode.values()[0], SizeCode.values()[0], "Socks", 1000, Promotion.compile("n"), TODAY - 1, TODAY + 1)};
+		assertEquals(1900, Cart.price(cart, TODAY).getTotalCents());
+		assertSamePrice("cart", cart);
+		assertEquals(1900, ColumnarCart.from(cart).price(TODAY).getTotalCents());
+	}
+
+	/**
+	 * Prices a cart both ways and compares the totals.
+	 */
+	private static void assertSamePrice(String name, SKU[] cart) throws Exception{
+		PricingResult legacy = Cart.price(cart, TODAY);
+		CartTotals engine = DiscountEngine.price(cart, TODAY);
+		assertEquals(name + " total", legacy.getTotalCents(), engine.getTotalCents());
+		assertEquals(name + " rebate total", legacy.getRebateTotalCents(), engine.getRebateTotalCents());
+	}
+}
@@ -0,0 +1,128 @@
+package classes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that MappedCartParser loads, skips and rejects lines the same way Cart.loadCart does.
+ * @author Alex
+ *
+ */
+public class MappedCartParserTest {
+
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A line with only one date set is skipped, even if its color or size is bad too.
+	 */
+	@Test
+	public void skipsHalfWindowLinesBeforeCheckingColorAndSize() throws Exception{
+		File cart = write("1,white,womens XXS,Socks,10,n,1/6/1990,1/6/2100\n"
+				+ "2,purple,womens XXS,Socks,10,%x10,None,1/6/2100\n"
+				+ "3,white,kids M,Socks,10,%x10,1/6/1990,None\n"
+				+ "4,black,mens XXL,Underwear,15.5,rx2,None,None\n");
+		SKU[] expected = Cart.loadCart(cart.getPath());
+		assertEquals(2, expected.length);
+		assertSameItems(expected, MappedCartParser.loadCart(cart.getPath()));
+
+		LoadReport report = new LoadReport();
+		assertSameItems(expected, MappedCartParser.loadCart(cart.getPath(), report));
+		assertEquals(2, report.getRejectedCount(ParseError.HALF_WINDOW));
+		assertEquals(2, report.getRejectedCount());
+	}
+
+	/**
+	 * Lines built from good and bad fields at random either load to the same items both ways, or fail both ways, and
+	 * the report gives a failing line the reason Cart's exception maps to. Cart is read through a CartSource, as
+	 * loadCart(String) prints a bad date and returns what it loaded before it rather than throwing.
+	 */
+	@Test
+	public void matchesCartOnRandomLines() throws Exception{
+		String[][] choices = {
+				{"1", "7", "x"},
+				{"white", "purple"},
+				{"womens XXS", "kids M"},
+				{"Socks"},
+				{"10", "1.5", "abc"},
+				{"n", "%x10", "bx1x1x50", "zz"},
+				{"1/6/1990", "None", "bad"},
+				{"1/6/2100", "none", "bad"}};
+		Random random = new Random(2);
+		for (int c = 0; c < 3000; c++){
+			StringBuilder line = new StringBuilder();
+			for (int f = 0; f < choices.length; f++){
+				if (f > 0){
+					line.append(',');
+				}
+				line.append(choices[f][random.nextInt(choices[f].length)]);
+			}
+			File cart = write(line.append('\n').toString());
+			Exception cartFailure = null;
+			SKU[] expected = null;
+			try {
+				expected = Cart.loadCart(CartSource.fromFile(cart.getPath()));
+			} catch(Exception e){
+				cartFailure = e;
+			}
+			LoadReport report = new LoadReport();
+			SKU[] reported = MappedCartParser.loadCart(cart.getPath(), report);
+			if (cartFailure != null){
+				Exception mappedFailure = null;
+				try {
+					MappedCartParser.loadCart(cart.getPath());
+				} catch(Exception e){
+					mappedFailure = e;
+				}
+				assertEquals(line + " fails", ParseError.of(cartFailure), mappedFailure == null ? null : ParseError.of(mappedFailure));
+				assertEquals(line + " reason", ParseError.of(cartFailure), report.getRejections().get(0).getReason());
+				assertEquals(0, reported.length);
+			} else {
+				assertSameItems(expected, MappedCartParser.loadCart(cart.getPath()));
+				assertSameItems(expected, reported);
+				if (expected.length == 0){
+					assertEquals(line + " reason", ParseError.HALF_WINDOW, report.getRejections().get(0).getReason());
+				} else {
+					assertEquals(0, report.getRejectedCount());
+				}
+			}
+			cart.delete();
+		}
+	}
+
+	/**
+	 * Writes a cart file.
+	 */
+	private File write(String text) throws Exception{
+		File cart = folder.newFile();
+		Files.write(cart.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+		return cart;
+	}
+
+	/**
+	 * Compares two loads of the same cart item by item.
+	 */
+	private static void assertSameItems(SKU[] expected, SKU[] actual) throws Exception{
+		assertEquals("item count", expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++){
+			SKU a = expected[i];
+			SKU b = actual[i];
+			assertEquals(a.getSKUIDUnchecked(), b.getSKUIDUnchecked());
+			assertEquals(a.getSKUColorCode(), b.getSKUColorCode());
+			assertEquals(a.getSKUSizeCode(), b.getSKUSizeCode());
+			assertEquals(a.getSKUStyle(), b.getSKUStyle());
+			assertEquals(a.getSKUPriceCents(), b.getSKUPriceCents());
+			assertEquals(a.getSKUPromotionType(), b.getSKUPromotionType());
+			assertEquals(a.getSKUPromotionStartDay(), b.getSKUPromotionStartDay());
+			assertEquals(a.getSKUPromotionEndDay(), b.getSKUPromotionEndDay());
+		}
+	}
+}
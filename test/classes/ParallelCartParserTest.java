@@ -0,0 +1,129 @@
+package classes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that ParallelCartParser loads large carts into the same SKUs, in the same order, as MappedCartParser.
+ * @author Alex
+ *
+ */
+public class ParallelCartParserTest {
+
+	@ClassRule
+	public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+	/**
+	 * Runs the ranges of every parse.
+	 */
+	private static ExecutorService pool;
+
+	/**
+	 * A generated cart of a few megabytes, with its lines ending in "\n".
+	 */
+	private static File cart;
+
+	@BeforeClass
+	public static void setUp() throws Exception{
+		pool = Executors.newFixedThreadPool(4);
+		cart = FOLDER.newFile("cart.csv");
+		CartGenerator generator = new CartGenerator(17);
+		generator.setIds(500, 2);
+		generator.setBogoCompletePercent(60);
+		generator.setWindows(20, 10);
+		generator.write(cart.getPath(), 60000);
+		assertTrue(cart.length() > ParallelCartParser.MIN_PARALLEL_BYTES * 2);
+	}
+
+	@AfterClass
+	public static void tearDown(){
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Every range count, including ones that do not divide the file evenly and more ranges than threads.
+	 */
+	@Test
+	public void matchesSequentialLoad() throws Exception{
+		SKU[] expected = MappedCartParser.loadCart(cart.getPath());
+		for (int ranges : new int[]{2, 3, 4, 7, 16, 61}){
+			assertSameItems("ranges " + ranges, expected, new ParallelCartParser(pool, ranges).load(cart.getPath()));
+		}
+	}
+
+	/**
+	 * Lines ending in "\r\n", and a last line with no line break.
+	 */
+	@Test
+	public void matchesSequentialLoadWithOtherLineEndings() throws Exception{
+		String text = new String(Files.readAllBytes(cart.toPath()), StandardCharsets.US_ASCII);
+		File crlf = FOLDER.newFile("crlf.csv");
+		Files.write(crlf.toPath(), text.replace("\n", "\r\n").getBytes(StandardCharsets.US_ASCII));
+		File unterminated = FOLDER.newFile("unterminated.csv");
+		Files.write(unterminated.toPath(), text.substring(0, text.length() - 1).getBytes(StandardCharsets.US_ASCII));
+		SKU[] expected = MappedCartParser.loadCart(cart.getPath());
+		for (int ranges : new int[]{2, 5, 16}){
+			assertSameItems("crlf, ranges " + ranges, expected, new ParallelCartParser(pool, ranges).load(crlf.getPath()));
+			assertSameItems("unterminated, ranges " + ranges, expected,
+					new ParallelCartParser(pool, ranges).load(unterminated.getPath()));
+		}
+	}
+
+	/**
+	 * Every range starts just after a line break, and the ranges cover the whole file.
+	 */
+	@Test
+	public void splitsOnLineBreaks() throws Exception{
+		byte[] bytes = Files.readAllBytes(cart.toPath());
+		RandomAccessFile file = new RandomAccessFile(cart, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			for (int count : new int[]{2, 3, 16, 1000}){
+				long[] bounds = ParallelCartParser.split(channel, bytes.length, count);
+				assertEquals(0, bounds[0]);
+				assertEquals(bytes.length, bounds[bounds.length - 1]);
+				for (int i = 1; i < bounds.length - 1; i++){
+					assertTrue("bounds in order", bounds[i] > bounds[i - 1]);
+					assertEquals("range " + i + " of " + count + " starts a line", '\n', bytes[(int) bounds[i] - 1]);
+				}
+			}
+		} finally {
+			file.close();
+		}
+	}
+
+	/**
+	 * Compares two loads of the same cart item by item.
+	 */
+	private static void assertSameItems(String name, SKU[] expected, SKU[] actual) throws Exception{
+		assertEquals(name + " item count", expected.length, actual.length);
+		for (int i = 0; i < expected.length; i++){
+			SKU a = expected[i];
+			SKU b = actual[i];
+			String item = name + " item " + i;
+			assertEquals(item, a.getSKUID(), b.getSKUID());
+			assertEquals(item, a.getSKUColorCode(), b.getSKUColorCode());
+			assertEquals(item, a.getSKUSizeCode(), b.getSKUSizeCode());
+			assertEquals(item, a.getSKUStyle(), b.getSKUStyle());
+			assertEquals(item, a.getSKUPriceCents(), b.getSKUPriceCents());
+			assertEquals(item, a.getSKUPromotionType(), b.getSKUPromotionType());
+			assertArrayEquals(item, new int[]{a.getSKUPromotionStartDay(), a.getSKUPromotionEndDay()},
+					new int[]{b.getSKUPromotionStartDay(), b.getSKUPromotionEndDay()});
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package classes;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Checks that PricingServer turns requests away once it holds as many carts as its queue, whatever its request threads.
+ * @author Alex
+ *
+ */
+public class PricingServerTest {
+
+	/**
+	 * Holds every item priced by the "w" rule until it is opened.
+	 */
+	private static volatile CountDownLatch gate = new CountDownLatch(0);
+
+	/**
+	 * "w", priced at full price once the gate opens, so a test can keep carts waiting in the server.
+	 */
+	private static final class Wait implements PromotionRule {
+
+		public char getCode(){
+			return 'w';
+		}
+
+		public Promotion compile(String type, String[] typeData){
+			return Promotion.forRule(this, type, null);
+		}
+
+		public long apply(PricingContext context, int index, int id, long price, Promotion promotion){
+			try {
+				gate.await();
+			} catch(InterruptedException e){
+				Thread.currentThread().interrupt();
+			}
+			return price;
+		}
+
+		public void finish(PricingContext context){
+		}
+	}
+
+	@BeforeClass
+	public static void setUp(){
+		if (PromotionRules.get("w") == null){
+			PromotionRules.register(new Wait());
+		}
+	}
+
+	/**
+	 * With pricing held up, a queue larger than the fallback pool of request threads still fills, and every request
+	 * past it is answered 503 while the admitted carts wait.
+	 */
+	@Test
+	public void rejectsRequestsPastQueueCapacity() throws Exception{
+		int capacity = 8;
+		int requests = 24;
+		gate = new CountDownLatch(1);
+		final PricingServer server = new PricingServer(0).setQueueCapacity(capacity).setPricingThreads(1)
+				.setTimeoutMillis(60000);
+		server.start();
+		ExecutorService clients = Executors.newFixedThreadPool(requests);
+		try {
+			final byte[] cart = "1,white,womens XXS,Socks,10,wx1,1/6/1990,1/6/2100\n".getBytes(StandardCharsets.US_ASCII);
+			List<Future<Integer>> statuses = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < requests; i++){
+				statuses.add(clients.submit(() -> post(server.getPort(), cart)));
+			}
+			long deadline = System.currentTimeMillis() + 30000;
+			while (server.getRejectedCount() < requests - capacity && System.currentTimeMillis() < deadline){
+				Thread.sleep(10);
+			}
+			assertEquals("rejected while pricing is held up", requests - capacity, server.getRejectedCount());
+			gate.countDown();
+			int ok = 0;
+			int busy = 0;
+			for (Future<Integer> status : statuses){
+				int code = status.get().intValue();
+				if (code == 200){
+					ok++;
+				} else if (code == 503){
+					busy++;
+				}
+			}
+			assertEquals(capacity, ok);
+			assertEquals(requests - capacity, busy);
+			assertTrue(server.getPricedCount() == capacity);
+		} finally {
+			gate.countDown();
+			clients.shutdownNow();
+			server.stop(0);
+		}
+	}
+
+	/**
+	 * Posts a cart and reads the whole reply.
+	 * @return The status code.
+	 */
+	private static Integer post(int port, byte[] cart) throws Exception{
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/price").openConnection();
+		connection.setDoOutput(true);
+		connection.setRequestMethod("POST");
+		OutputStream out = connection.getOutputStream();
+		out.write(cart);
+		out.close();
+		int status = connection.getResponseCode();
+		InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+		while (in != null && in.read() != -1){
+		}
+		connection.disconnect();
+		return Integer.valueOf(status);
+	}
+}